@@ -0,0 +1,36 @@
+package com.gv.csc.aspects;
+
+import com.gv.csc.exceptions.UpstreamUnavailableException;
+import com.gv.csc.util.CLOSETConnectorConstants;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+
+/**
+ * Capture calls turned away by an upstream bulkhead using AOP
+ */
+@ControllerAdvice
+public class UpstreamAspects {
+
+    Logger logger = LoggerFactory.getLogger(UpstreamAspects.class);
+
+    /**
+     * This method answers 503 for calls the upstream could not take, instead of a generic server error
+     *
+     * @param e exception
+     * @return response
+     */
+    @ExceptionHandler(UpstreamUnavailableException.class)
+    public ResponseEntity<?> handleUpstreamUnavailableException(UpstreamUnavailableException e) {
+        logger.warn("WARN::UpstreamAspects: handleUpstreamUnavailableException() - " + e.getMessage());
+        JSONObject outJson = new JSONObject();
+        outJson.put(CLOSETConnectorConstants.CC_STATUS_CODE_JSON_KEY, e.getStatusCode());
+        outJson.put(CLOSETConnectorConstants.CC_STATUS_JSON_KEY, CLOSETConnectorConstants.CC_FAILED_STATUS_JSON_VALUE);
+        outJson.put(CLOSETConnectorConstants.CC_MESSAGE_JSON_KEY, e.getMessage());
+        return ResponseEntity.status(e.getStatusCode()).contentType(MediaType.APPLICATION_JSON).body(outJson.toString());
+    }
+}
@@ -0,0 +1,182 @@
+package com.gv.csc.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ExecutorConfig - Bounded executors used by the connector for concurrent upstream work
+ */
+@Configuration
+public class ExecutorConfig {
+
+    Logger logger = LoggerFactory.getLogger(ExecutorConfig.class);
+
+    @Value("${csc.publish.upload.parallelism:4}")
+    private int attachmentUploadParallelism;
+
+    @Value("${csc.threads.virtual:false}")
+    private boolean virtualThreads;
+
+    @Value("${csc.closet.lookup.parallelism:16}")
+    private int closetLookupParallelism;
+
+    @Value("${csc.plm.lov.parallelism:8}")
+    private int plmLookupParallelism;
+
+    @Value("${csc.publish.jobs.parallelism:4}")
+    private int publishJobParallelism;
+
+    @Value("${csc.publish.asset-transfer.parallelism:8}")
+    private int assetTransferParallelism;
+
+    @Value("${csc.publish.stages.parallelism:16}")
+    private int publishStageParallelism;
+
+    @Value("${csc.publish.download.ranged.parallelism:16}")
+    private int rangedDownloadParallelism;
+
+    @Value("${csc.hedging.parallelism:32}")
+    private int hedgedReadParallelism;
+
+    /**
+     * Executor used to run the style dependent CLO-SET lookups alongside each other
+     *
+     * @return ExecutorService
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService closetLookupExecutor() {
+        return newBoundedExecutor("closet-lookup-", closetLookupParallelism);
+    }
+
+    /**
+     * Executor used to resolve PLM LOV display values in parallel
+     *
+     * @return ExecutorService
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService plmLookupExecutor() {
+        return newBoundedExecutor("plm-lookup-", plmLookupParallelism);
+    }
+
+    /**
+     * Executor running queued publish jobs, kept apart from the request threads
+     *
+     * @return ExecutorService
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService publishJobExecutor() {
+        return newBoundedExecutor("publish-job-", publishJobParallelism);
+    }
+
+    /**
+     * Executor for the asset downloads and uploads of a publish, run concurrently
+     *
+     * @return ExecutorService
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService assetTransferExecutor() {
+        return newBoundedExecutor("asset-transfer-", assetTransferParallelism);
+    }
+
+    /**
+     * Executor running the stages of the publishes. Kept apart from the asset transfer executor, whose tasks the
+     * stages wait for.
+     *
+     * @return ExecutorService
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService publishStageExecutor() {
+        return newBoundedExecutor("publish-stage-", publishStageParallelism);
+    }
+
+    /**
+     * Executor uploading the partitions of an attachment upload concurrently. Kept apart from the asset transfer
+     * executor, whose tasks wait for these uploads.
+     *
+     * @return ExecutorService
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService attachmentUploadExecutor() {
+        return newBoundedExecutor("attachment-upload-", attachmentUploadParallelism);
+    }
+
+    /**
+     * Executor fetching the byte ranges of large asset downloads, shared by all downloads. Kept apart from the asset
+     * transfer executor, whose tasks wait for these ranges.
+     *
+     * @return ExecutorService
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService rangedDownloadExecutor() {
+        return newBoundedExecutor("ranged-download-", rangedDownloadParallelism);
+    }
+
+    /**
+     * Executor running the blocking CLO-SET reads that may be hedged, so the caller can take whichever of the two
+     * attempts answers first
+     *
+     * @return ExecutorService
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService hedgedReadExecutor() {
+        return newBoundedExecutor("hedged-read-", hedgedReadParallelism);
+    }
+
+    /**
+     * Scheduler used to time out asynchronous work
+     *
+     * @return ScheduledExecutorService
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ScheduledExecutorService timeoutScheduler() {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("timeout-");
+        threadFactory.setDaemon(true);
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, threadFactory);
+        // Timeouts are cancelled far more often than they fire, do not keep them queued
+        scheduler.setRemoveOnCancelPolicy(true);
+        return scheduler;
+    }
+
+    /**
+     * newBoundedExecutor - Fixed size pool with an unbounded queue, core threads time out when idle. In virtual thread
+     * mode the pool threads are virtual; the pool size still caps how many calls go upstream at once.
+     *
+     * @param threadNamePrefix String threadNamePrefix
+     * @param threads int threads
+     * @return ExecutorService
+     */
+    private ExecutorService newBoundedExecutor(String threadNamePrefix, int threads) {
+        ThreadFactory threadFactory;
+        if (useVirtualThreads()) {
+            threadFactory = VirtualThreads.newThreadFactory(threadNamePrefix);
+        } else {
+            CustomizableThreadFactory platformThreadFactory = new CustomizableThreadFactory(threadNamePrefix);
+            platformThreadFactory.setDaemon(true);
+            threadFactory = platformThreadFactory;
+        }
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), threadFactory);
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private boolean useVirtualThreads() {
+        if (virtualThreads && !VirtualThreads.isSupported()) {
+            logger.warn("WARN::ExecutorConfig: useVirtualThreads() csc.threads.virtual is set but this JDK has no virtual threads, using platform threads");
+            return false;
+        }
+        return virtualThreads;
+    }
+}
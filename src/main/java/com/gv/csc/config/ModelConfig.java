@@ -1,8 +1,19 @@
 package com.gv.csc.config;
 
+import com.gv.csc.helper.AssetBlobStore;
+import com.gv.csc.helper.AssetTransferHelper;
 import com.gv.csc.helper.CLOSETHelper;
+import com.gv.csc.helper.CircuitBreakers;
+import com.gv.csc.helper.HedgingExecutor;
 import com.gv.csc.helper.PLMHelper;
+import com.gv.csc.helper.PLMLOVs;
+import com.gv.csc.helper.PublishStageTimings;
+import com.gv.csc.helper.RangedDownloader;
+import com.gv.csc.helper.ReactiveRestService;
 import com.gv.csc.helper.RestService;
+import com.gv.csc.helper.RetryPolicy;
+import com.gv.csc.helper.TechpackCache;
+import com.gv.csc.helper.UpstreamBulkheads;
 import org.springframework.beans.factory.config.ConfigurableBeanFactory;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Scope;
@@ -24,4 +35,59 @@ public class ModelConfig {
     public RestService restService() {
         return new RestService();
     }
+
+    @Bean
+    public ReactiveRestService reactiveRestService() {
+        return new ReactiveRestService();
+    }
+
+    @Bean
+    public PLMLOVs plmLOVs() {
+        return new PLMLOVs();
+    }
+
+    @Bean
+    public AssetTransferHelper assetTransferHelper() {
+        return new AssetTransferHelper();
+    }
+
+    @Bean
+    public RangedDownloader rangedDownloader() {
+        return new RangedDownloader();
+    }
+
+    @Bean
+    public AssetBlobStore assetBlobStore() {
+        return new AssetBlobStore();
+    }
+
+    @Bean
+    public PublishStageTimings publishStageTimings() {
+        return new PublishStageTimings();
+    }
+
+    @Bean
+    public TechpackCache techpackCache() {
+        return new TechpackCache();
+    }
+
+    @Bean
+    public UpstreamBulkheads upstreamBulkheads() {
+        return new UpstreamBulkheads();
+    }
+
+    @Bean
+    public RetryPolicy retryPolicy() {
+        return new RetryPolicy();
+    }
+
+    @Bean
+    public CircuitBreakers circuitBreakers() {
+        return new CircuitBreakers();
+    }
+
+    @Bean
+    public HedgingExecutor hedgingExecutor() {
+        return new HedgingExecutor();
+    }
 }
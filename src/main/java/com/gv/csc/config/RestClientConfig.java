@@ -0,0 +1,284 @@
+package com.gv.csc.config;
+
+import com.gv.csc.util.CLOSETConstants;
+import io.netty.channel.ChannelOption;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslContextBuilder;
+import okhttp3.ConnectionPool;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import org.apache.http.HeaderElement;
+import org.apache.http.HeaderElementIterator;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.NoopHostnameVerifier;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.message.BasicHeaderElementIterator;
+import org.apache.http.protocol.HTTP;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.ssl.SSLContexts;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+import reactor.netty.resources.LoopResources;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLParameters;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RestClientConfig - Shared, pooled HTTP client engine used for all outbound calls to CLO-SET and PLM
+ */
+@Configuration
+public class RestClientConfig {
+
+    Logger logger = LoggerFactory.getLogger(RestClientConfig.class);
+
+    @Value("${csc.http.max-total:200}")
+    private int maxTotal;
+
+    @Value("${csc.http.max-per-route:20}")
+    private int maxPerRoute;
+
+    @Value("${csc.http.closet-max-per-route:50}")
+    private int closetMaxPerRoute;
+
+    @Value("${csc.http.keep-alive-seconds:60}")
+    private long keepAliveSeconds;
+
+    @Value("${csc.http.idle-eviction-seconds:30}")
+    private long idleEvictionSeconds;
+
+    @Value("${csc.http.connect-timeout-ms:10000}")
+    private int connectTimeoutMs;
+
+    @Value("${csc.http.read-timeout-ms:300000}")
+    private int readTimeoutMs;
+
+    @Value("${csc.http.pool-wait-timeout-ms:30000}")
+    private int poolWaitTimeoutMs;
+
+    @Value("${csc.plm.okhttp.max-idle-connections:10}")
+    private int okHttpMaxIdleConnections;
+
+    @Value("${csc.plm.okhttp.connect-timeout-ms:10000}")
+    private long okHttpConnectTimeoutMs;
+
+    @Value("${csc.http.reactive.max-connections:200}")
+    private int reactiveMaxConnections;
+
+    @Value("${csc.http.reactive.event-loop-threads:4}")
+    private int reactiveEventLoopThreads;
+
+    @Value("${csc.http.reactive.max-in-memory-size-bytes:16777216}")
+    private int reactiveMaxInMemorySize;
+
+    /**
+     * Connection pool shared by every outbound call. Connections are pooled per route (scheme, host and port),
+     * so CLO-SET and each PLM host get their own set of kept-alive connections.
+     *
+     * @return pooling connection manager
+     */
+    @Bean(destroyMethod = "shutdown")
+    public PoolingHttpClientConnectionManager httpConnectionManager() {
+        // One SSL context for the whole pool so TLS sessions are cached and resumed across connections
+        SSLConnectionSocketFactory sslSocketFactory = new SSLConnectionSocketFactory(SSLContexts.createDefault(), NoopHostnameVerifier.INSTANCE);
+        Registry<ConnectionSocketFactory> registry = RegistryBuilder.<ConnectionSocketFactory>create()
+                .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                .register("https", sslSocketFactory)
+                .build();
+
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager(registry);
+        connectionManager.setMaxTotal(maxTotal);
+        connectionManager.setDefaultMaxPerRoute(maxPerRoute);
+
+        URI closetUri = URI.create(CLOSETConstants.CLOSET_BASE_URL);
+        HttpHost closetHost = new HttpHost(closetUri.getHost(), 443, closetUri.getScheme());
+        connectionManager.setMaxPerRoute(new HttpRoute(closetHost, null, true), closetMaxPerRoute);
+
+        logger.info("INFO::RestClientConfig: httpConnectionManager() maxTotal - " + maxTotal + ", maxPerRoute - " + maxPerRoute
+                + ", closetMaxPerRoute - " + closetMaxPerRoute);
+        return connectionManager;
+    }
+
+    /**
+     * Pooled HTTP client with keep-alive and background eviction of idle/expired connections
+     *
+     * @param httpConnectionManager PoolingHttpClientConnectionManager httpConnectionManager
+     * @return CloseableHttpClient
+     */
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient pooledHttpClient(PoolingHttpClientConnectionManager httpConnectionManager) {
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(connectTimeoutMs)
+                .setSocketTimeout(readTimeoutMs)
+                .setConnectionRequestTimeout(poolWaitTimeoutMs)
+                .build();
+
+        return HttpClients.custom()
+                .setConnectionManager(httpConnectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .setKeepAliveStrategy(keepAliveStrategy())
+                // Connections are not bound to a user principal, so every caller can reuse them
+                .disableConnectionState()
+                .evictExpiredConnections()
+                .evictIdleConnections(idleEvictionSeconds, TimeUnit.SECONDS)
+                .build();
+    }
+
+    /**
+     * RestTemplate on top of the pooled HTTP client
+     *
+     * @param pooledHttpClient CloseableHttpClient pooledHttpClient
+     * @return RestTemplate
+     */
+    @Bean
+    @Primary
+    public RestTemplate pooledRestTemplate(CloseableHttpClient pooledHttpClient) {
+        HttpComponentsClientHttpRequestFactory requestFactory = new HttpComponentsClientHttpRequestFactory(pooledHttpClient);
+        return new RestTemplate(requestFactory);
+    }
+
+    /**
+     * RestTemplate for uploads: request bodies are written straight to the connection (chunked) instead of
+     * being buffered in memory, so a streamed part only holds one copy buffer at a time
+     *
+     * @param pooledHttpClient CloseableHttpClient pooledHttpClient
+     * @return RestTemplate
+     */
+    @Bean
+    public RestTemplate streamingRestTemplate(CloseableHttpClient pooledHttpClient) {
+        HttpComponentsClientHttpRequestFactory requestFactory = new HttpComponentsClientHttpRequestFactory(pooledHttpClient);
+        requestFactory.setBufferRequestBody(false);
+        return new RestTemplate(requestFactory);
+    }
+
+    /**
+     * Connection pool of the PLM OkHttp client, idle connections are closed on shutdown
+     *
+     * @return ConnectionPool
+     */
+    @Bean(destroyMethod = "evictAll")
+    public ConnectionPool plmOkHttpConnectionPool() {
+        return new ConnectionPool(okHttpMaxIdleConnections, keepAliveSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * OkHttp client shared by the PLM write path (postStyle). Calls derive their own timeouts from it with
+     * newBuilder(), which keeps the connection pool. HTTP/2 is used when the PLM negotiates it.
+     *
+     * @param plmOkHttpConnectionPool ConnectionPool plmOkHttpConnectionPool
+     * @return OkHttpClient
+     */
+    @Bean
+    public OkHttpClient plmOkHttpClient(ConnectionPool plmOkHttpConnectionPool) {
+        return new OkHttpClient.Builder()
+                .connectionPool(plmOkHttpConnectionPool)
+                .protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1))
+                .connectTimeout(okHttpConnectTimeoutMs, TimeUnit.MILLISECONDS)
+                .readTimeout(readTimeoutMs, TimeUnit.MILLISECONDS)
+                .writeTimeout(readTimeoutMs, TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    /**
+     * Connection pool of the non-blocking client, with the same keep-alive and eviction settings as the blocking pool
+     *
+     * @return ConnectionProvider
+     */
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider reactiveConnectionProvider() {
+        return ConnectionProvider.builder("csc-reactive")
+                .maxConnections(reactiveMaxConnections)
+                .pendingAcquireTimeout(Duration.ofMillis(poolWaitTimeoutMs))
+                .maxIdleTime(Duration.ofSeconds(keepAliveSeconds))
+                .evictInBackground(Duration.ofSeconds(idleEvictionSeconds))
+                .build();
+    }
+
+    /**
+     * Small event loop shared by every in-flight non-blocking call
+     *
+     * @return LoopResources
+     */
+    @Bean(destroyMethod = "dispose")
+    public LoopResources reactiveLoopResources() {
+        return LoopResources.create("csc-reactive", reactiveEventLoopThreads, true);
+    }
+
+    /**
+     * Non-blocking WebClient for fan-out calls to CLO-SET and PLM
+     *
+     * @param reactiveConnectionProvider ConnectionProvider reactiveConnectionProvider
+     * @param reactiveLoopResources LoopResources reactiveLoopResources
+     * @return WebClient
+     * @throws SSLException when the SSL context cannot be created
+     */
+    @Bean
+    public WebClient reactiveWebClient(ConnectionProvider reactiveConnectionProvider, LoopResources reactiveLoopResources) throws SSLException {
+        SslContext sslContext = SslContextBuilder.forClient().build();
+        HttpClient httpClient = HttpClient.create(reactiveConnectionProvider)
+                .runOn(reactiveLoopResources)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeoutMs)
+                .responseTimeout(Duration.ofMillis(readTimeoutMs))
+                .secure(sslSpec -> sslSpec.sslContext(sslContext).handlerConfigurator(sslHandler -> {
+                    // Certificates are verified but host names are not, as in the blocking pool
+                    SSLEngine sslEngine = sslHandler.engine();
+                    SSLParameters sslParameters = sslEngine.getSSLParameters();
+                    sslParameters.setEndpointIdentificationAlgorithm(null);
+                    sslEngine.setSSLParameters(sslParameters);
+                }));
+
+        logger.info("INFO::RestClientConfig: reactiveWebClient() maxConnections - " + reactiveMaxConnections
+                + ", eventLoopThreads - " + reactiveEventLoopThreads);
+        return WebClient.builder()
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .codecs(codecs -> codecs.defaultCodecs().maxInMemorySize(reactiveMaxInMemorySize))
+                .build();
+    }
+
+    /**
+     * Honour the server Keep-Alive timeout when sent, otherwise keep connections for the configured time
+     *
+     * @return ConnectionKeepAliveStrategy
+     */
+    private ConnectionKeepAliveStrategy keepAliveStrategy() {
+        return (HttpResponse response, HttpContext context) -> {
+            HeaderElementIterator iterator = new BasicHeaderElementIterator(response.headerIterator(HTTP.CONN_KEEP_ALIVE));
+            while (iterator.hasNext()) {
+                HeaderElement element = iterator.nextElement();
+                if ("timeout".equalsIgnoreCase(element.getName()) && element.getValue() != null) {
+                    try {
+                        return Long.parseLong(element.getValue()) * 1000;
+                    } catch (NumberFormatException nfe) {
+                        logger.debug("DEBUG::RestClientConfig: keepAliveStrategy() invalid timeout - " + element.getValue());
+                    }
+                }
+            }
+            return keepAliveSeconds * 1000;
+        };
+    }
+}
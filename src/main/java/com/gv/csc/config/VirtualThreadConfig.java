@@ -0,0 +1,36 @@
+package com.gv.csc.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * VirtualThreadConfig - Opt-in (csc.threads.virtual=true) virtual thread mode for the embedded Tomcat: every request
+ * is handled on its own virtual thread instead of a thread of the fixed size connector pool. Needs Java 21.
+ */
+@Configuration
+@ConditionalOnProperty(name = "csc.threads.virtual", havingValue = "true")
+public class VirtualThreadConfig {
+
+    Logger logger = LoggerFactory.getLogger(VirtualThreadConfig.class);
+
+    /**
+     * Runs the Tomcat request processing on virtual threads
+     *
+     * @return TomcatProtocolHandlerCustomizer
+     */
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer() {
+        return protocolHandler -> {
+            if (!VirtualThreads.isSupported()) {
+                logger.warn("WARN::VirtualThreadConfig: virtualThreadProtocolHandlerCustomizer() this JDK has no virtual threads, keeping the Tomcat thread pool");
+                return;
+            }
+            logger.info("INFO::VirtualThreadConfig: virtualThreadProtocolHandlerCustomizer() handling requests on virtual threads");
+            protocolHandler.setExecutor(VirtualThreads.newThreadPerTaskExecutor("tomcat-handler-"));
+        };
+    }
+}
@@ -0,0 +1,75 @@
+package com.gv.csc.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * VirtualThreads - Access to Java 21 virtual threads from code compiled for Java 8
+ *
+ * The JDK API is looked up reflectively, so the connector still builds and runs on older JDKs; on those
+ * isSupported() returns false and the platform thread executors are used instead.
+ */
+final class VirtualThreads {
+
+    private static final Logger logger = LoggerFactory.getLogger(VirtualThreads.class);
+
+    private static final Method OF_VIRTUAL = findMethod(Thread.class, "ofVirtual");
+    private static final Method NEW_THREAD_PER_TASK_EXECUTOR = findMethod(Executors.class, "newThreadPerTaskExecutor", ThreadFactory.class);
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * isSupported - Whether the running JDK provides virtual threads
+     *
+     * @return boolean
+     */
+    static boolean isSupported() {
+        return OF_VIRTUAL != null && NEW_THREAD_PER_TASK_EXECUTOR != null;
+    }
+
+    /**
+     * newThreadFactory - Factory creating virtual threads named prefix0, prefix1, ...
+     *
+     * @param threadNamePrefix String threadNamePrefix
+     * @return ThreadFactory
+     */
+    static ThreadFactory newThreadFactory(String threadNamePrefix) {
+        try {
+            Object builder = OF_VIRTUAL.invoke(null);
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, threadNamePrefix, 0L);
+            return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException exc) {
+            throw new IllegalStateException("Virtual threads are not available on this JDK", exc);
+        }
+    }
+
+    /**
+     * newThreadPerTaskExecutor - Unbounded executor starting one virtual thread per task
+     *
+     * @param threadNamePrefix String threadNamePrefix
+     * @return ExecutorService
+     */
+    static ExecutorService newThreadPerTaskExecutor(String threadNamePrefix) {
+        try {
+            return (ExecutorService) NEW_THREAD_PER_TASK_EXECUTOR.invoke(null, newThreadFactory(threadNamePrefix));
+        } catch (ReflectiveOperationException | RuntimeException exc) {
+            throw new IllegalStateException("Virtual threads are not available on this JDK", exc);
+        }
+    }
+
+    private static Method findMethod(Class<?> type, String name, Class<?>... parameterTypes) {
+        try {
+            return type.getMethod(name, parameterTypes);
+        } catch (NoSuchMethodException exc) {
+            logger.debug("DEBUG::VirtualThreads: findMethod() " + type.getSimpleName() + "." + name + " not available");
+            return null;
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package com.gv.csc.controller;
+
+import com.gv.csc.helper.AssetBlobStore;
+import com.gv.csc.helper.CircuitBreakers;
+import com.gv.csc.helper.HedgingExecutor;
+import com.gv.csc.helper.PLMLOVs;
+import com.gv.csc.helper.PublishStageTimings;
+import com.gv.csc.helper.RestService;
+import com.gv.csc.helper.RetryPolicy;
+import com.gv.csc.helper.TechpackCache;
+import com.gv.csc.helper.UpstreamBulkheads;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * AdminController - End points exposing the connector's internal caches and statistics
+ */
+@RestController
+@RequestMapping("/admin")
+public class AdminController {
+
+    @Autowired
+    private PLMLOVs plmLOVs;
+
+    @Autowired
+    private TechpackCache techpackCache;
+
+    @Autowired
+    private RestService restService;
+
+    @Autowired
+    private AssetBlobStore assetBlobStore;
+
+    @Autowired
+    private PublishStageTimings publishStageTimings;
+
+    @Autowired
+    private UpstreamBulkheads upstreamBulkheads;
+
+    @Autowired
+    private RetryPolicy retryPolicy;
+
+    @Autowired
+    private CircuitBreakers circuitBreakers;
+
+    @Autowired
+    private HedgingExecutor hedgingExecutor;
+
+    Logger logger = LoggerFactory.getLogger(AdminController.class);
+
+    /**
+     * getLOVCacheStatistics - Get PLM LOV cache statistics
+     * @return Response entity with size, hit and miss counts
+     */
+    @GetMapping(value = "/lovcache", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> getLOVCacheStatistics() {
+        logger.info("INFO::AdminController: getLOVCacheStatistics() started.");
+        JSONObject outJson = plmLOVs.getStatistics();
+        logger.debug("DEBUG::AdminController: getLOVCacheStatistics() outJson - " + outJson);
+        return ResponseEntity.ok(outJson.toString());
+    }
+
+    /**
+     * clearLOVCache - Clear the PLM LOV cache
+     * @return Response entity with cache statistics after clearing
+     */
+    @DeleteMapping(value = "/lovcache", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> clearLOVCache() {
+        logger.info("INFO::AdminController: clearLOVCache() started.");
+        plmLOVs.clear();
+        return ResponseEntity.ok(plmLOVs.getStatistics().toString());
+    }
+
+    /**
+     * getTechpackCacheStatistics - Get CLO-SET techpack cache statistics
+     * @return Response entity with entries, bytes, hit and miss counts
+     */
+    @GetMapping(value = "/techpackcache", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> getTechpackCacheStatistics() {
+        logger.info("INFO::AdminController: getTechpackCacheStatistics() started.");
+        JSONObject outJson = techpackCache.getStatistics();
+        logger.debug("DEBUG::AdminController: getTechpackCacheStatistics() outJson - " + outJson);
+        return ResponseEntity.ok(outJson.toString());
+    }
+
+    /**
+     * clearTechpackCache - Clear the CLO-SET techpack cache
+     * @return Response entity with cache statistics after clearing
+     */
+    @DeleteMapping(value = "/techpackcache", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> clearTechpackCache() {
+        logger.info("INFO::AdminController: clearTechpackCache() started.");
+        techpackCache.clear();
+        return ResponseEntity.ok(techpackCache.getStatistics().toString());
+    }
+
+    /**
+     * getOkHttpStatistics - Get connection pool and call statistics of the PLM OkHttp client
+     * @return Response entity with connection counts and call counts
+     */
+    @GetMapping(value = "/okhttp", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> getOkHttpStatistics() {
+        logger.info("INFO::AdminController: getOkHttpStatistics() started.");
+        JSONObject outJson = restService.getPLMClientStatistics();
+        logger.debug("DEBUG::AdminController: getOkHttpStatistics() outJson - " + outJson);
+        return ResponseEntity.ok(outJson.toString());
+    }
+
+    /**
+     * getBlobStoreStatistics - Get statistics of the local store of downloaded CLO-SET assets
+     * @return Response entity with blobs, bytes, hit and miss counts
+     */
+    @GetMapping(value = "/blobstore", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> getBlobStoreStatistics() {
+        logger.info("INFO::AdminController: getBlobStoreStatistics() started.");
+        JSONObject outJson = assetBlobStore.getStatistics();
+        logger.debug("DEBUG::AdminController: getBlobStoreStatistics() outJson - " + outJson);
+        return ResponseEntity.ok(outJson.toString());
+    }
+
+    /**
+     * clearBlobStore - Delete every asset of the local blob store
+     * @return Response entity with blob store statistics after clearing
+     */
+    @DeleteMapping(value = "/blobstore", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> clearBlobStore() {
+        logger.info("INFO::AdminController: clearBlobStore() started.");
+        assetBlobStore.clear();
+        return ResponseEntity.ok(assetBlobStore.getStatistics().toString());
+    }
+
+    /**
+     * getPublishStageTimings - Get the timings of the publish stages
+     * @return Response entity with runs, average and max duration and critical path count per stage
+     */
+    @GetMapping(value = "/publishstages", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> getPublishStageTimings() {
+        logger.info("INFO::AdminController: getPublishStageTimings() started.");
+        JSONObject outJson = publishStageTimings.getStatistics();
+        logger.debug("DEBUG::AdminController: getPublishStageTimings() outJson - " + outJson);
+        return ResponseEntity.ok(outJson.toString());
+    }
+
+    /**
+     * getCoalescingStatistics - Get the statistics of the coalescing of identical concurrent GET calls
+     * @return Response entity with upstream calls, coalesced calls and calls in flight
+     */
+    @GetMapping(value = "/coalescing", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> getCoalescingStatistics() {
+        logger.info("INFO::AdminController: getCoalescingStatistics() started.");
+        JSONObject outJson = restService.getCoalescingStatistics();
+        logger.debug("DEBUG::AdminController: getCoalescingStatistics() outJson - " + outJson);
+        return ResponseEntity.ok(outJson.toString());
+    }
+
+    /**
+     * getBulkheadStatistics - Get the limits and usage of the upstream bulkheads
+     * @return Response entity with limit, calls in flight, waiting, latency and rejections per host and operation
+     */
+    @GetMapping(value = "/bulkheads", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> getBulkheadStatistics() {
+        logger.info("INFO::AdminController: getBulkheadStatistics() started.");
+        JSONObject outJson = upstreamBulkheads.getStatistics();
+        logger.debug("DEBUG::AdminController: getBulkheadStatistics() outJson - " + outJson);
+        return ResponseEntity.ok(outJson.toString());
+    }
+
+    /**
+     * getRetryStatistics - Get the retries performed and suppressed per upstream host
+     * @return Response entity with calls, retries, retries suppressed by budget or Retry-After and exhausted calls
+     */
+    @GetMapping(value = "/retries", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> getRetryStatistics() {
+        logger.info("INFO::AdminController: getRetryStatistics() started.");
+        JSONObject outJson = retryPolicy.getStatistics();
+        logger.debug("DEBUG::AdminController: getRetryStatistics() outJson - " + outJson);
+        return ResponseEntity.ok(outJson.toString());
+    }
+
+    /**
+     * clearRetryStatistics - Reset the retry statistics and budgets
+     * @return Response entity with the cleared statistics
+     */
+    @DeleteMapping(value = "/retries", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> clearRetryStatistics() {
+        logger.info("INFO::AdminController: clearRetryStatistics() started.");
+        retryPolicy.clear();
+        return ResponseEntity.ok(retryPolicy.getStatistics().toString());
+    }
+
+    /**
+     * getCircuitBreakers - Get the state of the circuit breakers of the upstreams
+     * @return Response entity with state, recent failures and rejected calls per upstream base url
+     */
+    @GetMapping(value = "/breakers", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> getCircuitBreakers() {
+        logger.info("INFO::AdminController: getCircuitBreakers() started.");
+        JSONObject outJson = circuitBreakers.getStatistics();
+        logger.debug("DEBUG::AdminController: getCircuitBreakers() outJson - " + outJson);
+        return ResponseEntity.ok(outJson.toString());
+    }
+
+    /**
+     * getHedging - Get the statistics of the hedged CLO-SET reads
+     * @return Response entity with calls, hedges, hedges that won and the hedge delay per operation
+     */
+    @GetMapping(value = "/hedging", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> getHedging() {
+        logger.info("INFO::AdminController: getHedging() started.");
+        JSONObject outJson = hedgingExecutor.getStatistics();
+        logger.debug("DEBUG::AdminController: getHedging() outJson - " + outJson);
+        return ResponseEntity.ok(outJson.toString());
+    }
+}
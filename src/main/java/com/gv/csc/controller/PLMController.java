@@ -1,17 +1,23 @@
 package com.gv.csc.controller;
 
+import com.gv.csc.entity.PublishJob;
 import com.gv.csc.exceptions.CLOSETException;
 import com.gv.csc.exceptions.PLMException;
 import com.gv.csc.helper.PLMHelper;
 import com.gv.csc.service.PLMService;
+import com.gv.csc.service.PublishJobService;
+import com.gv.csc.util.PLMConstants;
 import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
 import org.springframework.web.multipart.MultipartHttpServletRequest;
 
 import javax.servlet.http.HttpSession;
@@ -31,6 +37,12 @@ public class PLMController {
     @Autowired
     private PLMHelper plmHelper;
 
+    @Autowired
+    private PublishJobService publishJobService;
+
+    @Value("${csc.publish.jobs.await-timeout-ms:600000}")
+    private long publishAwaitTimeoutMs;
+
     Logger logger = LoggerFactory.getLogger(PLMController.class);
 
     /**
@@ -183,28 +195,81 @@ public class PLMController {
     }
 	
 	/**
-     * publish - End point to publish data to PLM
-     * @param publishData MultipartHttpServletRequest request
+     * publish - End point to publish data to PLM. The publish runs as a job on the publish worker pool and the
+     * response is sent once it finishes; when it takes longer than the await timeout the job status is returned
+     * instead, to be polled on /publishjob/{jobId}
+     * @param publishData String publishData
      * @param httpHeaders Map<String, String> httpHeaders
      * @return publish data json
      */
 	@PostMapping(value = "/publishdata", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<?> publish(@RequestBody String publishData, @RequestHeader Map<String, String> httpHeaders, HttpSession session ) {
+    public DeferredResult<ResponseEntity<?>> publish(@RequestBody String publishData, @RequestHeader Map<String, String> httpHeaders, HttpSession session ) {
         logger.info("INFO::PLMController: publish() started."+publishData);
+        String plmUrl = (String) session.getAttribute("plmurl");
+        //Queue the publish, the request thread is released while it runs
+        PublishJob job = publishJobService.submitPublish(new JSONObject(publishData), httpHeaders, plmUrl);
+        String jobId = job.getJobId();
+
+        DeferredResult<ResponseEntity<?>> deferredResult = new DeferredResult<>(publishAwaitTimeoutMs);
+        deferredResult.onTimeout(() -> {
+            logger.info("INFO::PLMController: publish() still running, returning job status - " + jobId);
+            deferredResult.setResult(ResponseEntity.status(HttpStatus.ACCEPTED)
+                    .body(publishJobService.prepareJobStatusResponse(publishJobService.getJob(jobId)).toString()));
+        });
+        publishJobService.getCompletion(jobId).thenAccept(finishedJob -> {
+            JSONObject outJson;
+            if (PLMConstants.PUBLISH_JOB_COMPLETED.equals(finishedJob.getStatus())) {
+                outJson = new JSONObject(finishedJob.getResult());
+                logger.debug("DEBUG::PLMController: publish() outJson - " + outJson);
+                deferredResult.setResult(ResponseEntity.ok(outJson.toString()));
+            } else {
+                //Prepare Error JSON response with the exception message and code
+                HttpStatus status = publishJobService.resolveStatus(finishedJob);
+                outJson = PLMHelper.prepareErrorResponse(new PLMException(finishedJob.getErrorMessage(), status));
+                logger.error("ERROR::PLMController: publish() -> outJson : " + outJson);
+                deferredResult.setResult(ResponseEntity.status(status).body(outJson.toString()));
+            }
+            logger.info("INFO::PLMController: publish() end.");
+        });
+        return deferredResult;
+    }
+
+    /**
+     * submitPublishJob - End point to queue a publish to PLM without waiting for it
+     * @param publishData String publishData
+     * @param httpHeaders Map<String, String> httpHeaders
+     * @return publish job status json
+     */
+    @PostMapping(value = "/publishjob", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> submitPublishJob(@RequestBody String publishData, @RequestHeader Map<String, String> httpHeaders, HttpSession session ) {
+        logger.info("INFO::PLMController: submitPublishJob() started.");
+        String plmUrl = (String) session.getAttribute("plmurl");
+        PublishJob job = publishJobService.submitPublish(new JSONObject(publishData), httpHeaders, plmUrl);
+        JSONObject outJson = publishJobService.prepareJobStatusResponse(job);
+        logger.debug("DEBUG::PLMController: submitPublishJob() outJson - " + outJson);
+        logger.info("INFO::PLMController: submitPublishJob() end.");
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(outJson.toString());
+    }
+
+    /**
+     * getPublishJob - End point to poll the status, stage and result of a publish job
+     * @param jobId String jobId
+     * @param httpHeaders Map<String, String> httpHeaders identifying the CLO-SET and PLM user who submitted the job
+     * @return publish job status json
+     */
+    @GetMapping(value = "/publishjob/{jobId}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> getPublishJob(@PathVariable String jobId, @RequestHeader Map<String, String> httpHeaders) {
+        logger.info("INFO::PLMController: getPublishJob() started.");
         JSONObject outJson;
-        try {
-        	String plmUrl = (String) session.getAttribute("plmurl");
-            //Calling service method used to post the style details to PLM
-            outJson = plmService.publishToPLM(new JSONObject(publishData), httpHeaders, plmUrl);
-        } catch (PLMException exe) {
-            exe.printStackTrace();
-            //Prepare Error JSON response with the exception message and code
-            outJson = PLMHelper.prepareErrorResponse(exe);
-            logger.error("ERROR::CLOSETController: publish() -> outJson : " + outJson);
-            return ResponseEntity.status(exe.getStatusCode()).body(outJson.toString());
+        // Another user's job is reported as not found, so job ids cannot be probed
+        PublishJob job = publishJobService.getJob(jobId, httpHeaders);
+        if (job == null) {
+            outJson = PLMHelper.prepareErrorResponse(new PLMException("Publish job " + jobId + " not found.", HttpStatus.NOT_FOUND));
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(outJson.toString());
         }
-        logger.debug("DEBUG::PLMController: publish() outJson - " + outJson);
-        logger.info("INFO::PLMController: publish() end.");
+        outJson = publishJobService.prepareJobStatusResponse(job);
+        logger.debug("DEBUG::PLMController: getPublishJob() outJson - " + outJson);
+        logger.info("INFO::PLMController: getPublishJob() end.");
         return ResponseEntity.ok(outJson.toString());
     }
 	
@@ -242,7 +307,7 @@ public class PLMController {
          logger.debug("DEBUG::PLMController: getPLMResultConfig() test output) - " + outJson);
          logger.info("INFO::PLMController: getPLMResultConfig() test output end.");
          logger.debug("DEBUG::PLMController: getPLMResultConfig() outJson 1) - " + outJson);
-         logger.info("INFO::PLMController: getPLMResultConfig() end";);
+         logger.info("INFO::PLMController: getPLMResultConfig() end");
          logger.debug("PLMController: getPLMResultConfig() outJson) - " + outJson);
          logger.info("PLMController: getPLMResultConfig() end.");
          logger.debug("PLMController: getPLMResultConfig() outJson) - " + outJson);
@@ -0,0 +1,19 @@
+package com.gv.csc.dao;
+
+import com.gv.csc.entity.PublishCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Date;
+
+@Repository
+public interface PublishCheckpointDAO extends JpaRepository<PublishCheckpoint,Long> {
+    public PublishCheckpoint findFirstByPublishKeyAndStageAndCreateTimeStampAfterOrderByCreateTimeStampDesc(String publishKey, String stage, Date createdAfter);
+    @Transactional
+    public long deleteByPublishKeyAndStage(String publishKey, String stage);
+    @Transactional
+    public long deleteByPublishKey(String publishKey);
+    @Transactional
+    public long deleteByCreateTimeStampBefore(Date createTimeStamp);
+}
@@ -0,0 +1,25 @@
+package com.gv.csc.dao;
+
+import com.gv.csc.entity.PublishJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+@Repository
+public interface PublishJobDAO extends JpaRepository<PublishJob,Long> {
+    public PublishJob findByJobId(String jobId);
+    public List<PublishJob> findByStatusInOrderByCreateTimeStampAsc(Collection<String> statuses);
+    @Transactional
+    public long deleteByStatusInAndEndTimeStampBefore(Collection<String> statuses, Date endTimeStamp);
+    @Transactional
+    @Modifying
+    @Query("update PublishJob job set job.requestHeaders = null where job.status in :statuses and job.requestHeaders is not null")
+    public int clearRequestHeadersByStatusIn(@Param("statuses") Collection<String> statuses);
+}
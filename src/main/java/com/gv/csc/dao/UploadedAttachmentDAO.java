@@ -0,0 +1,16 @@
+package com.gv.csc.dao;
+
+import com.gv.csc.entity.UploadedAttachment;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Date;
+
+@Repository
+public interface UploadedAttachmentDAO extends JpaRepository<UploadedAttachment,Long> {
+    public UploadedAttachment findFirstByPlmUrlAndContentHashAndCreateTimeStampAfterOrderByCreateTimeStampDesc(String plmUrl, String contentHash, Date createdAfter);
+    public UploadedAttachment findFirstByPlmUrlAndSourceKeyAndCreateTimeStampAfterOrderByCreateTimeStampDesc(String plmUrl, String sourceKey, Date createdAfter);
+    @Transactional
+    public long deleteByCreateTimeStampBefore(Date createTimeStamp);
+}
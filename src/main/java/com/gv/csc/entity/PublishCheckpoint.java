@@ -0,0 +1,35 @@
+package com.gv.csc.entity;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import javax.persistence.*;
+import java.util.Date;
+
+@Entity
+@Table(name = "PublishCheckpoint", indexes = {@Index(name = "idx_publish_checkpoint_key", columnList = "publish_key,stage")})
+@Getter @Setter @NoArgsConstructor
+public class PublishCheckpoint {
+
+    @Id
+    @GeneratedValue(strategy= GenerationType.AUTO)
+    public long id;
+
+    @Column(name = "publish_key", length = 64)
+    public String publishKey;
+
+    @Column(name = "stage", length = 64)
+    public String stage;
+
+    @Column(name = "fingerprint", length = 64)
+    public String fingerprint;
+
+    @Lob
+    @Column(name = "data")
+    public String data;
+
+    @Column(name = "create_time_stamp")
+    public Date createTimeStamp;
+
+}
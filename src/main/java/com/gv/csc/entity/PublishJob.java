@@ -0,0 +1,70 @@
+package com.gv.csc.entity;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import javax.persistence.*;
+import java.util.Date;
+
+@Entity
+@Table(name = "PublishJob", indexes = {@Index(name = "idx_publish_job_job_id", columnList = "job_id", unique = true)})
+@Getter @Setter @NoArgsConstructor
+public class PublishJob {
+
+    @Id
+    @GeneratedValue(strategy= GenerationType.AUTO)
+    public long id;
+
+    @Column(name = "job_id", length = 64)
+    public String jobId;
+
+    @Column(name = "status", length = 32)
+    public String status;
+
+    @Column(name = "stage", length = 64)
+    public String stage;
+
+    @Lob
+    @Column(name = "publish_data")
+    public String publishData;
+
+    @Lob
+    @Column(name = "request_headers")
+    public String requestHeaders;
+
+    @Column(name = "plm_url", length = 1024)
+    public String plmUrl;
+
+    @Lob
+    @Column(name = "result")
+    public String result;
+
+    @Column(name = "error_message", length = 4000)
+    public String errorMessage;
+
+    @Column(name = "status_code")
+    public int statusCode;
+
+    @Column(name = "attempts")
+    public int attempts;
+
+    @Column(name = "closet_user")
+    public String closetUser;
+
+    @Column(name = "plm_user")
+    public String plmUser;
+
+    @Column(name = "create_time_stamp")
+    public Date createTimeStamp;
+
+    @Column(name = "start_time_stamp")
+    public Date startTimeStamp;
+
+    @Column(name = "modify_time_stamp")
+    public Date modifyTimeStamp;
+
+    @Column(name = "end_time_stamp")
+    public Date endTimeStamp;
+
+}
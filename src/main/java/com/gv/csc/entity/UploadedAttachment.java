@@ -0,0 +1,42 @@
+package com.gv.csc.entity;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import javax.persistence.*;
+import java.util.Date;
+
+@Entity
+@Table(name = "UploadedAttachment", indexes = {
+        @Index(name = "idx_uploaded_attachment_hash", columnList = "plm_url,content_hash"),
+        @Index(name = "idx_uploaded_attachment_source", columnList = "plm_url,source_key")})
+@Getter @Setter @NoArgsConstructor
+public class UploadedAttachment {
+
+    @Id
+    @GeneratedValue(strategy= GenerationType.AUTO)
+    public long id;
+
+    @Column(name = "plm_url", length = 1024)
+    public String plmUrl;
+
+    @Column(name = "content_hash", length = 64)
+    public String contentHash;
+
+    @Column(name = "source_key", length = 2048)
+    public String sourceKey;
+
+    @Column(name = "file_name", length = 1024)
+    public String fileName;
+
+    @Column(name = "content_length")
+    public long contentLength;
+
+    @Column(name = "location", length = 4000)
+    public String location;
+
+    @Column(name = "create_time_stamp")
+    public Date createTimeStamp;
+
+}
@@ -0,0 +1,23 @@
+package com.gv.csc.exceptions;
+
+import lombok.Getter;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.RestClientException;
+
+/**
+ * UpstreamUnavailableException - An upstream call was not made because the upstream cannot take it now: its
+ * circuit breaker is open, or its bulkhead stayed full for longer than a caller may wait. Raised where RestTemplate
+ * raises its own exceptions, so the existing error handling of the calls applies.
+ */
+@Getter
+public class UpstreamUnavailableException extends RestClientException {
+    private final HttpStatus statusCode = HttpStatus.SERVICE_UNAVAILABLE;
+
+    /**
+     *
+     * @param message
+     */
+    public UpstreamUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,297 @@
+package com.gv.csc.helper;
+
+import com.gv.csc.exceptions.UpstreamUnavailableException;
+import org.json.JSONObject;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * AdaptiveBulkhead - Limits the calls in flight to one upstream operation, with a limit that follows its latency
+ *
+ * The limit is adjusted like a gradient limiter: each completed call compares the recent latency with the long term
+ * latency. While they match the limit grows by about its square root, as latency rises the limit shrinks in
+ * proportion, and a failed call cuts it by 10%. The limit only grows while the calls actually use half of it.
+ * Callers beyond the limit wait in FIFO order, at most maxQueue of them and each for a bounded time. Waiters are
+ * futures, so blocking and reactive callers share the queue.
+ */
+public class AdaptiveBulkhead {
+
+    private static final double LONG_WINDOW = 100;
+    private static final double SHORT_WINDOW = 10;
+    private static final double RTT_TOLERANCE = 1.5;
+    private static final double SMOOTHING = 0.2;
+    private static final double FAILURE_BACKOFF = 0.9;
+
+    private final String name;
+    private final boolean adaptive;
+    private final int minLimit;
+    private final int maxLimit;
+    private final int maxQueue;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Deque<CompletableFuture<Permit>> waiters = new ArrayDeque<>();
+    private double limit;
+    private int inFlight;
+    private double longRttNanos;
+    private double shortRttNanos;
+
+    private final LongAdder acquired = new LongAdder();
+    private final LongAdder queued = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAccumulator maxWaitNanos = new LongAccumulator(Math::max, 0);
+
+    /**
+     * @param name String name used in messages and statistics
+     * @param adaptive boolean adaptive, false keeps the limit at initialLimit
+     * @param initialLimit int initialLimit
+     * @param minLimit int minLimit
+     * @param maxLimit int maxLimit
+     * @param maxQueue int maxQueue callers that may wait for a permit
+     */
+    public AdaptiveBulkhead(String name, boolean adaptive, int initialLimit, int minLimit, int maxLimit, int maxQueue) {
+        this.name = name;
+        this.adaptive = adaptive;
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.maxQueue = maxQueue;
+        this.limit = Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit));
+    }
+
+    /**
+     * acquire - Waits for a permit, blocking the calling thread
+     *
+     * @param maxWaitMs long maxWaitMs
+     * @return Permit to release once the call completed
+     * @throws UpstreamUnavailableException when the queue is full, the wait timed out or the thread was interrupted
+     */
+    public Permit acquire(long maxWaitMs) {
+        long startNanos = System.nanoTime();
+        CompletableFuture<Permit> waiter = acquireAsync();
+        try {
+            Permit permit = waiter.get(maxWaitMs, TimeUnit.MILLISECONDS);
+            recordWait(System.nanoTime() - startNanos);
+            return permit;
+        } catch (TimeoutException exc) {
+            if (cancelWaiter(waiter)) {
+                throw reject("no permit within " + maxWaitMs + " ms");
+            }
+            // Granted while timing out
+            return waiter.join();
+        } catch (InterruptedException exc) {
+            abandon(waiter);
+            Thread.currentThread().interrupt();
+            throw new UpstreamUnavailableException("Interrupted waiting for " + name);
+        } catch (ExecutionException exc) {
+            throw (UpstreamUnavailableException) exc.getCause();
+        }
+    }
+
+    /**
+     * acquireAsync - Asks for a permit without blocking. A caller that stops waiting must pass the future to abandon()
+     *
+     * @return CompletableFuture completed with the permit, or failed with UpstreamUnavailableException when the queue
+     * is full
+     */
+    public CompletableFuture<Permit> acquireAsync() {
+        lock.lock();
+        try {
+            if (waiters.isEmpty() && inFlight < currentLimit()) {
+                inFlight++;
+                acquired.increment();
+                return CompletableFuture.completedFuture(new Permit());
+            }
+            if (waiters.size() >= maxQueue) {
+                CompletableFuture<Permit> full = new CompletableFuture<>();
+                full.completeExceptionally(reject("queue of " + maxQueue + " is full"));
+                return full;
+            }
+            CompletableFuture<Permit> waiter = new CompletableFuture<>();
+            waiters.add(waiter);
+            queued.increment();
+            return waiter;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * abandon - Gives up waiting for a permit; a permit granted meanwhile is returned unused
+     *
+     * @param waiter CompletableFuture waiter from acquireAsync()
+     */
+    public void abandon(CompletableFuture<Permit> waiter) {
+        if (!cancelWaiter(waiter)) {
+            Permit permit = waiter.getNow(null);
+            if (permit != null) {
+                permit.releaseUnused();
+            }
+        }
+    }
+
+    /**
+     * cancelWaiter - Takes a waiter out of the queue
+     *
+     * @return boolean false when it was completed already
+     */
+    private boolean cancelWaiter(CompletableFuture<Permit> waiter) {
+        if (!waiter.cancel(false)) {
+            return false;
+        }
+        lock.lock();
+        try {
+            waiters.remove(waiter);
+        } finally {
+            lock.unlock();
+        }
+        return true;
+    }
+
+    /**
+     * recordWait - Records how long a caller waited for its permit
+     *
+     * @param waitNanos long waitNanos
+     */
+    public void recordWait(long waitNanos) {
+        maxWaitNanos.accumulate(waitNanos);
+    }
+
+    /**
+     * reject - Counts a caller turned away and builds the exception for it
+     *
+     * @param reason String reason
+     * @return UpstreamUnavailableException
+     */
+    public UpstreamUnavailableException reject(String reason) {
+        rejected.increment();
+        return new UpstreamUnavailableException(name + " is busy, " + reason);
+    }
+
+    /**
+     * getStatistics - Limit, usage and latency of the bulkhead
+     *
+     * @return JSONObject statistics
+     */
+    public JSONObject getStatistics() {
+        JSONObject statistics = new JSONObject();
+        lock.lock();
+        try {
+            statistics.put("limit", currentLimit());
+            statistics.put("inFlight", inFlight);
+            statistics.put("waiting", waiters.size());
+            statistics.put("longRttMs", TimeUnit.NANOSECONDS.toMillis((long) longRttNanos));
+            statistics.put("shortRttMs", TimeUnit.NANOSECONDS.toMillis((long) shortRttNanos));
+        } finally {
+            lock.unlock();
+        }
+        statistics.put("adaptive", adaptive);
+        statistics.put("minLimit", minLimit);
+        statistics.put("maxLimit", maxLimit);
+        statistics.put("acquired", acquired.sum());
+        statistics.put("queued", queued.sum());
+        statistics.put("rejected", rejected.sum());
+        statistics.put("failures", failures.sum());
+        statistics.put("maxWaitMs", TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get()));
+        return statistics;
+    }
+
+    private int currentLimit() {
+        return (int) limit;
+    }
+
+    /**
+     * released - Returns a permit, adjusts the limit to the call's outcome and hands freed permits to waiters
+     */
+    private void released(boolean success, long rttNanos, boolean sample) {
+        List<CompletableFuture<Permit>> granted = new ArrayList<>();
+        lock.lock();
+        try {
+            if (!success) {
+                failures.increment();
+            }
+            if (adaptive && sample) {
+                adjustLimit(success, rttNanos);
+            }
+            inFlight--;
+            while (inFlight < currentLimit() && !waiters.isEmpty()) {
+                CompletableFuture<Permit> waiter = waiters.poll();
+                if (!waiter.isDone()) {
+                    inFlight++;
+                    granted.add(waiter);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        // Completed outside the lock, the waiters continue on this thread
+        for (CompletableFuture<Permit> waiter : granted) {
+            Permit permit = new Permit();
+            if (waiter.complete(permit)) {
+                acquired.increment();
+            } else {
+                // Abandoned meanwhile
+                permit.releaseUnused();
+            }
+        }
+    }
+
+    private void adjustLimit(boolean success, long rttNanos) {
+        if (!success) {
+            limit = Math.max(minLimit, limit * FAILURE_BACKOFF);
+            return;
+        }
+        if (longRttNanos == 0) {
+            longRttNanos = rttNanos;
+            shortRttNanos = rttNanos;
+            return;
+        }
+        longRttNanos += (rttNanos - longRttNanos) / LONG_WINDOW;
+        shortRttNanos += (rttNanos - shortRttNanos) / SHORT_WINDOW;
+        // Calls do not use the limit, latency says nothing about a larger one
+        if (inFlight < limit / 2) {
+            return;
+        }
+        double gradient = Math.max(0.5, Math.min(1.0, RTT_TOLERANCE * longRttNanos / shortRttNanos));
+        double newLimit = limit * gradient + Math.sqrt(limit);
+        limit = Math.min(maxLimit, Math.max(minLimit, limit * (1 - SMOOTHING) + newLimit * SMOOTHING));
+    }
+
+    /**
+     * Permit - Permission for one call; released exactly once, further releases are ignored
+     */
+    public final class Permit {
+        private final long startNanos = System.nanoTime();
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit() {
+        }
+
+        /**
+         * release - Returns the permit once the call completed
+         *
+         * @param success boolean false when the upstream failed or timed out, lowering the limit
+         */
+        public void release(boolean success) {
+            if (released.compareAndSet(false, true)) {
+                released(success, System.nanoTime() - startNanos, true);
+            }
+        }
+
+        private void releaseUnused() {
+            if (released.compareAndSet(false, true)) {
+                released(true, 0, false);
+            }
+        }
+    }
+}
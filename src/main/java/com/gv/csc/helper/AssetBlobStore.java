@@ -0,0 +1,475 @@
+package com.gv.csc.helper;
+
+import com.gv.csc.util.CLOSETConnectorConstants;
+import com.gv.csc.util.MappedBlobResource;
+import com.gv.csc.util.StreamedAssetResource;
+import com.gv.csc.util.Utility;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+
+import javax.annotation.PostConstruct;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * AssetBlobStore - Local disk store of downloaded CLO-SET assets (zprj, thumbnail, renders zip)
+ *
+ * Blobs are content addressed: each distinct file is kept once under its SHA-256, and a reference per (style id,
+ * version, asset type) points to it. The publish pipeline consults the store before downloading, so publishing a
+ * style version again, by another user or to another PLM environment, reads the asset from local disk.
+ * A reference is only served to a caller holding a download URL of the same CLO-SET asset (see
+ * StreamedAssetResource.getSourceKey), and only once CLO-SET accepted that URL, signature included, for the first
+ * byte of the asset. So the store never hands out an asset the caller could not download itself; a hit costs that
+ * one-byte request instead of the download.
+ *
+ * Blobs are written to a temporary file and moved into place atomically, uploads read them memory mapped, and the
+ * least recently used blobs are deleted once the store exceeds its disk budget. Version 0 (latest) is never stored.
+ */
+public class AssetBlobStore {
+
+    public static final String ASSET_TYPE_PROJECT_FILE = "zprj";
+    public static final String ASSET_TYPE_THUMBNAIL = "thumbnail";
+    public static final String ASSET_TYPE_RENDERS = "renders";
+
+    Logger logger = LoggerFactory.getLogger(AssetBlobStore.class);
+
+    @Autowired
+    private RangedDownloader rangedDownloader;
+
+    @Value("${csc.publish.blob-store.enabled:true}")
+    private boolean enabled;
+
+    @Value("${csc.publish.blob-store.dir:}")
+    private String storeDir;
+
+    @Value("${csc.publish.blob-store.max-bytes:5368709120}")
+    private long maxBytes;
+
+    private File blobDirectory;
+    private File refDirectory;
+    private File tempDirectory;
+
+    // Content hash to blob size, access ordered: the eldest entry is the least recently used blob. Guarded by itself
+    private final LinkedHashMap<String, Long> blobs = new LinkedHashMap<>(16, 0.75f, true);
+    private long usedBytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder denied = new LongAdder();
+    private final LongAdder stores = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        File directory = Utility.hasContent(storeDir) ? new File(storeDir.trim())
+                : new File(CLOSETConnectorConstants.STORAGE_DIRECTORY + "blobstore");
+        blobDirectory = new File(directory, "blobs");
+        refDirectory = new File(directory, "refs");
+        tempDirectory = new File(directory, "tmp");
+        try {
+            // Left over by writes a restart interrupted
+            FileUtils.deleteDirectory(tempDirectory);
+            Files.createDirectories(blobDirectory.toPath());
+            Files.createDirectories(refDirectory.toPath());
+            Files.createDirectories(tempDirectory.toPath());
+        } catch (IOException exc) {
+            logger.warn("WARN::AssetBlobStore: init() blob store disabled - " + exc.getMessage());
+            enabled = false;
+            return;
+        }
+
+        // Blobs survive restarts, their modification time records the last use
+        File[] blobFiles = blobDirectory.listFiles();
+        if (blobFiles != null) {
+            Arrays.sort(blobFiles, Comparator.comparingLong(File::lastModified));
+            synchronized (blobs) {
+                for (File blobFile : blobFiles) {
+                    blobs.put(blobFile.getName(), blobFile.length());
+                    usedBytes += blobFile.length();
+                }
+            }
+        }
+        evictToBudget(null);
+        logger.info("INFO::AssetBlobStore: init() " + directory + " - " + blobs.size() + " blobs, " + usedBytes + " bytes");
+    }
+
+    /**
+     * blobKey - Key of an asset of a style version
+     *
+     * @param styleId String styleId
+     * @param version int version
+     * @param assetType String assetType, one of the ASSET_TYPE constants
+     * @return String key, null when the asset must not be stored (version 0 is the moving latest version)
+     */
+    public static String blobKey(String styleId, int version, String assetType) {
+        if (!Utility.hasContent(styleId) || version <= 0) {
+            return null;
+        }
+        return styleId + CLOSETConnectorConstants.UNDERSCORE + version + CLOSETConnectorConstants.UNDERSCORE + assetType;
+    }
+
+    /**
+     * open - Upload part for a stored asset, read memory mapped
+     *
+     * @param blobKey String blobKey, null for none
+     * @param sourceUrl String sourceUrl download URL the caller holds for the asset
+     * @param fileName String fileName used as the part file name
+     * @return Resource, null when the asset is not stored
+     */
+    public Resource open(String blobKey, String sourceUrl, String fileName) {
+        File blobFile = lookup(blobKey, sourceUrl);
+        if (blobFile == null) {
+            return null;
+        }
+        try {
+            return new MappedBlobResource(blobFile, fileName, blobFile.getName());
+        } catch (IOException exc) {
+            logger.warn("WARN::AssetBlobStore: open() " + fileName + " - " + exc.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * copyTo - Places a stored asset at a file of the publish folder, as a hard link when the file system allows
+     *
+     * @param blobKey String blobKey, null for none
+     * @param sourceUrl String sourceUrl download URL the caller holds for the asset
+     * @param file File file
+     * @return boolean false when the asset is not stored
+     */
+    public boolean copyTo(String blobKey, String sourceUrl, File file) {
+        File blobFile = lookup(blobKey, sourceUrl);
+        if (blobFile == null) {
+            return false;
+        }
+        try {
+            Files.deleteIfExists(file.toPath());
+            FileUtils.forceMkdirParent(file);
+            linkOrCopy(blobFile, file);
+            return true;
+        } catch (IOException exc) {
+            logger.warn("WARN::AssetBlobStore: copyTo() " + file.getName() + " - " + exc.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * store - Adds a downloaded asset file to the store. Failures are logged, the publish goes on without the store
+     *
+     * @param blobKey String blobKey, null for none
+     * @param sourceUrl String sourceUrl the asset was downloaded from
+     * @param file File file
+     */
+    public void store(String blobKey, String sourceUrl, File file) {
+        if (!isEnabled(blobKey)) {
+            return;
+        }
+        File tempFile = null;
+        try {
+            String contentHash;
+            try (InputStream content = new FileInputStream(file)) {
+                contentHash = DigestUtils.sha256Hex(content);
+            }
+            tempFile = newTempFile();
+            Files.delete(tempFile.toPath());
+            linkOrCopy(file, tempFile);
+            commit(blobKey, sourceUrl, tempFile, contentHash);
+        } catch (IOException exc) {
+            logger.warn("WARN::AssetBlobStore: store() " + file.getName() + " - " + exc.getMessage());
+            FileUtils.deleteQuietly(tempFile);
+        }
+    }
+
+    /**
+     * newWriter - Sink storing a streamed asset as it is read, committed once the content was fully read
+     *
+     * @param blobKey String blobKey, null for none
+     * @param sourceUrl String sourceUrl the asset is downloaded from
+     * @return ContentSink, null when the asset is not to be stored
+     */
+    public StreamedAssetResource.ContentSink newWriter(String blobKey, String sourceUrl) {
+        return isEnabled(blobKey) ? new BlobWriter(blobKey, sourceUrl) : null;
+    }
+
+    /**
+     * clear - Removes every stored asset
+     */
+    public void clear() {
+        if (!enabled) {
+            return;
+        }
+        List<String> removed;
+        synchronized (blobs) {
+            removed = new ArrayList<>(blobs.keySet());
+            blobs.clear();
+            usedBytes = 0;
+        }
+        for (String contentHash : removed) {
+            FileUtils.deleteQuietly(new File(blobDirectory, contentHash));
+        }
+        try {
+            FileUtils.cleanDirectory(refDirectory);
+        } catch (IOException exc) {
+            logger.warn("WARN::AssetBlobStore: clear() - " + exc.getMessage());
+        }
+    }
+
+    /**
+     * getStatistics - Store statistics
+     *
+     * @return JSONObject with blobs, bytes, hits, misses, denied, stores and evictions
+     */
+    public JSONObject getStatistics() {
+        JSONObject statistics = new JSONObject();
+        synchronized (blobs) {
+            statistics.put("blobs", blobs.size());
+            statistics.put("bytes", usedBytes);
+        }
+        statistics.put("enabled", enabled);
+        statistics.put("maxBytes", maxBytes);
+        statistics.put("hits", hits.sum());
+        statistics.put("misses", misses.sum());
+        statistics.put("denied", denied.sum());
+        statistics.put("stores", stores.sum());
+        statistics.put("evictions", evictions.sum());
+        return statistics;
+    }
+
+    private boolean isEnabled(String blobKey) {
+        return enabled && blobKey != null;
+    }
+
+    /**
+     * lookup - Blob file a key refers to, when the reference was recorded for the same CLO-SET asset and the
+     * caller's download URL is still accepted by CLO-SET
+     */
+    private File lookup(String blobKey, String sourceUrl) {
+        if (!isEnabled(blobKey)) {
+            return null;
+        }
+        File refFile = getRefFile(blobKey);
+        String[] ref;
+        try {
+            if (!refFile.isFile()) {
+                misses.increment();
+                return null;
+            }
+            ref = new String(Files.readAllBytes(refFile.toPath()), StandardCharsets.UTF_8).split("\n");
+        } catch (IOException exc) {
+            logger.warn("WARN::AssetBlobStore: lookup() unreadable reference " + refFile + " - " + exc.getMessage());
+            misses.increment();
+            return null;
+        }
+        if (ref.length < 2 || !ref[1].equals(getSourceKey(sourceUrl))) {
+            misses.increment();
+            return null;
+        }
+
+        String contentHash = ref[0];
+        File blobFile = new File(blobDirectory, contentHash);
+        synchronized (blobs) {
+            // get() also marks the blob as most recently used
+            if (blobs.get(contentHash) == null || !blobFile.isFile()) {
+                Long size = blobs.remove(contentHash);
+                if (size != null) {
+                    usedBytes -= size;
+                }
+                misses.increment();
+                return null;
+            }
+        }
+        if (!rangedDownloader.canDownload(sourceUrl)) {
+            // Expired or forged signature: the download that follows fails the way it would without the store
+            denied.increment();
+            logger.info("INFO::AssetBlobStore: lookup() download URL refused for " + blobKey);
+            return null;
+        }
+        if (!blobFile.setLastModified(System.currentTimeMillis())) {
+            logger.debug("DEBUG::AssetBlobStore: lookup() could not touch " + blobFile);
+        }
+        hits.increment();
+        logger.debug("DEBUG::AssetBlobStore: lookup() hit - " + blobKey);
+        return blobFile;
+    }
+
+    /**
+     * commit - Moves a completely written temporary file into the store and points the key at it
+     */
+    private void commit(String blobKey, String sourceUrl, File tempFile, String contentHash) throws IOException {
+        long size = tempFile.length();
+        if (size > maxBytes) {
+            FileUtils.deleteQuietly(tempFile);
+            return;
+        }
+        File blobFile = new File(blobDirectory, contentHash);
+        Files.move(tempFile.toPath(), blobFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        File refTempFile = newTempFile();
+        Files.write(refTempFile.toPath(), (contentHash + "\n" + getSourceKey(sourceUrl)).getBytes(StandardCharsets.UTF_8));
+        Files.move(refTempFile.toPath(), getRefFile(blobKey).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        synchronized (blobs) {
+            Long previous = blobs.put(contentHash, size);
+            if (previous != null) {
+                usedBytes -= previous;
+            }
+            usedBytes += size;
+        }
+        stores.increment();
+        logger.debug("DEBUG::AssetBlobStore: commit() " + blobKey + " - " + contentHash);
+        evictToBudget(contentHash);
+    }
+
+    /**
+     * evictToBudget - Deletes the least recently used blobs until the store fits its disk budget. A blob still being
+     * uploaded stays readable: its mapping (or link in a publish folder) outlives the deleted store entry.
+     * References to deleted blobs are dropped when they are next looked up.
+     */
+    private void evictToBudget(String keepContentHash) {
+        List<String> evicted = new ArrayList<>();
+        synchronized (blobs) {
+            Iterator<Map.Entry<String, Long>> iterator = blobs.entrySet().iterator();
+            while (usedBytes > maxBytes && iterator.hasNext()) {
+                Map.Entry<String, Long> eldest = iterator.next();
+                if (eldest.getKey().equals(keepContentHash)) {
+                    continue;
+                }
+                iterator.remove();
+                usedBytes -= eldest.getValue();
+                evictions.increment();
+                evicted.add(eldest.getKey());
+            }
+        }
+        for (String contentHash : evicted) {
+            File blobFile = new File(blobDirectory, contentHash);
+            if (!blobFile.delete() && blobFile.exists()) {
+                logger.warn("WARN::AssetBlobStore: evictToBudget() could not delete " + blobFile);
+            }
+        }
+    }
+
+    private File getRefFile(String blobKey) {
+        return new File(refDirectory, DigestUtils.sha256Hex(blobKey));
+    }
+
+    private File newTempFile() throws IOException {
+        return File.createTempFile("blob", ".tmp", tempDirectory);
+    }
+
+    private static String getSourceKey(String sourceUrl) {
+        int queryStart = sourceUrl.indexOf('?');
+        return queryStart < 0 ? sourceUrl : sourceUrl.substring(0, queryStart);
+    }
+
+    private static void linkOrCopy(File source, File target) throws IOException {
+        try {
+            Files.createLink(target.toPath(), source.toPath());
+        } catch (IOException | UnsupportedOperationException exc) {
+            // Different file system, or one without hard links
+            Files.copy(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * BlobWriter - Writes a streamed asset to a temporary file of the store; it is only committed when the
+     * content was read to the end, so a broken download never ends up in the store
+     */
+    private final class BlobWriter implements StreamedAssetResource.ContentSink {
+        private final String blobKey;
+        private final String sourceUrl;
+        private File tempFile;
+        private OutputStream output;
+        private boolean done;
+
+        BlobWriter(String blobKey, String sourceUrl) {
+            this.blobKey = blobKey;
+            this.sourceUrl = sourceUrl;
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) {
+            if (done) {
+                return;
+            }
+            try {
+                if (output == null) {
+                    tempFile = newTempFile();
+                    output = new BufferedOutputStream(new FileOutputStream(tempFile), 64 * 1024);
+                }
+                output.write(bytes, offset, length);
+            } catch (IOException exc) {
+                logger.warn("WARN::AssetBlobStore: write() " + blobKey + " - " + exc.getMessage());
+                discard();
+            }
+        }
+
+        @Override
+        public void complete(String contentHash) {
+            if (done) {
+                return;
+            }
+            done = true;
+            try {
+                if (output == null) {
+                    tempFile = newTempFile();
+                } else {
+                    output.close();
+                    output = null;
+                }
+                commit(blobKey, sourceUrl, tempFile, contentHash);
+            } catch (IOException exc) {
+                logger.warn("WARN::AssetBlobStore: complete() " + blobKey + " - " + exc.getMessage());
+                closeOutput();
+                FileUtils.deleteQuietly(tempFile);
+            }
+            tempFile = null;
+        }
+
+        @Override
+        public void discard() {
+            if (done) {
+                return;
+            }
+            done = true;
+            closeOutput();
+            FileUtils.deleteQuietly(tempFile);
+            tempFile = null;
+        }
+
+        private void closeOutput() {
+            if (output != null) {
+                try {
+                    output.close();
+                } catch (IOException exc) {
+                    logger.debug("DEBUG::AssetBlobStore: closeOutput() " + blobKey + " - " + exc.getMessage());
+                }
+                output = null;
+            }
+        }
+    }
+}
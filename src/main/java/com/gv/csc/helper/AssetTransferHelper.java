@@ -0,0 +1,215 @@
+package com.gv.csc.helper;
+
+import com.gv.csc.util.StreamedAssetResource;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * AssetTransferHelper - Moves CLO-SET assets (zprj, thumbnail, renders) to PLM uploads
+ *
+ * In "stream" transfer mode the download is piped into the upload request; in "staged" mode it is written to the
+ * publish folder first, as before. Either way the asset blob store is consulted first and filled by the download.
+ */
+public class AssetTransferHelper {
+
+    public static final String TRANSFER_MODE_STREAM = "stream";
+    public static final String TRANSFER_MODE_STAGED = "staged";
+
+    @Autowired
+    private CloseableHttpClient pooledHttpClient;
+
+    @Autowired
+    private AssetBlobStore assetBlobStore;
+
+    @Autowired
+    private RangedDownloader rangedDownloader;
+
+    @Autowired
+    @Qualifier("assetTransferExecutor")
+    private ExecutorService assetTransferExecutor;
+
+    @Autowired
+    @Qualifier("publishStageExecutor")
+    private ExecutorService publishStageExecutor;
+
+    @Autowired
+    @Qualifier("timeoutScheduler")
+    private ScheduledExecutorService timeoutScheduler;
+
+    @Value("${csc.publish.transfer-mode:stream}")
+    private String transferMode;
+
+    @Value("${csc.publish.asset-timeout-ms:900000}")
+    private long assetTimeoutMs;
+
+    Logger logger = LoggerFactory.getLogger(AssetTransferHelper.class);
+
+    /**
+     * isStreaming - Whether assets are streamed into the uploads
+     *
+     * @return boolean
+     */
+    public boolean isStreaming() {
+        return TRANSFER_MODE_STREAM.equalsIgnoreCase(transferMode);
+    }
+
+    /**
+     * prepareAssetResource - Upload part for an asset: read from the blob store, streamed from CLO-SET, or staged to
+     * the publish folder
+     *
+     * @param url String url
+     * @param fileName String fileName
+     * @param outerPath String outerPath
+     * @param blobKey String blobKey of the asset in the blob store, null to bypass the store
+     * @return Resource
+     * @throws IOException exception
+     */
+    public Resource prepareAssetResource(String url, String fileName, String outerPath, String blobKey) throws IOException {
+        Resource storedResource = assetBlobStore.open(blobKey, url, fileName);
+        if (storedResource != null) {
+            return storedResource;
+        }
+        File stagingFile = new File(outerPath + fileName);
+        if (isStreaming()) {
+            StreamedAssetResource streamedResource = new StreamedAssetResource(pooledHttpClient, url, fileName, stagingFile);
+            streamedResource.setContentSink(assetBlobStore.newWriter(blobKey, url));
+            return streamedResource;
+        }
+        return new FileSystemResource(downloadToFile(url, stagingFile, blobKey));
+    }
+
+    /**
+     * downloadToFile - Places an asset at a file, from the blob store when it holds the asset, otherwise downloaded
+     * and added to the store
+     *
+     * @param url String url
+     * @param file File file
+     * @param blobKey String blobKey of the asset in the blob store, null to bypass the store
+     * @return File
+     * @throws IOException exception
+     */
+    public File downloadToFile(String url, File file, String blobKey) throws IOException {
+        if (assetBlobStore.copyTo(blobKey, url, file)) {
+            return file;
+        }
+        downloadToFile(url, file);
+        assetBlobStore.store(blobKey, url, file);
+        return file;
+    }
+
+    /**
+     * downloadToFile - Downloads an asset to a file through the pooled HTTP client, in concurrent byte ranges when
+     * the asset is large and the server supports them
+     *
+     * @param url String url
+     * @param file File file
+     * @return File
+     * @throws IOException exception
+     */
+    public File downloadToFile(String url, File file) throws IOException {
+        logger.debug("DEBUG::AssetTransferHelper: downloadToFile() file - " + file);
+        return rangedDownloader.download(url, file);
+    }
+
+    /**
+     * supplyAsync - Runs an asset transfer on the asset transfer executor. The returned future fails with a
+     * TimeoutException when the transfer takes longer than the asset timeout, and cancelling it interrupts the transfer
+     *
+     * @param assetName String assetName used in the timeout message
+     * @param transfer Callable transfer
+     * @return CompletableFuture of the transfer result
+     */
+    public <T> CompletableFuture<T> supplyAsync(String assetName, Callable<T> transfer) {
+        return supplyAsync(assetTransferExecutor, assetName, transfer);
+    }
+
+    /**
+     * supplyStageAsync - Runs a publish stage on the publish stage executor, with the same timeout as a transfer.
+     * Stages wait for the transfers they start, so they do not share the asset transfer executor with them.
+     *
+     * @param stageName String stageName used in the timeout message
+     * @param work Callable work
+     * @return CompletableFuture of the stage result
+     */
+    public <T> CompletableFuture<T> supplyStageAsync(String stageName, Callable<T> work) {
+        return supplyAsync(publishStageExecutor, stageName, work);
+    }
+
+    private <T> CompletableFuture<T> supplyAsync(ExecutorService executor, String taskName, Callable<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        Future<?> running = executor.submit(() -> {
+            if (future.isDone()) {
+                return;
+            }
+            // The timeout starts with the task, time spent queued behind other tasks does not count
+            ScheduledFuture<?> timeout = timeoutScheduler.schedule(() -> {
+                future.completeExceptionally(new TimeoutException(taskName + " did not complete within " + assetTimeoutMs + " ms"));
+            }, assetTimeoutMs, TimeUnit.MILLISECONDS);
+            try {
+                future.complete(task.call());
+            } catch (Exception exc) {
+                future.completeExceptionally(exc);
+            } finally {
+                timeout.cancel(false);
+            }
+        });
+        future.whenComplete((result, exc) -> {
+            if (exc != null) {
+                running.cancel(true);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * isRepeatable - Whether all resources can be read again, e.g. to retry an upload
+     *
+     * @param resources List resources
+     * @return boolean
+     */
+    public boolean isRepeatable(List<? extends Resource> resources) {
+        for (Resource resource : resources) {
+            if (resource instanceof StreamedAssetResource && ((StreamedAssetResource) resource).isConsumed()
+                    && !((StreamedAssetResource) resource).isStaged()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * release - Closes the downloads of resources that were not (fully) read
+     *
+     * @param resources List resources
+     */
+    public void release(List<? extends Resource> resources) {
+        for (Resource resource : resources) {
+            if (resource instanceof Closeable) {
+                try {
+                    ((Closeable) resource).close();
+                } catch (IOException exc) {
+                    logger.warn("WARN::AssetTransferHelper: release() " + resource.getDescription() + " - " + exc.getMessage());
+                }
+            }
+        }
+    }
+}
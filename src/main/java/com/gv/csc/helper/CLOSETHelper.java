@@ -2,6 +2,7 @@ package com.gv.csc.helper;
 
 import com.gv.csc.entity.LastLoginTime;
 import com.gv.csc.exceptions.CLOSETException;
+import com.gv.csc.exceptions.UpstreamUnavailableException;
 import com.gv.csc.service.LastLoginTimeService;
 import com.gv.csc.util.CLOSETConnectorConstants;
 import com.gv.csc.util.CLOSETConstants;
@@ -14,27 +15,66 @@ import org.json.JSONTokener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.*;
 import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.HttpServerErrorException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * CLOSETHelper - Helper class containing the helper logic for speaking with CLOSET APIs and preparing response
  */
 public class CLOSETHelper {
 
+    /**
+     * Latency critical reads that may be hedged, see HedgingExecutor
+     */
+    private static final String HEDGED_STYLE_READ = "closet-style";
+    private static final String HEDGED_GROUPS_READ = "closet-groups";
+    private static final String HEDGED_RENDERS_READ = "closet-rendersinfo";
+
     @Autowired
     private RestService restService;
 
     @Autowired
     private LastLoginTimeService lastLoginTimeService;
+
+    @Autowired
+    private TechpackCache techpackCache;
+
+    @Autowired
+    private ReactiveRestService reactiveRestService;
+
+    @Value("${csc.closet.search.parallelism:16}")
+    private int closetSearchParallelism;
+
+    @Value("${csc.closet.search.group-timeout-ms:30000}")
+    private long groupSearchTimeoutMs;
+
+    @Autowired
+    @Qualifier("closetLookupExecutor")
+    private ExecutorService closetLookupExecutor;
+
+    @Value("${csc.closet.lookup.timeout-ms:30000}")
+    private long lookupTimeoutMs;
     
     static Logger logger = LoggerFactory.getLogger(CLOSETHelper.class);
 
@@ -108,6 +148,9 @@ public class CLOSETHelper {
         } catch (CLOSETException closetExc) {
             closetExc.printStackTrace();
             throw closetExc;
+        } catch (UpstreamUnavailableException upstreamExc) {
+            logger.error("ERROR::CLOSETHelper: prepareLoginResponse() upstreamExc - " + upstreamExc.getMessage());
+            throw new CLOSETException(upstreamExc.getMessage(), upstreamExc.getStatusCode());
         } catch (Exception exe) {
             exe.printStackTrace();
             throw new CLOSETException(exe.getLocalizedMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
@@ -193,43 +236,32 @@ public class CLOSETHelper {
             }
 
             JSONArray groupListJSONArray = new JSONArray(responseGroupList);
-            String groupId;
-            String url;
-            JSONArray stylesList = new JSONArray();
-            JSONArray stylesListArray;
+            List<String> groupIds = new ArrayList<>();
             for (int i = 0; i < groupListJSONArray.length(); i++) {
-                groupId = new JSONArray(responseGroupList).getJSONObject(i).get(CLOSETConstants.CLOSET_GROUP_ID_JSON_KEY).toString();
-                url = CLOSETConstants.CLOSET_BASE_URL + CLOSETConstants.CLOSET_STYLE_SEARCH_END_POINT + CLOSETConnectorConstants.QUESTION_MARK
-                        + CLOSETConstants.CLOSET_GROUP_ID_PARAM_KEY + CLOSETConnectorConstants.ASSIGN + groupId + CLOSETConnectorConstants.AMPERSAND
-                        + CLOSETConstants.CLOSET_PAGE_SIZE_PARAM_KEY + CLOSETConnectorConstants.ASSIGN + 100 + CLOSETConnectorConstants.AMPERSAND
-                        + CLOSETConstants.CLOSET_KEYWORD_PARAM_KEY + CLOSETConnectorConstants.ASSIGN + searchTerm + CLOSETConnectorConstants.AMPERSAND
-                        + CLOSETConstants.CLOSET_SEARCH_FILTER_PARAM_KEY + CLOSETConnectorConstants.ASSIGN + filter;
-                        //"?groupId=" + groupId + "&pageSize=100" + "&keyword=" + searchTerm + "&searchFilter=" + filter;
-                logger.debug("DEBUG::CLOSETHelper: prepareSearchStyleResponse() url - " + url);
-                ResponseEntity<String> stylesResponseEntity = restService.makeGetOrPostCall(url, HttpMethod.GET, restHeaders, new JSONObject());
-
-                statusCode = stylesResponseEntity.getStatusCode();
-                logger.debug("DEBUG::CLOSETHelper: prepareSearchStyleResponse() statusCode - " + statusCode);
-
-                if (stylesResponseEntity.getStatusCodeValue() != 200) {
-                    String errorJson = stylesResponseEntity.getBody();
-                    throw new CLOSETException(errorJson, statusCode);
-                }
-
-                String responseStyleList = stylesResponseEntity.getBody();
+                groupIds.add(groupListJSONArray.getJSONObject(i).get(CLOSETConstants.CLOSET_GROUP_ID_JSON_KEY).toString());
+            }
 
-                if(!Utility.isJSONArray(responseStyleList)) {
-                    throw new CLOSETException("Error in parsing search results, please contact your System Administrator", HttpStatus.INTERNAL_SERVER_ERROR);
-                }
+            // Search every group concurrently on the shared event loop, then merge the results in group order
+            List<JSONArray> groupResults = reactiveRestService.await(Flux.fromIterable(groupIds)
+                    .flatMapSequential(groupId -> searchStylesInGroup(groupId, searchTerm, filter, restHeaders)
+                            .timeout(Duration.ofMillis(groupSearchTimeoutMs))
+                            .onErrorResume(TimeoutException.class, timeoutExc -> {
+                                logger.warn("WARN::CLOSETHelper: prepareSearchStyleResponse() search timed out for groupId - " + groupId);
+                                return Mono.empty();
+                            }), closetSearchParallelism)
+                    .onErrorMap(exc -> !(exc instanceof CLOSETException) && !(exc instanceof HttpClientErrorException),
+                            exc -> new CLOSETException(exc.getLocalizedMessage(), exc instanceof UpstreamUnavailableException
+                                    ? ((UpstreamUnavailableException) exc).getStatusCode() : HttpStatus.INTERNAL_SERVER_ERROR))
+                    .collectList(), CLOSETException.class);
 
-                stylesListArray = new JSONArray(responseStyleList);
+            JSONArray stylesList = new JSONArray();
+            for (JSONArray stylesListArray : groupResults) {
                 for (int j = 0; j < stylesListArray.length(); j++) {
                     stylesList.put(stylesListArray.getJSONObject(j));
                 }
-                if(stylesList.isEmpty()){
-                    throw new CLOSETException("No Records Found. Try modifying the search term", HttpStatus.INTERNAL_SERVER_ERROR);
-                }
-                logger.debug("DEBUG::CLOSETHelper: prepareSearchStyleResponse() responseStyleList - "+responseStyleList);
+            }
+            if(stylesList.isEmpty()){
+                throw new CLOSETException("No Records Found. Try modifying the search term", HttpStatus.INTERNAL_SERVER_ERROR);
             }
             outJson.put(CLOSETConnectorConstants.CC_STYLES_JSON_KEY, stylesList);
             outJson.put(CLOSETConnectorConstants.CC_COUNT_JSON_KEY, stylesList.length());
@@ -243,6 +275,41 @@ public class CLOSETHelper {
         return  outJson;
     }
 
+    /**
+     * searchStylesInGroup - Function calls CLOSET style search Rest API for a single group
+     * @param groupId String groupId
+     * @param searchTerm String searchTerm
+     * @param filter int filter
+     * @param restHeaders HttpHeaders restHeaders
+     * @return JSONArray with styles of the group, emitted once received
+     */
+    private Mono<JSONArray> searchStylesInGroup(String groupId, String searchTerm, int filter, HttpHeaders restHeaders) {
+        String url = CLOSETConstants.CLOSET_BASE_URL + CLOSETConstants.CLOSET_STYLE_SEARCH_END_POINT + CLOSETConnectorConstants.QUESTION_MARK
+                + CLOSETConstants.CLOSET_GROUP_ID_PARAM_KEY + CLOSETConnectorConstants.ASSIGN + groupId + CLOSETConnectorConstants.AMPERSAND
+                + CLOSETConstants.CLOSET_PAGE_SIZE_PARAM_KEY + CLOSETConnectorConstants.ASSIGN + 100 + CLOSETConnectorConstants.AMPERSAND
+                + CLOSETConstants.CLOSET_KEYWORD_PARAM_KEY + CLOSETConnectorConstants.ASSIGN + searchTerm + CLOSETConnectorConstants.AMPERSAND
+                + CLOSETConstants.CLOSET_SEARCH_FILTER_PARAM_KEY + CLOSETConnectorConstants.ASSIGN + filter;
+                //"?groupId=" + groupId + "&pageSize=100" + "&keyword=" + searchTerm + "&searchFilter=" + filter;
+        logger.debug("DEBUG::CLOSETHelper: searchStylesInGroup() url - " + url);
+        return reactiveRestService.makeGetOrPostCall(url, HttpMethod.GET, restHeaders, new JSONObject(), UpstreamBulkheads.Operation.SEARCH).flatMap(stylesResponseEntity -> {
+            HttpStatus statusCode = stylesResponseEntity.getStatusCode();
+            logger.debug("DEBUG::CLOSETHelper: searchStylesInGroup() statusCode - " + statusCode);
+
+            if (stylesResponseEntity.getStatusCodeValue() != 200) {
+                String errorJson = stylesResponseEntity.getBody();
+                return Mono.error(new CLOSETException(errorJson, statusCode));
+            }
+
+            String responseStyleList = stylesResponseEntity.getBody();
+            logger.debug("DEBUG::CLOSETHelper: searchStylesInGroup() responseStyleList - "+responseStyleList);
+
+            if(!Utility.isJSONArray(responseStyleList)) {
+                return Mono.error(new CLOSETException("Error in parsing search results, please contact your System Administrator", HttpStatus.INTERNAL_SERVER_ERROR));
+            }
+            return Mono.just(new JSONArray(responseStyleList));
+        });
+    }
+
     /**
      *
      * @param styleId String styleId
@@ -256,30 +323,11 @@ public class CLOSETHelper {
 
         HttpHeaders restHeaders = prepareClosetHeaders(headers);
 
-        String url = CLOSETConstants.CLOSET_BASE_URL + CLOSETConstants.CLOSET_GET_STYLE_END_POINT + styleId + CLOSETConnectorConstants.FORWARD_SLASH + CLOSETConstants.CLOSET_VERSIONS_PARAM_KEY
-                + CLOSETConnectorConstants.FORWARD_SLASH + version;
+        String url = getStyleURL(styleId, version);
         logger.debug("DEBUG::CLOSETHelper: prepareGetStyleResponse() url - " + url);
         try {
-            ResponseEntity<String> styleResponseEntity = restService.makeGetOrPostCall(url, HttpMethod.GET, restHeaders, new JSONObject());
-
-            HttpStatus statusCode = styleResponseEntity.getStatusCode();
-            logger.debug("DEBUG::CLOSETHelper: prepareGetStyleResponse() statusCode - " + statusCode);
-
-            JSONObject stylesResponseJSON = new JSONObject(styleResponseEntity.getBody());
-            logger.info("stylesResponseJSON :" + stylesResponseJSON);
-
-            if (styleResponseEntity.getStatusCodeValue() != 200) {
-                String errorJson = styleResponseEntity.getBody();
-                throw new CLOSETException(errorJson, statusCode);
-            }
-
-            String responseStyleList = styleResponseEntity.getBody();
-            logger.debug("DEBUG::CLOSETHelper: prepareGetStyleResponse() responseStyleList - " + responseStyleList);
-
-            if (!Utility.isJSONObject(responseStyleList)) {
-                throw new CLOSETException("Error in parsing searched style, please contact your System Administrator", HttpStatus.INTERNAL_SERVER_ERROR);
-            }
-            JSONObject styleJson = addFileDetails(styleId, new JSONObject(responseStyleList), headers);
+            ResponseEntity<String> styleResponseEntity = restService.makeHedgedGetCall(url, restHeaders, new JSONObject(), HEDGED_STYLE_READ);
+            JSONObject styleJson = addFileDetails(styleId, readStyleData(styleResponseEntity), headers);
             outJson.put(CLOSETConnectorConstants.CC_STYLE_JSON_KEY, styleJson);
         } catch(HttpClientErrorException restExc) {
             String excMessage = readErrorResponseMessage(restExc.getResponseBodyAsString());
@@ -291,15 +339,126 @@ public class CLOSETHelper {
         return  outJson;
     }
 
+    /**
+     * prepareGetStyleResponseAsync - Non-blocking variant of prepareGetStyleResponse, used to fan out style lookups.
+     * The style is fetched first, then the zprj download URL and (when needed) the techspec alongside each other.
+     * @param styleId String styleId
+     * @param version int version
+     * @param headers Map<String, String> headers
+     * @return JSONObject with Style Rest response, emitted once received
+     */
+    public Mono<JSONObject> prepareGetStyleResponseAsync(String styleId, int version, Map<String, String> headers) {
+        HttpHeaders restHeaders = prepareClosetHeaders(headers);
+        return reactiveRestService.makeHedgedGetCall(getStyleURL(styleId, version), restHeaders, new JSONObject(), HEDGED_STYLE_READ)
+                .flatMap(styleResponseEntity -> {
+                    JSONObject styleDataJson;
+                    try {
+                        styleDataJson = readStyleData(styleResponseEntity);
+                    } catch (CLOSETException exc) {
+                        return Mono.error(exc);
+                    }
+                    int styleVersion = styleDataJson.getInt(CLOSETConstants.CLOSET_VERSION_PARAM_KEY);
+                    styleDataJson.put(CLOSETConstants.RESET_EXTERNAL_STYLE_ID, false);
+
+                    Mono<String> zprjUrl = reactiveRestService.makeGetOrPostCall(getZprjFileURL(styleId, styleVersion), HttpMethod.GET, restHeaders, new JSONObject())
+                            .flatMap(zprjResponse -> Mono.justOrEmpty(zprjResponse.getBody()))
+                            .switchIfEmpty(Mono.error(() -> new CLOSETException("Error in reading the zprj download url, please contact your System Administrator", HttpStatus.INTERNAL_SERVER_ERROR)));
+                    // The techspec goes through the (blocking) techpack cache
+                    Mono<Optional<JSONObject>> techSpec = needsTechSpec(styleDataJson)
+                            ? Mono.fromCallable(() -> Optional.of(getTechSpec(styleId, styleVersion, headers))).subscribeOn(Schedulers.boundedElastic())
+                            : Mono.just(Optional.empty());
+
+                    return Mono.zip(zprjUrl, techSpec).map(lookups -> {
+                        lookups.getT2().ifPresent(closetTechSpec -> mergeTechSpec(styleDataJson, closetTechSpec));
+                        mergeFileDetails(styleDataJson, styleVersion, lookups.getT1());
+                        JSONObject outJson = new JSONObject();
+                        outJson.put(CLOSETConnectorConstants.CC_STYLE_JSON_KEY, styleDataJson);
+                        return outJson;
+                    });
+                })
+                .onErrorMap(HttpClientErrorException.class, restExc -> {
+                    String excMessage = readErrorResponseMessage(restExc.getResponseBodyAsString());
+                    logger.error("ERROR::CLOSETHelper: prepareGetStyleResponseAsync() excMessage - " + excMessage);
+                    return new CLOSETException(excMessage, restExc.getStatusCode());
+                });
+    }
+
+    private String getStyleURL(String styleId, int version) {
+        return CLOSETConstants.CLOSET_BASE_URL + CLOSETConstants.CLOSET_GET_STYLE_END_POINT + styleId + CLOSETConnectorConstants.FORWARD_SLASH + CLOSETConstants.CLOSET_VERSIONS_PARAM_KEY
+                + CLOSETConnectorConstants.FORWARD_SLASH + version;
+    }
+
+    private String getZprjFileURL(String styleId, int version) {
+        return getStyleURL(styleId, version) + CLOSETConstants.CLOSET_GET_ZPRJ_FILE_END_POINT;
+    }
+
+    /**
+     * readStyleData - Reads the style data from the CLOSET get style response
+     * @param styleResponseEntity ResponseEntity styleResponseEntity
+     * @return JSONObject style data
+     * @throws CLOSETException exception
+     */
+    private JSONObject readStyleData(ResponseEntity<String> styleResponseEntity) throws CLOSETException {
+        HttpStatus statusCode = styleResponseEntity.getStatusCode();
+        logger.debug("DEBUG::CLOSETHelper: readStyleData() statusCode - " + statusCode);
+
+        JSONObject stylesResponseJSON = new JSONObject(styleResponseEntity.getBody());
+        logger.info("stylesResponseJSON :" + stylesResponseJSON);
+
+        if (styleResponseEntity.getStatusCodeValue() != 200) {
+            String errorJson = styleResponseEntity.getBody();
+            throw new CLOSETException(errorJson, statusCode);
+        }
+
+        String responseStyleList = styleResponseEntity.getBody();
+        logger.debug("DEBUG::CLOSETHelper: readStyleData() responseStyleList - " + responseStyleList);
+
+        if (!Utility.isJSONObject(responseStyleList)) {
+            throw new CLOSETException("Error in parsing searched style, please contact your System Administrator", HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+        return new JSONObject(responseStyleList);
+    }
+
     private JSONObject addFileDetails(String styleId, JSONObject styleDataJson, Map<String, String> headers) throws CLOSETException {
         int version = styleDataJson.getInt(CLOSETConstants.CLOSET_VERSION_PARAM_KEY);
-        JSONArray versions = styleDataJson.getJSONArray(CLOSETConstants.CLOSET_VERSIONS_PARAM_KEY);
         styleDataJson.put(CLOSETConstants.RESET_EXTERNAL_STYLE_ID, false);
 
-        if (!styleDataJson.has(CLOSETConstants.EXTERNAL_STYLE_ID)) {
-            JSONObject closetTechSpec = getTechSpec(styleId, version, headers);
-            JSONObject apiMetaDataJon = closetTechSpec.getJSONObject(CLOSETConstants.CLOSET_TECHPACK_API_META_DATA_KEY);
+        // The techspec is only needed to recover a missing externalStyleId, and does not depend on the zprj lookup,
+        // so it runs on the lookup executor while the zprj download URL is fetched on this thread
+        Future<JSONObject> techSpecLookup = null;
+        if (needsTechSpec(styleDataJson)) {
+            techSpecLookup = closetLookupExecutor.submit(() -> getTechSpec(styleId, version, headers));
+        }
+
+        JSONObject zprjJson;
+        try {
+            zprjJson = prepareGetZprjFileResponse(styleId, version, headers);
+        } catch (CLOSETException | RuntimeException exc) {
+            if (techSpecLookup != null) {
+                techSpecLookup.cancel(true);
+            }
+            throw exc;
+        }
 
+        if (techSpecLookup != null) {
+            mergeTechSpec(styleDataJson, awaitLookup(techSpecLookup, "techspec"));
+        }
+        mergeFileDetails(styleDataJson, version, zprjJson.getString(CLOSETConnectorConstants.CC_URL_JSON_KEY));
+        return styleDataJson;
+    }
+
+    private boolean needsTechSpec(JSONObject styleDataJson) {
+        return !styleDataJson.has(CLOSETConstants.EXTERNAL_STYLE_ID) || styleDataJson.isNull(CLOSETConstants.EXTERNAL_STYLE_ID);
+    }
+
+    /**
+     * mergeTechSpec - Copies the externalStyleId of the techspec into the style data
+     * @param styleDataJson JSONObject styleDataJson
+     * @param closetTechSpec JSONObject closetTechSpec
+     */
+    private void mergeTechSpec(JSONObject styleDataJson, JSONObject closetTechSpec) {
+        if (closetTechSpec.has(CLOSETConstants.CLOSET_TECHPACK_API_META_DATA_KEY)) {
+            JSONObject apiMetaDataJon = closetTechSpec.getJSONObject(CLOSETConstants.CLOSET_TECHPACK_API_META_DATA_KEY);
             if (apiMetaDataJon.has(CLOSETConstants.EXTERNAL_STYLE_ID)) {
                 Object externalStyleIdObj = apiMetaDataJon.get(CLOSETConstants.EXTERNAL_STYLE_ID);
                 if(externalStyleIdObj != null) {
@@ -308,22 +467,17 @@ public class CLOSETHelper {
                     styleDataJson.put(CLOSETConstants.RESET_EXTERNAL_STYLE_ID, true);
                 }
             }
-        } else if(styleDataJson.has(CLOSETConstants.EXTERNAL_STYLE_ID) && styleDataJson.isNull(CLOSETConstants.EXTERNAL_STYLE_ID)) {
-            JSONObject closetTechSpec = getTechSpec(styleId, version, headers);
-
-            if(closetTechSpec.has(CLOSETConstants.CLOSET_TECHPACK_API_META_DATA_KEY)) {
-                JSONObject apiMetaDataJon = closetTechSpec.getJSONObject(CLOSETConstants.CLOSET_TECHPACK_API_META_DATA_KEY);
-                if (apiMetaDataJon.has(CLOSETConstants.EXTERNAL_STYLE_ID)) {
-                    Object externalStyleIdObj = apiMetaDataJon.get(CLOSETConstants.EXTERNAL_STYLE_ID);
-                    if(externalStyleIdObj != null) {
-                        logger.info("externalStyleId techSpec:" + externalStyleIdObj);
-                        styleDataJson.put(CLOSETConstants.EXTERNAL_STYLE_ID, externalStyleIdObj);
-                        styleDataJson.put(CLOSETConstants.RESET_EXTERNAL_STYLE_ID, true);
-                    }
-            }
-            }
         }
+    }
 
+    /**
+     * mergeFileDetails - Adds the zprj, renders and thumbnail file details to the style data
+     * @param styleDataJson JSONObject styleDataJson
+     * @param version int version
+     * @param zprjUrl String zprjUrl
+     */
+    private void mergeFileDetails(JSONObject styleDataJson, int version, String zprjUrl) {
+        JSONArray versions = styleDataJson.getJSONArray(CLOSETConstants.CLOSET_VERSIONS_PARAM_KEY);
         for(int i = 0; i < versions.length(); i++) {
             JSONObject versionJson = versions.getJSONObject(i);
             int tempVersion = versionJson.getInt(CLOSETConstants.CLOSET_VERSION_PARAM_KEY);
@@ -333,8 +487,6 @@ public class CLOSETHelper {
                 break;
             }
         }
-        JSONObject zprjJson = prepareGetZprjFileResponse(styleId, version, headers);
-        String zprjUrl = zprjJson.getString(CLOSETConnectorConstants.CC_URL_JSON_KEY);
         styleDataJson.put(CLOSETConnectorConstants.CC_ZPRJ_FILE_URL, zprjUrl);
 
         String rendersFileName = styleDataJson.getString(CLOSETConnectorConstants.CC_ZPRJ_FILE_NAME);
@@ -344,7 +496,36 @@ public class CLOSETHelper {
         styleDataJson.put(CLOSETConnectorConstants.CC_RENDER_FILE_NAME, rendersFileName);
         styleDataJson.put(CLOSETConnectorConstants.CC_THUMBNAIL_FILE_NAME, thumbnailFileName);
         styleDataJson.put(CLOSETConnectorConstants.CC_RENDER_FILE_URL, "");
-        return styleDataJson;
+    }
+
+    /**
+     * awaitLookup - Waits for a CLO-SET lookup run on the lookup executor
+     * @param lookup Future lookup
+     * @param lookupName String lookupName used in logs
+     * @return JSONObject lookup result
+     * @throws CLOSETException exception
+     */
+    private JSONObject awaitLookup(Future<JSONObject> lookup, String lookupName) throws CLOSETException {
+        try {
+            return lookup.get(lookupTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException timeoutExc) {
+            lookup.cancel(true);
+            logger.error("ERROR::CLOSETHelper: awaitLookup() timed out waiting for " + lookupName);
+            throw new CLOSETException("CLO-SET did not respond in time, please try again", HttpStatus.GATEWAY_TIMEOUT);
+        } catch (InterruptedException interruptedExc) {
+            lookup.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new CLOSETException("Request was interrupted, please try again", HttpStatus.INTERNAL_SERVER_ERROR);
+        } catch (ExecutionException executionExc) {
+            Throwable cause = executionExc.getCause();
+            if (cause instanceof CLOSETException) {
+                throw (CLOSETException) cause;
+            }
+            if (cause instanceof HttpClientErrorException) {
+                throw (HttpClientErrorException) cause;
+            }
+            throw new CLOSETException(cause.getLocalizedMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+        }
     }
     /**
      * prepareClosetHeaders - Prepares HTTP headers using collection of headers
@@ -371,10 +552,10 @@ public class CLOSETHelper {
         JSONObject outJson = new JSONObject();
         try {
             HttpHeaders restHeaders = prepareClosetHeaders(headers);
-            ResponseEntity<String> groupsResponse = restService.makeGetOrPostCall(CLOSETConstants.CLOSET_BASE_URL + CLOSETConstants.CLOSET_GROUPS_END_POINT,
-                    HttpMethod.GET,
+            ResponseEntity<String> groupsResponse = restService.makeHedgedGetCall(CLOSETConstants.CLOSET_BASE_URL + CLOSETConstants.CLOSET_GROUPS_END_POINT,
                     restHeaders,
-                    new JSONObject());
+                    new JSONObject(),
+                    HEDGED_GROUPS_READ);
             HttpStatus statusCode = groupsResponse.getStatusCode();
             logger.debug("DEBUG::CLOSETHelper: prepareGetGroupResponse() statusCode - " + statusCode);
 
@@ -415,7 +596,7 @@ public class CLOSETHelper {
                     + CLOSETConstants.CLOSET_STYLE_ID_PARAM_KEY + CLOSETConnectorConstants.ASSIGN + styleId + CLOSETConnectorConstants.AMPERSAND
                     + CLOSETConstants.CLOSET_VERSION_PARAM_KEY + CLOSETConnectorConstants.ASSIGN + version;
 
-            ResponseEntity<String> rendersResponse = restService.makeGetOrPostCall(url, HttpMethod.GET, restHeaders, new JSONObject());
+            ResponseEntity<String> rendersResponse = restService.makeHedgedGetCall(url, restHeaders, new JSONObject(), HEDGED_RENDERS_READ);
 
             HttpStatus statusCode = rendersResponse.getStatusCode();
             logger.debug("DEBUG::CLOSETHelper: prepareGetRenderResponse() statusCode - " + statusCode);
@@ -450,35 +631,12 @@ public class CLOSETHelper {
      */
     public JSONObject prepareGetColorwaysResponse(String styleId, int version, Map<String, String> headers) throws CLOSETException {
         JSONObject outJson = new JSONObject();
-        try {
-            HttpHeaders restHeaders = prepareClosetHeaders(headers);
-            String url = CLOSETConstants.CLOSET_BASE_URL + CLOSETConstants.CLOSET_GET_TECHPACK_END_POINT+ styleId + CLOSETConnectorConstants.FORWARD_SLASH + CLOSETConstants.CLOSET_VERSIONS_PARAM_KEY
-                    + CLOSETConnectorConstants.FORWARD_SLASH + version + CLOSETConnectorConstants.FORWARD_SLASH + CLOSETConstants.CLOSET_GET_TECHPACK_END_POINT_SUFFIX
-                    + CLOSETConnectorConstants.QUESTION_MARK + CLOSETConstants.CLOSET_CONVERT_RES_URL_PARAM_KEY + CLOSETConnectorConstants.ASSIGN + true;
-            ResponseEntity<String> techpackResponse = restService.makeGetOrPostCall(url, HttpMethod.GET, restHeaders, new JSONObject());
+        //Same techpack as the style view and publish, served from the techpack cache
+        JSONObject techpack = getTechSpec(styleId, version, headers);
+        JSONArray colorwayList = readCLOSETColorways(techpack);
 
-            HttpStatus statusCode = techpackResponse.getStatusCode();
-            logger.debug("DEBUG::CLOSETHelper: prepareGetColorwaysResponse() statusCode - " + statusCode);
-
-            if (techpackResponse.getStatusCodeValue() != 200) {
-                String errorJson = techpackResponse.getBody();
-                throw new CLOSETException(errorJson, statusCode);
-            }
-            String techpackResponseStr = techpackResponse.getBody();
-            if (!Utility.isJSONObject(techpackResponseStr)) {
-                throw new CLOSETException("Error in parsing techpack, please contact your System Administrator", HttpStatus.INTERNAL_SERVER_ERROR);
-            }
-
-            JSONObject techpack = new JSONObject(techpackResponseStr);
-            JSONArray colorwayList = readCLOSETColorways(techpack);
-
-            outJson.put(CLOSETConnectorConstants.CC_COLORWAYS_JSON_KEY, colorwayList);
-            outJson.put(CLOSETConnectorConstants.CC_COUNT_JSON_KEY, colorwayList.length());
-        } catch(HttpClientErrorException restExc) {
-            String excMessage = readErrorResponseMessage(restExc.getResponseBodyAsString());
-            logger.error("ERROR::CLOSETHelper: prepareGetColorwaysResponse() excMessage - " + excMessage);
-            throw new CLOSETException(excMessage, restExc.getStatusCode());
-        }
+        outJson.put(CLOSETConnectorConstants.CC_COLORWAYS_JSON_KEY, colorwayList);
+        outJson.put(CLOSETConnectorConstants.CC_COUNT_JSON_KEY, colorwayList.length());
 
         return outJson;
     }
@@ -560,8 +718,7 @@ public class CLOSETHelper {
         try {
             HttpHeaders restHeaders = prepareClosetHeaders(headers);
             //https://www.clo-set.com/api/styles/55eeb58403b5401e81b6deb55a8c5f73/versions/0/downloadUrl
-            String url = CLOSETConstants.CLOSET_BASE_URL + CLOSETConstants.CLOSET_GET_STYLE_END_POINT + styleId + CLOSETConnectorConstants.FORWARD_SLASH + CLOSETConstants.CLOSET_VERSIONS_PARAM_KEY
-                    + CLOSETConnectorConstants.FORWARD_SLASH + version + CLOSETConstants.CLOSET_GET_ZPRJ_FILE_END_POINT;
+            String url = getZprjFileURL(styleId, version);
             ResponseEntity<String> rendersResponse = restService.makeGetOrPostCall(url, HttpMethod.GET, restHeaders, new JSONObject());
             outJson.put("url",rendersResponse.getBody());
         } catch(HttpClientErrorException restExc) {
@@ -606,6 +763,19 @@ public class CLOSETHelper {
      * @throws CLOSETException
      */
     public JSONObject getTechSpec(String styleId, int styleVersion, Map<String, String> httpHeaders) throws CLOSETException {
+        String identity = TechpackCache.identityOf(httpHeaders.get(CLOSETConstants.CLOSET_AUTH_TOKEN), httpHeaders.get(CLOSETConstants.CLO_SET_EMAIL));
+        return techpackCache.getTechSpec(styleId, styleVersion, identity, () -> downloadTechSpec(styleId, styleVersion, httpHeaders));
+    }
+
+    /**
+     * downloadTechSpec - Downloads the techpack json of a style version from CLO-SET
+     * @param styleId String styleId
+     * @param styleVersion int styleVersion
+     * @param httpHeaders Map<String, String> httpHeaders
+     * @return techpack json string
+     * @throws CLOSETException exception
+     */
+    private String downloadTechSpec(String styleId, int styleVersion, Map<String, String> httpHeaders) throws CLOSETException {
         try {
             HttpHeaders CLOSETHeaders = prepareClosetHeaders(httpHeaders);
             //String techSpecURI = "https://www.clo-set.com/api" + "/styles/" + CLOSETStyleId + "/versions/" + styleVersion + "/techpackJson?convertResourceUrl=true";
@@ -614,11 +784,14 @@ public class CLOSETHelper {
                     + CLOSETConnectorConstants.QUESTION_MARK + CLOSETConstants.CLOSET_CONVERT_RES_URL_PARAM_KEY + CLOSETConnectorConstants.ASSIGN + true;
             ResponseEntity<String> responseEntity = restService.makeGetOrPostCall(techSpecURI, HttpMethod.GET, CLOSETHeaders, new JSONObject());
             String responseTechSpec = responseEntity.getBody();
-            return new JSONObject(responseTechSpec);
+            if (!Utility.isJSONObject(responseTechSpec)) {
+                throw new CLOSETException("Error in parsing techpack, please contact your System Administrator", HttpStatus.INTERNAL_SERVER_ERROR);
+            }
+            return responseTechSpec;
         } catch(HttpClientErrorException restExc) {
-            restExc.printStackTrace();
-            logger.error("ERROR::CLOSETHelper: getTechSpec() excMessage - " + restExc);
-            throw new CLOSETException(restExc.getMessage(), restExc.getStatusCode());
+            String excMessage = readErrorResponseMessage(restExc.getResponseBodyAsString());
+            logger.error("ERROR::CLOSETHelper: downloadTechSpec() excMessage - " + excMessage);
+            throw new CLOSETException(excMessage, restExc.getStatusCode());
         }
     }
 
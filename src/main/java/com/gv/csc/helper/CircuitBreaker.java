@@ -0,0 +1,204 @@
+package com.gv.csc.helper;
+
+import com.gv.csc.exceptions.UpstreamUnavailableException;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * CircuitBreaker - Fails calls to an upstream fast while it is down
+ *
+ * Closed, the outcomes of the last windowSize calls are kept; once at least minimumCalls of them are recorded and
+ * the share of failures reaches failureRateThreshold the breaker opens. Open, every call is rejected at once for
+ * openMs. Then the breaker is half-open and lets halfOpenProbes calls through: when they all succeed it closes, when
+ * one fails it opens again.
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final String name;
+    private final int windowSize;
+    private final int minimumCalls;
+    private final int failureRateThreshold;
+    private final long openMs;
+    private final int halfOpenProbes;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private State state = State.CLOSED;
+    // Outcomes of the last calls while closed, true for a failure
+    private final boolean[] outcomes;
+    private int recorded;
+    private int next;
+    private int failures;
+    private long openedAt;
+    private int probesStarted;
+    private int probesSucceeded;
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder failedCalls = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder opened = new LongAdder();
+
+    Logger logger = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    /**
+     * @param name String name of the upstream, used in messages and statistics
+     * @param windowSize int windowSize calls whose outcome is kept
+     * @param minimumCalls int minimumCalls before the failure rate counts
+     * @param failureRateThreshold int failureRateThreshold in percent
+     * @param openMs long openMs calls are rejected before probing
+     * @param halfOpenProbes int halfOpenProbes calls let through to probe
+     */
+    public CircuitBreaker(String name, int windowSize, int minimumCalls, int failureRateThreshold, long openMs, int halfOpenProbes) {
+        this.name = name;
+        this.windowSize = Math.max(1, windowSize);
+        this.minimumCalls = Math.max(1, Math.min(minimumCalls, this.windowSize));
+        this.failureRateThreshold = failureRateThreshold;
+        this.openMs = openMs;
+        this.halfOpenProbes = Math.max(1, halfOpenProbes);
+        this.outcomes = new boolean[this.windowSize];
+    }
+
+    /**
+     * acquirePermission - Admits a call or rejects it while the breaker is open
+     *
+     * @return boolean true when the call is a half-open probe, pass it to onResult
+     * @throws UpstreamUnavailableException when the breaker is open or all probes are taken
+     */
+    public boolean acquirePermission() {
+        lock.lock();
+        try {
+            if (state == State.OPEN && System.currentTimeMillis() - openedAt >= openMs) {
+                state = State.HALF_OPEN;
+                probesStarted = 0;
+                probesSucceeded = 0;
+            }
+            if (state == State.CLOSED) {
+                calls.increment();
+                return false;
+            }
+            if (state == State.HALF_OPEN && probesStarted < halfOpenProbes) {
+                probesStarted++;
+                calls.increment();
+                return true;
+            }
+            rejected.increment();
+            long retryInMs = Math.max(0, openMs - (System.currentTimeMillis() - openedAt));
+            throw new UpstreamUnavailableException(name + " is unavailable, calls are suspended"
+                    + (state == State.OPEN ? " for " + TimeUnit.MILLISECONDS.toSeconds(retryInMs + 999) + " s" : " while it is probed"));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * onResult - Records the outcome of an admitted call
+     *
+     * @param probe boolean probe as returned by acquirePermission
+     * @param failure boolean failure, true when the upstream failed or was unreachable
+     */
+    public void onResult(boolean probe, boolean failure) {
+        if (failure) {
+            failedCalls.increment();
+        }
+        lock.lock();
+        try {
+            if (probe) {
+                if (state != State.HALF_OPEN) {
+                    return;
+                }
+                if (failure) {
+                    open();
+                } else if (++probesSucceeded >= halfOpenProbes) {
+                    close();
+                }
+                return;
+            }
+            // Calls admitted before the breaker opened do not decide its state any more
+            if (state != State.CLOSED) {
+                return;
+            }
+            if (recorded == windowSize && outcomes[next]) {
+                failures--;
+            }
+            outcomes[next] = failure;
+            if (failure) {
+                failures++;
+            }
+            next = (next + 1) % windowSize;
+            recorded = Math.min(windowSize, recorded + 1);
+            if (recorded >= minimumCalls && failures * 100 >= failureRateThreshold * recorded) {
+                open();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * onIgnored - Releases an admitted call that ended without telling anything about the upstream, e.g. cancelled
+     *
+     * @param probe boolean probe as returned by acquirePermission
+     */
+    public void onIgnored(boolean probe) {
+        if (!probe) {
+            return;
+        }
+        lock.lock();
+        try {
+            if (state == State.HALF_OPEN && probesStarted > probesSucceeded) {
+                probesStarted--;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * getStatistics - State and counters of the breaker
+     *
+     * @return JSONObject statistics
+     */
+    public JSONObject getStatistics() {
+        JSONObject statistics = new JSONObject();
+        lock.lock();
+        try {
+            statistics.put("state", state);
+            statistics.put("windowCalls", recorded);
+            statistics.put("windowFailures", failures);
+            if (state != State.CLOSED) {
+                statistics.put("openedAt", new Date(openedAt));
+            }
+        } finally {
+            lock.unlock();
+        }
+        statistics.put("calls", calls.sum());
+        statistics.put("failures", failedCalls.sum());
+        statistics.put("rejected", rejected.sum());
+        statistics.put("opened", opened.sum());
+        return statistics;
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = System.currentTimeMillis();
+        opened.increment();
+        logger.warn("WARN::CircuitBreaker: open() " + name + " is failing, calls are suspended for " + openMs + " ms");
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        recorded = 0;
+        next = 0;
+        failures = 0;
+        logger.info("INFO::CircuitBreaker: close() " + name + " is available again");
+    }
+}
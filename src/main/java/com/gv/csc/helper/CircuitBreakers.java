@@ -0,0 +1,183 @@
+package com.gv.csc.helper;
+
+import com.gv.csc.exceptions.UpstreamUnavailableException;
+import com.gv.csc.util.CLOSETConstants;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.web.client.RestClientResponseException;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * CircuitBreakers - One CircuitBreaker per upstream base url, so calls to a CLO-SET or PLM instance that is down fail
+ * in milliseconds instead of each waiting for its client timeout
+ *
+ * The base url of a call is the longest of CLOSET_BASE_URL and csc.plm.urls it starts with, else the part before the
+ * PLM api path, else its host. Only unreachable upstreams and gateway errors (502, 503, 504) count as failures: other
+ * error responses, including 500, are answers of a running upstream.
+ */
+public class CircuitBreakers {
+
+    private static final String[] PLM_API_PATHS = {"/rest/", "/csi-requesthandler/", "/imagestore/"};
+
+    @Value("${csc.breaker.enabled:true}")
+    private boolean enabled;
+
+    @Value("${csc.breaker.window-size:20}")
+    private int windowSize;
+
+    @Value("${csc.breaker.minimum-calls:10}")
+    private int minimumCalls;
+
+    @Value("${csc.breaker.failure-rate-threshold:50}")
+    private int failureRateThreshold;
+
+    @Value("${csc.breaker.open-ms:30000}")
+    private long openMs;
+
+    @Value("${csc.breaker.half-open-probes:2}")
+    private int halfOpenProbes;
+
+    @Value("${csc.plm.urls:}")
+    private String[] plmUrls;
+
+    private final Map<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+
+    Logger logger = LoggerFactory.getLogger(CircuitBreakers.class);
+
+    /**
+     * call - Runs a blocking upstream call through the breaker of its base url
+     *
+     * @param url String url of the call
+     * @param call UpstreamCall call
+     * @return T result
+     * @throws E the exception of the call
+     * @throws UpstreamUnavailableException when the breaker is open
+     */
+    public <T, E extends Exception> T call(String url, UpstreamBulkheads.UpstreamCall<T, E> call) throws E {
+        if (!enabled) {
+            return call.call();
+        }
+        CircuitBreaker breaker = breaker(url);
+        boolean probe = breaker.acquirePermission();
+        try {
+            T result = call.call();
+            breaker.onResult(probe, false);
+            return result;
+        } catch (UpstreamUnavailableException exc) {
+            breaker.onIgnored(probe);
+            throw exc;
+        } catch (Exception exc) {
+            breaker.onResult(probe, isUpstreamFailure(exc));
+            throw exc;
+        }
+    }
+
+    /**
+     * callAsync - Runs a reactive upstream call through the breaker of its base url
+     *
+     * @param url String url of the call
+     * @param call Mono call
+     * @return Mono result, fails with UpstreamUnavailableException when the breaker is open
+     */
+    public <T> Mono<T> callAsync(String url, Mono<T> call) {
+        if (!enabled) {
+            return call;
+        }
+        CircuitBreaker breaker = breaker(url);
+        return Mono.defer(() -> {
+            boolean probe = breaker.acquirePermission();
+            return call.doOnSuccess(result -> breaker.onResult(probe, false))
+                    .doOnError(exc -> {
+                        if (exc instanceof UpstreamUnavailableException) {
+                            breaker.onIgnored(probe);
+                        } else {
+                            breaker.onResult(probe, isUpstreamFailure(exc));
+                        }
+                    })
+                    // Cancelled by the caller, nothing is known about the upstream
+                    .doOnCancel(() -> breaker.onIgnored(probe));
+        });
+    }
+
+    /**
+     * getStatistics - State of every breaker
+     *
+     * @return JSONObject base url to breaker state and counters
+     */
+    public JSONObject getStatistics() {
+        JSONObject statistics = new JSONObject();
+        statistics.put("enabled", enabled);
+        statistics.put("openMs", openMs);
+        statistics.put("failureRateThreshold", failureRateThreshold);
+        JSONObject breakerStatistics = new JSONObject();
+        for (Map.Entry<String, CircuitBreaker> entry : new TreeMap<>(breakers).entrySet()) {
+            breakerStatistics.put(entry.getKey(), entry.getValue().getStatistics());
+        }
+        statistics.put("breakers", breakerStatistics);
+        return statistics;
+    }
+
+    private CircuitBreaker breaker(String url) {
+        String baseUrl = baseUrlOf(url);
+        return breakers.computeIfAbsent(baseUrl, base -> {
+            String name = (isCLOSET(base) ? "CLO-SET " : "PLM ") + base;
+            logger.info("INFO::CircuitBreakers: breaker() created for " + name);
+            return new CircuitBreaker(name, windowSize, minimumCalls, failureRateThreshold, openMs, halfOpenProbes);
+        });
+    }
+
+    /**
+     * baseUrlOf - Base url of the upstream a call goes to
+     */
+    private String baseUrlOf(String url) {
+        List<String> baseUrls = new ArrayList<>();
+        baseUrls.add(CLOSETConstants.CLOSET_BASE_URL);
+        for (String plmUrl : plmUrls) {
+            if (!plmUrl.trim().isEmpty()) {
+                baseUrls.add(plmUrl.trim());
+            }
+        }
+        String baseUrl = null;
+        for (String candidate : baseUrls) {
+            String base = candidate.endsWith("/") ? candidate.substring(0, candidate.length() - 1) : candidate;
+            if ((url.equals(base) || url.startsWith(base + "/") || url.startsWith(base + "?"))
+                    && (baseUrl == null || base.length() > baseUrl.length())) {
+                baseUrl = base;
+            }
+        }
+        if (baseUrl != null) {
+            return baseUrl;
+        }
+        for (String apiPath : PLM_API_PATHS) {
+            int apiStart = url.indexOf(apiPath, url.indexOf("://") + 3);
+            if (apiStart > 0) {
+                return url.substring(0, apiStart);
+            }
+        }
+        return UpstreamBulkheads.hostOf(url);
+    }
+
+    private static boolean isCLOSET(String baseUrl) {
+        String host = UpstreamBulkheads.hostOf(baseUrl);
+        return host.endsWith("clo-set.com") || host.endsWith("clo3d.com");
+    }
+
+    /**
+     * isUpstreamFailure - Whether a failed call says the upstream is down: no response, or a gateway error
+     */
+    private static boolean isUpstreamFailure(Throwable exc) {
+        if (exc instanceof RestClientResponseException) {
+            int status = ((RestClientResponseException) exc).getRawStatusCode();
+            return status == 502 || status == 503 || status == 504;
+        }
+        return true;
+    }
+}
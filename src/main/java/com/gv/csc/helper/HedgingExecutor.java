@@ -0,0 +1,333 @@
+package com.gv.csc.helper;
+
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import reactor.core.publisher.Mono;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * HedgingExecutor - Hedges idempotent reads that are slower than usual
+ *
+ * The latency of each operation is tracked over its last calls. When a call has not answered within the configured
+ * percentile (p95 by default) of that latency, an identical second call is started and the first successful answer
+ * wins; the other call is cancelled, or for a blocking call left to finish with its answer dropped. A call that fails
+ * before the hedge is started fails as usual, once both failed the error of the last one is raised. Hedges draw on a
+ * global budget that grows by budget-percent of every call, so they add at most that share of upstream load. Only
+ * idempotent reads may be hedged. Disabled by default.
+ */
+public class HedgingExecutor {
+
+    private static final int SAMPLES = 256;
+    private static final int RECOMPUTE_EVERY = 16;
+
+    @Autowired
+    @Qualifier("hedgedReadExecutor")
+    private ExecutorService hedgedReadExecutor;
+
+    @Autowired
+    @Qualifier("timeoutScheduler")
+    private ScheduledExecutorService timeoutScheduler;
+
+    @Value("${csc.hedging.enabled:false}")
+    private boolean enabled;
+
+    @Value("${csc.hedging.percentile:95}")
+    private int percentile;
+
+    @Value("${csc.hedging.min-samples:20}")
+    private int minSamples;
+
+    @Value("${csc.hedging.min-delay-ms:20}")
+    private long minDelayMs;
+
+    @Value("${csc.hedging.budget-percent:5}")
+    private double budgetPercent;
+
+    @Value("${csc.hedging.max-burst:10}")
+    private double maxBurst;
+
+    private final Map<String, LatencyTracker> latencies = new ConcurrentHashMap<>();
+    private final ReentrantLock budgetLock = new ReentrantLock();
+    private double budgetTokens;
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder hedged = new LongAdder();
+    private final LongAdder hedgeWins = new LongAdder();
+    private final LongAdder suppressedByBudget = new LongAdder();
+
+    Logger logger = LoggerFactory.getLogger(HedgingExecutor.class);
+
+    /**
+     * execute - Runs a blocking idempotent read, hedged when it is slow. The read runs on the hedged read executor
+     * while the caller waits, so the caller can take whichever answer comes first.
+     *
+     * @param operation String operation whose latency the call is measured against
+     * @param call Supplier call, run once per attempt
+     * @return T result of the first successful attempt
+     */
+    public <T> T execute(String operation, Supplier<T> call) {
+        if (!enabled) {
+            return call.get();
+        }
+        LatencyTracker tracker = tracker(operation);
+        long delayMs = hedgeDelayMs(tracker);
+        Supplier<T> timedCall = () -> {
+            long startNanos = System.nanoTime();
+            T result = call.get();
+            tracker.record(System.nanoTime() - startNanos);
+            return result;
+        };
+        if (delayMs < 0) {
+            // Not enough samples yet, nothing to hedge against
+            return timedCall.get();
+        }
+        CompletableFuture<T> result;
+        try {
+            result = hedge(delayMs, () -> CompletableFuture.supplyAsync(timedCall, hedgedReadExecutor));
+        } catch (RejectedExecutionException exc) {
+            return timedCall.get();
+        }
+        try {
+            return result.get();
+        } catch (InterruptedException exc) {
+            result.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted waiting for " + operation);
+        } catch (ExecutionException exc) {
+            throw propagate(exc.getCause());
+        }
+    }
+
+    /**
+     * executeAsync - Runs a reactive idempotent read, hedged when it is slow
+     *
+     * @param operation String operation whose latency the call is measured against
+     * @param call Mono call, each subscription makes a new attempt
+     * @return Mono result of the first successful attempt
+     */
+    public <T> Mono<T> executeAsync(String operation, Mono<T> call) {
+        if (!enabled) {
+            return call;
+        }
+        LatencyTracker tracker = tracker(operation);
+        return Mono.defer(() -> {
+            long delayMs = hedgeDelayMs(tracker);
+            Mono<T> timedCall = Mono.defer(() -> {
+                long startNanos = System.nanoTime();
+                return call.doOnSuccess(value -> tracker.record(System.nanoTime() - startNanos));
+            });
+            if (delayMs < 0) {
+                return timedCall;
+            }
+            // Cancelling the future of an attempt cancels its subscription
+            CompletableFuture<T> result = hedge(delayMs, timedCall::toFuture);
+            return Mono.fromFuture(result).doOnCancel(() -> result.cancel(true));
+        });
+    }
+
+    /**
+     * getStatistics - Calls, hedges and the hedge delay per operation
+     *
+     * @return JSONObject statistics
+     */
+    public JSONObject getStatistics() {
+        JSONObject statistics = new JSONObject();
+        statistics.put("enabled", enabled);
+        statistics.put("percentile", percentile);
+        statistics.put("calls", calls.sum());
+        statistics.put("hedged", hedged.sum());
+        statistics.put("hedgeWins", hedgeWins.sum());
+        statistics.put("suppressedByBudget", suppressedByBudget.sum());
+        budgetLock.lock();
+        try {
+            statistics.put("budgetTokens", budgetTokens);
+        } finally {
+            budgetLock.unlock();
+        }
+        JSONObject operations = new JSONObject();
+        for (Map.Entry<String, LatencyTracker> entry : new TreeMap<>(latencies).entrySet()) {
+            JSONObject operation = new JSONObject();
+            operation.put("samples", entry.getValue().sampleCount());
+            operation.put("hedgeDelayMs", hedgeDelayMs(entry.getValue()));
+            operations.put(entry.getKey(), operation);
+        }
+        statistics.put("operations", operations);
+        return statistics;
+    }
+
+    /**
+     * hedge - Starts the first attempt and, unless it completed within delayMs, a second one when the budget allows
+     *
+     * @return CompletableFuture completed by the first successful attempt, or with the error of the last one
+     */
+    private <T> CompletableFuture<T> hedge(long delayMs, Supplier<CompletableFuture<T>> attempt) {
+        calls.increment();
+        depositBudget();
+        CompletableFuture<T> result = new CompletableFuture<>();
+        AtomicInteger running = new AtomicInteger(1);
+        CompletableFuture<T> primary = attempt.get();
+        complete(result, primary, running, false);
+
+        ScheduledFuture<?> hedgeTimer = timeoutScheduler.schedule(() -> {
+            if (result.isDone()) {
+                return;
+            }
+            if (!withdrawBudget()) {
+                suppressedByBudget.increment();
+                return;
+            }
+            hedged.increment();
+            running.incrementAndGet();
+            try {
+                CompletableFuture<T> hedge = attempt.get();
+                complete(result, hedge, running, true);
+                result.whenComplete((value, exc) -> hedge.cancel(true));
+            } catch (RuntimeException exc) {
+                logger.warn("WARN::HedgingExecutor: hedge() could not start the hedge - " + exc.getMessage());
+                if (running.decrementAndGet() == 0) {
+                    result.completeExceptionally(exc);
+                }
+            }
+        }, delayMs, TimeUnit.MILLISECONDS);
+        result.whenComplete((value, exc) -> {
+            hedgeTimer.cancel(false);
+            primary.cancel(true);
+        });
+        return result;
+    }
+
+    private <T> void complete(CompletableFuture<T> result, CompletableFuture<T> attempt, AtomicInteger running, boolean isHedge) {
+        attempt.whenComplete((value, exc) -> {
+            if (exc == null) {
+                if (result.complete(value) && isHedge) {
+                    hedgeWins.increment();
+                }
+            } else if (running.decrementAndGet() == 0) {
+                // The other attempt failed too, or none was started
+                result.completeExceptionally(exc instanceof CompletionException && exc.getCause() != null ? exc.getCause() : exc);
+            }
+        });
+    }
+
+    /**
+     * hedgeDelayMs - How long an attempt may take before it is hedged
+     *
+     * @return long ms, -1 while too few calls were measured
+     */
+    private long hedgeDelayMs(LatencyTracker tracker) {
+        long percentileNanos = tracker.percentileNanos(percentile, minSamples);
+        return percentileNanos < 0 ? -1 : Math.max(minDelayMs, TimeUnit.NANOSECONDS.toMillis(percentileNanos));
+    }
+
+    private void depositBudget() {
+        budgetLock.lock();
+        try {
+            budgetTokens = Math.min(maxBurst, budgetTokens + budgetPercent / 100);
+        } finally {
+            budgetLock.unlock();
+        }
+    }
+
+    private boolean withdrawBudget() {
+        budgetLock.lock();
+        try {
+            if (budgetTokens < 1) {
+                return false;
+            }
+            budgetTokens--;
+            return true;
+        } finally {
+            budgetLock.unlock();
+        }
+    }
+
+    private LatencyTracker tracker(String operation) {
+        return latencies.computeIfAbsent(operation, name -> new LatencyTracker());
+    }
+
+    private static RuntimeException propagate(Throwable exc) {
+        if (exc instanceof RuntimeException) {
+            return (RuntimeException) exc;
+        }
+        if (exc instanceof Error) {
+            throw (Error) exc;
+        }
+        return new CompletionException(exc);
+    }
+
+    /**
+     * LatencyTracker - Latencies of the last calls of an operation and their percentile
+     */
+    private static final class LatencyTracker {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final long[] samples = new long[SAMPLES];
+        private int count;
+        private int next;
+        private int sinceComputed = RECOMPUTE_EVERY;
+        private int computedFor = -1;
+        private long percentileNanos = -1;
+
+        private void record(long latencyNanos) {
+            lock.lock();
+            try {
+                samples[next] = latencyNanos;
+                next = (next + 1) % SAMPLES;
+                count = Math.min(SAMPLES, count + 1);
+                sinceComputed++;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private int sampleCount() {
+            lock.lock();
+            try {
+                return count;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private long percentileNanos(int percentile, int minSamples) {
+            lock.lock();
+            try {
+                if (count < minSamples) {
+                    return -1;
+                }
+                // Sorting a copy of the samples is cheap, but not needed on every call
+                if (sinceComputed >= RECOMPUTE_EVERY || computedFor != percentile) {
+                    long[] sorted = Arrays.copyOf(samples, count);
+                    Arrays.sort(sorted);
+                    int index = (int) Math.ceil(percentile / 100.0 * count) - 1;
+                    percentileNanos = sorted[Math.max(0, Math.min(count - 1, index))];
+                    sinceComputed = 0;
+                    computedFor = percentile;
+                }
+                return percentileNanos;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -5,10 +5,12 @@ import com.gv.csc.entity.LastLoginTime;
 import com.gv.csc.entity.Style;
 import com.gv.csc.exceptions.CLOSETException;
 import com.gv.csc.exceptions.PLMException;
+import com.gv.csc.exceptions.UpstreamUnavailableException;
+import com.gv.csc.service.AttachmentDedupService;
 import com.gv.csc.service.LastLoginTimeService;
+import com.gv.csc.service.PublishCheckpointService;
 import com.gv.csc.service.StyleService;
 import com.gv.csc.util.*;
-import okhttp3.Response;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.json.JSONArray;
@@ -18,23 +20,38 @@ import org.json.JSONTokener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.env.Environment;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
 import org.springframework.http.*;
 import org.springframework.util.MultiValueMap;
 import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.multipart.MultipartHttpServletRequest;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 import java.io.*;
-import java.net.URL;
-import java.net.URLConnection;
 import java.net.UnknownHostException;
 import java.text.SimpleDateFormat;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
 import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
+import java.util.zip.ZipFile;
 import java.net.InetAddress;
 
 /**
@@ -58,6 +75,47 @@ public class PLMHelper {
     @Autowired
     private LastLoginTimeService lastLoginTimeService;
 
+    @Autowired
+    private PLMLOVs plmLOVs;
+
+    @Autowired
+    private AssetTransferHelper assetTransferHelper;
+
+    @Autowired
+    private RetryPolicy retryPolicy;
+
+    @Autowired
+    @Qualifier("plmLookupExecutor")
+    private ExecutorService plmLookupExecutor;
+
+    @Autowired
+    private ReactiveRestService reactiveRestService;
+
+    @Autowired
+    private AttachmentDedupService attachmentDedupService;
+
+    @Autowired
+    private PublishStageTimings publishStageTimings;
+
+    @Autowired
+    private PublishCheckpointService publishCheckpointService;
+
+    @Autowired
+    @Qualifier("attachmentUploadExecutor")
+    private ExecutorService attachmentUploadExecutor;
+
+    @Value("${csc.publish.upload.max-partitions:4}")
+    private int uploadMaxPartitions;
+
+    @Value("${csc.publish.upload.min-partition-bytes:8388608}")
+    private long uploadMinPartitionBytes;
+
+    @Value("${csc.publish.upload.partition-retries:2}")
+    private int uploadPartitionRetries;
+
+    @Value("${csc.plm.lov.lookup-timeout-ms:30000}")
+    private long lovLookupTimeoutMs;
+
     Logger logger = LoggerFactory.getLogger(PLMHelper.class);
 
     public PLMHelper() {
@@ -170,7 +228,7 @@ public class PLMHelper {
         String url = plmUrl + PLMConstants.SEARCH_STYLE_URI + CLOSETConnectorConstants.QUESTION_MARK
                 + PLMConstants.CLOSET_SEARCH_TERM_PARAM_KEY + CLOSETConnectorConstants.ASSIGN + searchTerm;
         System.out.println("url prepareSearchStyleResponse  :"+url);
-        ResponseEntity<String> stylesResponse = restService.makeGetOrPostCall(url, HttpMethod.GET, restHeaders, new JSONObject());
+        ResponseEntity<String> stylesResponse = restService.makeGetOrPostCall(url, HttpMethod.GET, restHeaders, new JSONObject(), UpstreamBulkheads.Operation.SEARCH);
 
         HttpStatus statusCode = stylesResponse.getStatusCode();
         logger.debug("DEBUG::PLMHelper: prepareSearchStyleResponse() statusCode - " + statusCode);
@@ -262,15 +320,52 @@ public class PLMHelper {
      */
     public JSONObject prepareGetStyleResponse(String requestNo, String owner, Map<String, String> headers, String plmUrl) throws PLMException  {
         logger.info("INFO::PLMHelper: prepareGetStyleResponse() start.");
-        JSONObject outJson = new JSONObject();
         //String plmurl = headers.get("plm_env_url");
         HttpHeaders restHeaders = preparePlmHeaders(headers);
 
-        String url = plmUrl + PLMConstants.GET_STYLE_URI + CLOSETConnectorConstants.QUESTION_MARK
+        ResponseEntity<String> styleResponse = restService.makeGetOrPostCall(getStyleURL(requestNo, owner, plmUrl), HttpMethod.GET, restHeaders, new JSONObject());
+        return readStyleResponse(styleResponse, restHeaders, headers, plmUrl);
+    }
+
+    /**
+     * prepareGetStyleResponseAsync - Non-blocking variant of prepareGetStyleResponse, used to fan out style lookups
+     * @param requestNo String requestNo
+     * @param owner String owner
+     * @param headers Map<String, String> headers
+     * @param plmUrl String plmUrl
+     * @return JSONObject with style response, emitted once received
+     */
+    public Mono<JSONObject> prepareGetStyleResponseAsync(String requestNo, String owner, Map<String, String> headers, String plmUrl) {
+        HttpHeaders restHeaders = preparePlmHeaders(headers);
+        return reactiveRestService.makeGetOrPostCall(getStyleURL(requestNo, owner, plmUrl), HttpMethod.GET, restHeaders, new JSONObject())
+                // Display values may still need blocking lookups, keep them off the event loop
+                .publishOn(Schedulers.boundedElastic())
+                .flatMap(styleResponse -> {
+                    try {
+                        return Mono.just(readStyleResponse(styleResponse, restHeaders, headers, plmUrl));
+                    } catch (PLMException exc) {
+                        return Mono.error(exc);
+                    }
+                });
+    }
+
+    private String getStyleURL(String requestNo, String owner, String plmUrl) {
+        return plmUrl + PLMConstants.GET_STYLE_URI + CLOSETConnectorConstants.QUESTION_MARK
                 + PLMConstants.CLOSET_OWNER_PARAM_KEY + CLOSETConnectorConstants.ASSIGN + owner + CLOSETConnectorConstants.AMPERSAND
                 + PLMConstants.CLOSET_REQUEST_NO_PARAM_KEY + CLOSETConnectorConstants.ASSIGN + requestNo;
-        ResponseEntity<String> styleResponse = restService.makeGetOrPostCall(url, HttpMethod.GET, restHeaders, new JSONObject());
+    }
 
+    /**
+     * readStyleResponse - Prepares the style response from the PLM get style response
+     * @param styleResponse ResponseEntity styleResponse
+     * @param restHeaders HttpHeaders restHeaders
+     * @param headers Map<String, String> headers
+     * @param plmUrl String plmUrl
+     * @return JSONObject with style response
+     * @throws PLMException exception
+     */
+    private JSONObject readStyleResponse(ResponseEntity<String> styleResponse, HttpHeaders restHeaders, Map<String, String> headers, String plmUrl) throws PLMException {
+        JSONObject outJson = new JSONObject();
         HttpStatus statusCode = styleResponse.getStatusCode();
         logger.debug("DEBUG::PLMHelper: prepareGetStyleResponse() statusCode - " + statusCode);
         logger.debug("DEBUG::PLMHelper: prepareGetStyleResponse() styleResponse.getBody() - " + styleResponse.getBody());
@@ -392,74 +487,217 @@ public class PLMHelper {
 
     private JSONArray setDisplayValues(JSONArray inStylesList, HttpHeaders restHeaders, String plmurl) {
         logger.info("setDisplayValues inStylesList :" + inStylesList);
-        String deptCodeValue = "";
-        String depNumtValue = "";
+        // Collect the distinct codes per attribute across the whole result set first
+        Map<String, Set<String>> codesByAttribute = new LinkedHashMap<>();
+        for (String attKey : PLMConstants.PLM_ATT_KEYS) {
+            codesByAttribute.put(attKey, new LinkedHashSet<>());
+        }
+        for (int i = 0; i < inStylesList.length(); i++) {
+            JSONObject tempStylesListJson = inStylesList.getJSONObject(i);
+            for (String attKey : PLMConstants.PLM_ATT_KEYS) {
+                String codeValue = tempStylesListJson.has(attKey) ? tempStylesListJson.getString(attKey) : "";
+                if (!codeValue.trim().isEmpty()) {
+                    codesByAttribute.get(attKey).add(codeValue);
+                }
+            }
+        }
+
+        Map<String, Map<String, String>> displayValues = resolveLOVDisplayValues(codesByAttribute, restHeaders, plmurl);
+
         String keys;
-        String deptValue = "";
-        HashMap<String, HashMap<String, String>> plmLOVs = PLMLOVs.getPLM_LOV_LIST();
-        JSONObject tempStylesListJson = null;
+        JSONObject tempStylesListJson;
         JSONArray outStylesList = new JSONArray();
         for (int i = 0; i < inStylesList.length(); i++) {
             tempStylesListJson = inStylesList.getJSONObject(i);
             for (int j = 0; j < PLMConstants.PLM_ATT_KEYS.size(); j++) {
-                deptCodeValue = "";
                 keys = PLMConstants.PLM_ATT_KEYS.get(j);
-                if (tempStylesListJson.has(keys)) {
-                    deptCodeValue = tempStylesListJson.getString(keys);
+                String codeValue = tempStylesListJson.has(keys) ? tempStylesListJson.getString(keys) : "";
+                String displayValue = displayValues.get(keys).getOrDefault(codeValue, codeValue);
+                tempStylesListJson.put(keys, displayValue);
+            }
+            outStylesList.put(tempStylesListJson);
+        }
+        logger.debug("Debug :: setDisplayValues() outStylesList:"+outStylesList);
+        return outStylesList;
+    }
+
+    /**
+     * resolveLOVDisplayValues - Resolves the display values of the given codes, from the LOV cache when present,
+     * otherwise with one bulk reference data call per attribute (run in parallel). Only when the bulk call of an
+     * attribute fails are its codes looked up one by one, also in parallel and within one shared timeout; a code
+     * missing from a bulk response has no display value and is shown as is. Codes are cached trimmed, the way the
+     * reference data lists them, and a missing code is cached as itself so it does not fetch the list again.
+     * @param codesByAttribute Map distinct codes per attribute
+     * @param headers HttpHeaders headers
+     * @param plmurl String plmurl
+     * @return display values per attribute and code
+     */
+    private Map<String, Map<String, String>> resolveLOVDisplayValues(Map<String, Set<String>> codesByAttribute, HttpHeaders headers, String plmurl) {
+        Map<String, Map<String, String>> displayValues = new HashMap<>();
+        List<String> bulkLookups = new ArrayList<>();
+        for (Map.Entry<String, Set<String>> entry : codesByAttribute.entrySet()) {
+            String attKey = entry.getKey();
+            Map<String, String> attDisplayValues = new HashMap<>();
+            boolean missing = false;
+            for (String codeValue : entry.getValue()) {
+                String displayValue = plmLOVs.peek(plmurl, attKey, codeValue.trim());
+                if (displayValue == null) {
+                    missing = true;
+                } else {
+                    attDisplayValues.put(codeValue, displayValue);
                 }
-                if (plmLOVs.isEmpty()) {
-                    if(keys.equals(PLMConstants.DEPT)) {
-                        deptValue = getDeptDisplayValue(deptCodeValue, restHeaders, plmurl);
-                    }
-                    if(keys.equals(PLMConstants.BRAND)) {
-                        deptValue = getBrandDisplayValue(deptCodeValue, restHeaders, plmurl);
-                    }
-                    if(keys.equals(PLMConstants.DIVISION)) {
-                        deptValue = getDivisionDisplayValue(deptCodeValue, restHeaders, plmurl);
+            }
+            displayValues.put(attKey, attDisplayValues);
+            if (missing) {
+                bulkLookups.add(attKey);
+            }
+        }
+
+        // Round trip per attribute: the whole reference data list, cached for later searches. A bulk lookup that
+        // fails or times out is logged and its codes are looked up one by one instead
+        Map<String, Map<String, String>> referenceDataByAttribute = reactiveRestService.await(Flux.fromIterable(bulkLookups)
+                .flatMap(attKey -> searchLOVCodes(attKey, headers, plmurl)
+                        .timeout(Duration.ofMillis(lovLookupTimeoutMs))
+                        .map(referenceData -> new AbstractMap.SimpleImmutableEntry<String, Map<String, String>>(attKey, referenceData))
+                        .onErrorResume(exc -> {
+                            logger.warn("WARN::PLMHelper: resolveLOVDisplayValues() bulk lookup failed for " + attKey + " - " + exc);
+                            return Mono.empty();
+                        }))
+                .collectMap(Map.Entry::getKey, Map.Entry::getValue), RuntimeException.class);
+
+        // Per-code lookups all share one deadline, however many codes the search returned
+        long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(lovLookupTimeoutMs);
+        Map<String, Map<String, Future<String>>> codeLookups = new LinkedHashMap<>();
+        int codeLookupCount = 0;
+        for (String attKey : bulkLookups) {
+            Map<String, String> attDisplayValues = displayValues.get(attKey);
+            Map<String, String> referenceData = referenceDataByAttribute.get(attKey);
+            if (referenceData != null) {
+                for (Map.Entry<String, String> codeEntry : referenceData.entrySet()) {
+                    plmLOVs.put(plmurl, attKey, codeEntry.getKey(), codeEntry.getValue());
+                }
+            }
+            for (String codeValue : codesByAttribute.get(attKey)) {
+                if (attDisplayValues.containsKey(codeValue)) {
+                    continue;
+                }
+                String lovCode = codeValue.trim();
+                if (referenceData != null) {
+                    String displayValue = referenceData.get(lovCode);
+                    if (displayValue == null) {
+                        // Not in the reference data: shown as is, and remembered so later searches do not fetch the list again
+                        displayValue = lovCode;
+                        plmLOVs.put(plmurl, attKey, lovCode, displayValue);
                     }
-                    PLMLOVs.setPLM_LOV_LIST(keys, deptCodeValue, deptValue);
-                    plmLOVs = PLMLOVs.getPLM_LOV_LIST();
-                    depNumtValue = plmLOVs.get(keys).get(deptCodeValue);
-                    tempStylesListJson.put(keys, depNumtValue);
+                    attDisplayValues.put(codeValue, displayValue);
                 } else {
-                    if (plmLOVs.containsKey(keys)) {
-                        depNumtValue = plmLOVs.get(keys).get(deptCodeValue);
-                        if(depNumtValue == null){
-                            if(keys.equals(PLMConstants.DEPT)) {
-                                deptValue = getDeptDisplayValue(deptCodeValue, restHeaders, plmurl);
-                            }
-                            if(keys.equals(PLMConstants.BRAND)) {
-                                deptValue = getBrandDisplayValue(deptCodeValue, restHeaders, plmurl);
-                            }
-                            if(keys.equals(PLMConstants.DIVISION)) {
-                                deptValue = getDivisionDisplayValue(deptCodeValue, restHeaders, plmurl);
-                            }
-                            PLMLOVs.setPLM_LOV_LIST(keys, deptCodeValue, deptValue);
-                            plmLOVs = PLMLOVs.getPLM_LOV_LIST();
-                            depNumtValue = plmLOVs.get(keys).get(deptCodeValue);
-                        }
-                        tempStylesListJson.put(keys, depNumtValue);
-                    } else {
-                        if(keys.equals(PLMConstants.DEPT)) {
-                            deptValue = getDeptDisplayValue(deptCodeValue, restHeaders, plmurl);
-                        }
-                        if(keys.equals(PLMConstants.BRAND)) {
-                            deptValue = getBrandDisplayValue(deptCodeValue, restHeaders, plmurl);
-                        }
-                        if(keys.equals(PLMConstants.DIVISION)) {
-                            deptValue = getDivisionDisplayValue(deptCodeValue, restHeaders, plmurl);
-                        }
-                        PLMLOVs.setPLM_LOV_LIST(keys, deptCodeValue, deptValue);
-                        plmLOVs = PLMLOVs.getPLM_LOV_LIST();
-                        depNumtValue = plmLOVs.get(keys).get(deptCodeValue);
-                        tempStylesListJson.put(keys, depNumtValue);
-                    }
+                    codeLookups.computeIfAbsent(attKey, key -> new LinkedHashMap<>()).put(codeValue, plmLookupExecutor.submit(() ->
+                            plmLOVs.getDisplayValue(plmurl, attKey, lovCode, () -> getLOVDisplayValue(attKey, lovCode, headers, plmurl))));
+                    codeLookupCount++;
                 }
             }
-            outStylesList.put(tempStylesListJson);
         }
-        logger.debug("Debug :: setDisplayValues() outStylesList:"+outStylesList);
-        return outStylesList;
+
+        // Fallback for the attributes whose bulk call failed
+        for (Map.Entry<String, Map<String, Future<String>>> entry : codeLookups.entrySet()) {
+            Map<String, String> attDisplayValues = displayValues.get(entry.getKey());
+            for (Map.Entry<String, Future<String>> codeEntry : entry.getValue().entrySet()) {
+                String displayValue = awaitLOVLookup(codeEntry.getValue(), deadlineNanos, entry.getKey(), codeEntry.getKey());
+                attDisplayValues.put(codeEntry.getKey(), displayValue == null ? codeEntry.getKey() : displayValue);
+            }
+        }
+        logger.debug("DEBUG::PLMHelper: resolveLOVDisplayValues() bulk lookups - " + bulkLookups.size() + ", code lookups - " + codeLookupCount);
+        return displayValues;
+    }
+
+    /**
+     * awaitLOVLookup - Waits for a LOV code lookup, a lookup that does not finish in time is logged and ignored
+     * @param lookup Future lookup
+     * @param deadlineNanos long deadlineNanos (System.nanoTime) shared by all lookups of a search
+     * @param attKey String attKey
+     * @param codeValue String codeValue
+     * @return lookup result, null when timed out
+     */
+    private <T> T awaitLOVLookup(Future<T> lookup, long deadlineNanos, String attKey, String codeValue) {
+        try {
+            return lookup.get(Math.max(0, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException exc) {
+            lookup.cancel(true);
+            logger.warn("WARN::PLMHelper: awaitLOVLookup() timed out for " + attKey + " - " + codeValue);
+            return null;
+        } catch (InterruptedException exc) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(exc);
+        } catch (ExecutionException exc) {
+            if (exc.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) exc.getCause();
+            }
+            throw new IllegalStateException(exc.getCause());
+        }
+    }
+
+    /**
+     * searchLOVCodes - Reads the code/description pairs of a LOV from PLM reference data
+     * @param attKey String attKey
+     * @param headers HttpHeaders headers
+     * @param plmurl String plmurl
+     * @return descriptions by code, emitted once received
+     */
+    private Mono<Map<String, String>> searchLOVCodes(String attKey, HttpHeaders headers, String plmurl) {
+        String api;
+        String codesJsonKey;
+        if (attKey.equals(PLMConstants.DEPT)) {
+            api = PLMConstants.DEPARTMENT_SEARCH_RESULTS_API;
+            codesJsonKey = PLMConstants.PLM_DEPARTMENT_CODES_JSON_KEY;
+        } else if (attKey.equals(PLMConstants.BRAND)) {
+            api = PLMConstants.BRAND_SEARCH_RESULTS_API;
+            codesJsonKey = PLMConstants.PLM_BRAND_CODES_JSON_KEY;
+        } else if (attKey.equals(PLMConstants.DIVISION)) {
+            api = PLMConstants.DIVISION_SEARCH_RESULTS_API;
+            codesJsonKey = PLMConstants.PLM_DIVISION_CODES_JSON_KEY;
+        } else {
+            return Mono.just(Collections.emptyMap());
+        }
+
+        return reactiveRestService.makeGetOrPostCall(plmurl + api, HttpMethod.GET, headers, new JSONObject(), UpstreamBulkheads.Operation.SEARCH).map(responseEntity -> {
+            JSONObject docJSON = new JSONObject(responseEntity.getBody()).getJSONObject(PLMConstants.PLM_DOCUMENT_JSON_KEY);
+            JSONArray codesArray = docJSON.getJSONArray(codesJsonKey);
+
+            Map<String, String> descriptions = new HashMap<>();
+            for (int j = 0; j < codesArray.length(); j++) {
+                JSONObject rec = codesArray.getJSONObject(j);
+                String description = rec.optString(PLMConstants.PLM_DESCRIPTION_JSON_KEY, null);
+                if (Utility.hasContent(description)) {
+                    descriptions.putIfAbsent(rec.getString(PLMConstants.PLM_CODE_JSON_KEY).trim(), description);
+                }
+            }
+            logger.debug("DEBUG::PLMHelper: searchLOVCodes() " + attKey + " codes - " + descriptions.size());
+            return descriptions;
+        });
+    }
+
+    /**
+     * getLOVDisplayValue - Looks up the display value of a LOV code in PLM reference data
+     * @param attKey String attKey
+     * @param codeValue String codeValue
+     * @param headers HttpHeaders headers
+     * @param plmurl String plmurl
+     * @return display value, the code itself when not found
+     */
+    private String getLOVDisplayValue(String attKey, String codeValue, HttpHeaders headers, String plmurl) {
+        if (codeValue.trim().isEmpty()) {
+            return codeValue;
+        }
+        if (attKey.equals(PLMConstants.DEPT)) {
+            return getDeptDisplayValue(codeValue, headers, plmurl);
+        }
+        if (attKey.equals(PLMConstants.BRAND)) {
+            return getBrandDisplayValue(codeValue, headers, plmurl);
+        }
+        if (attKey.equals(PLMConstants.DIVISION)) {
+            return getDivisionDisplayValue(codeValue, headers, plmurl);
+        }
+        return codeValue;
     }
 
     private HttpHeaders preparePlmHeaders(Map<String, String> headers) {
@@ -519,9 +757,7 @@ public class PLMHelper {
             HttpHeaders restHeaders = preparePlmHeaders(headers);
             String token = String.valueOf(restHeaders.get(PLMConstants.API_HEADER_TOKEN_KEY));
 
-            Response publishResponse = restService.okmakeGetOrPostCall(plmUrl + PLMConstants.POST_STYLE_URI, publishPayLoad, token);
-
-            String responseData = publishResponse.body().string();
+            String responseData = restService.okmakeGetOrPostCall(plmUrl + PLMConstants.POST_STYLE_URI, publishPayLoad, token);
             logger.info("responseData -:"+responseData);
 
             JSONObject responseDataJSON = new JSONObject(responseData);
@@ -557,6 +793,19 @@ public class PLMHelper {
      * @throws PLMException exception
      */
     public JSONObject preparePublishToPLM(JSONObject publishData, Map<String, String> headers, String plmUrl) throws PLMException {
+        return preparePublishToPLM(publishData, headers, plmUrl, PublishProgressListener.NONE);
+    }
+
+    /**
+     * preparePublishToPLM - Function calls PLM Rest API and prepares publish response, reporting each stage to the listener
+     * @param publishData JSONObject publishData
+     * @param headers Map<String, String> headers
+     * @param plmUrl String plmUrl
+     * @param progressListener PublishProgressListener progressListener
+     * @return JSONObject with publish response
+     * @throws PLMException exception
+     */
+    public JSONObject preparePublishToPLM(JSONObject publishData, Map<String, String> headers, String plmUrl, PublishProgressListener progressListener) throws PLMException {
         JSONObject outJson = new JSONObject();
         logger.info("INFO::PLMHelper: preparePublishToPLM() start."+publishData);
         //String plmurl = headers.get("plm_env_url");
@@ -575,9 +824,7 @@ public class PLMHelper {
             if(!Utility.hasContent(externalStyleId)){
                 externalStyleId = owner+"-:-"+requestNo;
             }
-            if(plmStyleDetails.has(CLOSETConstants.RESET_EXTERNAL_STYLE_ID) && plmStyleDetails.getBoolean(CLOSETConstants.RESET_EXTERNAL_STYLE_ID) ) {
-                closetHelper.publishExternalId(closetStyleId, externalStyleId, headers);
-            }
+            boolean resetExternalStyleId = plmStyleDetails.has(CLOSETConstants.RESET_EXTERNAL_STYLE_ID) && plmStyleDetails.getBoolean(CLOSETConstants.RESET_EXTERNAL_STYLE_ID);
 
             String nanoTime = Long.toString(System.nanoTime());
             String userId = headers.get(CLOSETConstants.PLM_USER_NAME);
@@ -602,96 +849,142 @@ public class PLMHelper {
                 logger.info("outerFile is dir - "+outerFile.isFile());
             }
 
+            // The publish stages form a dependency graph: independent stages (external id, downloads, techspec and
+            // colorways) overlap, and the publish takes as long as its critical path
+            StageGraph publishGraph = new StageGraph("Publish of " + closetStyleId, assetTransferHelper::supplyStageAsync, progressListener);
+            String publishedExternalStyleId = externalStyleId;
             JSONObject closetAssets = closetStyleDetails.getJSONObject(PLMConstants.CLOSET_ASSETS);
-            HashMap<String, File> uploadFiles = getUploadFilesFromURLs(closetAssets, outerPath);
-            JSONArray renderDetails = addMissingRendersURL(closetAssets, closetStyleId, closetStyleVersion, headers);
-            HashMap<String, File> renderUploadFiles = getRenderUploadFilesFromURLs(renderDetails, outerPath);
-            logger.info("uploadFiles - "+uploadFiles);
-            logger.info("renderUploadFiles - "+renderUploadFiles);
-            if(uploadFiles.isEmpty()) {
-                throw new PLMException("Error in uploading assets to PLM, no assets found. Please contact your System Administrator.", HttpStatus.INTERNAL_SERVER_ERROR);
-            }
-            List<File> files = uploadFiles.values().stream().collect(Collectors.toList());
-            List<File> rendersFiles = new ArrayList<File>();
-            if(!renderUploadFiles.isEmpty()) {
-                rendersFiles = renderUploadFiles.values().stream().collect(Collectors.toList());
-            }
-            logger.info("files - "+files);
-            logger.info("rendersFiles - "+rendersFiles);
-            JSONArray uploadAttachmentsArray =  uploadAttachments(files, headers, plmUrl);
-            logger.info("rendersFiles 1 - "+rendersFiles);
-            JSONArray renderPublishAttachmentsArray = new JSONArray();
-            if(!rendersFiles.isEmpty()) {
-                rendersFiles = getUnzippedRenders(rendersFiles, outerPath);
-                logger.info("rendersFiles 2 - "+rendersFiles);
-                JSONArray rendersAttachmentsArray =  uploadAttachments(rendersFiles, headers, plmUrl);
-                int lastRenderSeq;
-                if(renderDetails.getJSONObject(0).has(CLOSETConnectorConstants.CC_LAST_RENDER_SEQ_NO_JSON_KEY) && !renderDetails.getJSONObject(0).isNull(CLOSETConnectorConstants.CC_LAST_RENDER_SEQ_NO_JSON_KEY)) {
-                    lastRenderSeq = renderDetails.getJSONObject(0).getInt(CLOSETConnectorConstants.CC_LAST_RENDER_SEQ_NO_JSON_KEY);
-                } else {
-                    lastRenderSeq = 0;
-                }
 
-                renderPublishAttachmentsArray = prepareRendersAttachmentsArray(rendersAttachmentsArray, lastRenderSeq);
+            // Stages completed by an earlier attempt of this publish are not run again, see PublishCheckpointService.
+            // Fingerprints are taken now, before stages modify the publish data
+            String publishKey = publishCheckpointService.publishKey(plmUrl, closetStyleId, closetStyleVersion, externalStyleId, userId);
+            String externalIdFingerprint = publishCheckpointService.fingerprint(externalStyleId);
+            String attachmentsFingerprint = publishCheckpointService.fingerprint(
+                    closetAssets.getJSONObject(PLMConstants.PROJECT_FILE_DETAILS).optString(PLMConstants.FILENAME),
+                    closetAssets.getJSONObject(PLMConstants.THUMBNAIL_DETAILS).optString(PLMConstants.FILENAME));
+            String rendersFingerprint = publishCheckpointService.fingerprint(getRendersCheckpointInputs(closetAssets));
+            String colorwaysFingerprint = publishCheckpointService.fingerprint(closetAssets.getJSONArray(PLMConstants.COLORWAY_DETAILS).toString());
+            String payloadFingerprint = publishCheckpointService.fingerprint(plmStyleDetails.toString(),
+                    attachmentsFingerprint, rendersFingerprint, colorwaysFingerprint);
+            String checkpointedPayload = publishCheckpointService.find(publishKey, PLMConstants.PUBLISH_STAGE_PAYLOAD, payloadFingerprint);
+
+            StageGraph.Stage<Void> externalIdStage = null;
+            if(resetExternalStyleId && publishCheckpointService.find(publishKey, PLMConstants.PUBLISH_STAGE_EXTERNAL_ID, externalIdFingerprint) == null) {
+                externalIdStage = publishGraph.stage(PLMConstants.PUBLISH_STAGE_EXTERNAL_ID, () -> {
+                    closetHelper.publishExternalId(closetStyleId, publishedExternalStyleId, headers);
+                    publishCheckpointService.save(publishKey, PLMConstants.PUBLISH_STAGE_EXTERNAL_ID, externalIdFingerprint, publishedExternalStyleId);
+                    return null;
+                });
             }
 
-            JSONArray attachmentsArray = preparePublishAttachmentsArray(publishData, uploadAttachmentsArray);
-
-            for(int i = 0; i < renderPublishAttachmentsArray.length(); i++) {
-                attachmentsArray.put(renderPublishAttachmentsArray.getJSONObject(i));
-            }
-
-            JSONObject closetTechSpec = closetHelper.getTechSpec(closetStyleId, closetStyleVersion, headers);
+            StageGraph.Stage<String> payloadStage;
+            if(checkpointedPayload != null) {
+                // Uploads and colorways are in the payload already
+                payloadStage = publishGraph.stage(PLMConstants.PUBLISH_STAGE_PAYLOAD, CompletableFuture.completedFuture(checkpointedPayload));
+            } else {
+                StageGraph.Stage<JSONArray> uploadStage;
+                String checkpointedAttachments = publishCheckpointService.find(publishKey, PLMConstants.PUBLISH_STAGE_UPLOAD_ATTACHMENTS, attachmentsFingerprint);
+                if(checkpointedAttachments != null) {
+                    uploadStage = publishGraph.stage(PLMConstants.PUBLISH_STAGE_UPLOAD_ATTACHMENTS, CompletableFuture.completedFuture(new JSONArray(checkpointedAttachments)));
+                } else {
+                    List<CompletableFuture<Resource>> uploadResourceFutures = getUploadResourceFuturesFromURLs(closetAssets, outerPath, closetStyleId, closetStyleVersion);
+                    if(uploadResourceFutures.isEmpty()) {
+                        throw new PLMException("Error in uploading assets to PLM, no assets found. Please contact your System Administrator.", HttpStatus.INTERNAL_SERVER_ERROR);
+                    }
+                    String assetsOuterPath = outerPath;
+                    StageGraph.Stage<List<Resource>> downloadStage = publishGraph.stage(PLMConstants.PUBLISH_STAGE_DOWNLOAD_ASSETS, CompletableFuture
+                            .allOf(uploadResourceFutures.toArray(new CompletableFuture[0]))
+                            .thenApply(ready -> {
+                                List<Resource> uploadResources = new ArrayList<>();
+                                for (CompletableFuture<Resource> uploadResourceFuture : uploadResourceFutures) {
+                                    uploadResources.add(uploadResourceFuture.join());
+                                }
+                                return uploadResources;
+                            }));
+                    uploadStage = publishGraph.stage(PLMConstants.PUBLISH_STAGE_UPLOAD_ATTACHMENTS, () -> {
+                        logger.info("uploadResources - "+downloadStage.get());
+                        JSONArray uploadAttachmentsArray = uploadAssetResources(downloadStage.get(), closetAssets, assetsOuterPath, closetStyleId, closetStyleVersion, headers, plmUrl);
+                        publishCheckpointService.save(publishKey, PLMConstants.PUBLISH_STAGE_UPLOAD_ATTACHMENTS, attachmentsFingerprint, uploadAttachmentsArray.toString());
+                        return uploadAttachmentsArray;
+                    }, downloadStage);
+                }
 
-//            JSONObject apiMetaDataJon = closetTechSpec.getJSONObject("apiMetaData");
-//            String externalStyleId = apiMetaDataJon.getString("externalStyleId");
+                StageGraph.Stage<JSONArray> rendersUploadStage;
+                String checkpointedRenders = publishCheckpointService.find(publishKey, PLMConstants.PUBLISH_STAGE_UPLOAD_RENDERS, rendersFingerprint);
+                if(checkpointedRenders != null) {
+                    rendersUploadStage = publishGraph.stage(PLMConstants.PUBLISH_STAGE_UPLOAD_RENDERS, CompletableFuture.completedFuture(new JSONArray(checkpointedRenders)));
+                } else {
+                    String assetsOuterPath = outerPath;
+                    StageGraph.Stage<JSONArray> rendersURLStage = publishGraph.stage(PLMConstants.PUBLISH_STAGE_RENDERS_URL,
+                            () -> addMissingRendersURL(closetAssets, closetStyleId, closetStyleVersion, headers));
+                    StageGraph.Stage<HashMap<String, File>> rendersDownloadStage = publishGraph.stage(PLMConstants.PUBLISH_STAGE_DOWNLOAD_RENDERS,
+                            () -> getRenderUploadFilesFromURLs(rendersURLStage.get(), assetsOuterPath, closetStyleId, closetStyleVersion), rendersURLStage);
+                    rendersUploadStage = publishGraph.stage(PLMConstants.PUBLISH_STAGE_UPLOAD_RENDERS, () -> {
+                        JSONArray renderPublishAttachmentsArray = uploadRenders(rendersURLStage.get(), rendersDownloadStage.get(), headers, plmUrl);
+                        publishCheckpointService.save(publishKey, PLMConstants.PUBLISH_STAGE_UPLOAD_RENDERS, rendersFingerprint, renderPublishAttachmentsArray.toString());
+                        return renderPublishAttachmentsArray;
+                    }, rendersURLStage, rendersDownloadStage);
+                }
 
-            JSONArray colorwaysArray = filterAndAddMissingDetailsInMappedColorways(publishData, closetTechSpec);
+                StageGraph.Stage<JSONArray> colorwaysStage;
+                String checkpointedColorways = publishCheckpointService.find(publishKey, PLMConstants.PUBLISH_STAGE_COLORWAYS, colorwaysFingerprint);
+                if(checkpointedColorways != null) {
+                    colorwaysStage = publishGraph.stage(PLMConstants.PUBLISH_STAGE_COLORWAYS, CompletableFuture.completedFuture(new JSONArray(checkpointedColorways)));
+                } else {
+                    StageGraph.Stage<JSONObject> techSpecStage = publishGraph.stage(PLMConstants.PUBLISH_STAGE_TECH_SPEC,
+                            () -> closetHelper.getTechSpec(closetStyleId, closetStyleVersion, headers));
+                    colorwaysStage = publishGraph.stage(PLMConstants.PUBLISH_STAGE_COLORWAYS, () -> {
+                        JSONArray colorwaysArray = filterAndAddMissingDetailsInMappedColorways(publishData, techSpecStage.get());
+                        if(!colorwaysArray.isEmpty()) {
+                            colorwaysArray = prepareColorwayArray(colorwaysArray);
+                        }
+                        publishCheckpointService.save(publishKey, PLMConstants.PUBLISH_STAGE_COLORWAYS, colorwaysFingerprint, colorwaysArray.toString());
+                        return colorwaysArray;
+                    }, techSpecStage);
+                }
 
-            if(!colorwaysArray.isEmpty()) {
-                colorwaysArray = prepareColorwayArray(colorwaysArray);
+                payloadStage = publishGraph.stage(PLMConstants.PUBLISH_STAGE_PAYLOAD, () -> {
+                    JSONArray attachmentsArray = preparePublishAttachmentsArray(publishData, uploadStage.get());
+                    JSONArray renderPublishAttachmentsArray = rendersUploadStage.get();
+                    for(int i = 0; i < renderPublishAttachmentsArray.length(); i++) {
+                        attachmentsArray.put(renderPublishAttachmentsArray.getJSONObject(i));
+                    }
+                    String publishPayLoad = preparePayLoadForBRStylePublish(publishData, attachmentsArray, colorwaysStage.get()).toString();
+                    publishCheckpointService.save(publishKey, PLMConstants.PUBLISH_STAGE_PAYLOAD, payloadFingerprint, publishPayLoad);
+                    return publishPayLoad;
+                }, uploadStage, rendersUploadStage, colorwaysStage);
             }
 
-            //Renders
-            JSONObject publishPayLoad = preparePayLoadForBRStylePublish(publishData, attachmentsArray, colorwaysArray);
-            HttpHeaders restHeaders = preparePlmHeaders(headers);
-            String token = String.valueOf(restHeaders.get(PLMConstants.API_HEADER_TOKEN_KEY));
+            StageGraph.Stage<String> postStyleStage = publishGraph.stage(PLMConstants.PUBLISH_STAGE_POST_STYLE,
+                    () -> postStyle(payloadStage.get(), headers, plmUrl), externalIdStage, payloadStage);
 
-            Response publishResponse = restService.okmakeGetOrPostCall(plmUrl + PLMConstants.POST_STYLE_URI, publishPayLoad, token);
-
-            String responseData = publishResponse.body().string();
-            logger.info("responseData -:"+responseData);
-
-            JSONObject responseDataJSON = new JSONObject(responseData);
-            JSONObject publishResponseJSON = responseDataJSON.getJSONObject(PLMConstants.PLM_DOCUMENT_JSON_KEY);
-            JSONArray publishResponseTECHJSONArray = publishResponseJSON.getJSONArray(PLMConstants.PLM_TECH_SPEC_JSON_KEY);
-            JSONObject publishResponseTECHJSON = publishResponseTECHJSONArray.getJSONObject(0);
-            JSONArray messageJSONArray= publishResponseTECHJSON.getJSONArray(PLMConstants.PLM_MESSAGE_JSON_KEY);
-            JSONObject messageJSONObject  = messageJSONArray.getJSONObject(0);
-
-            String status = messageJSONObject.getString(PLMConstants.PLM_STATUS_JSON_KEY);
-
-            if(!PLMConstants.PLM_SUCCESS_STATUS_VALUE.equalsIgnoreCase(status)) {
-                String messageId = messageJSONObject.getString(PLMConstants.PLM_MESSAGE_ID_JSON_KEY);
-                String messageDesc = messageJSONObject.getString(PLMConstants.PLM_MESSAGE_DESC_JSON_KEY);
-                throw new PLMException(messageId + CLOSETConnectorConstants.COLON + CLOSETConnectorConstants.SPACE + messageDesc, HttpStatus.INTERNAL_SERVER_ERROR);
-            } else {
+            publishGraph.stage(PLMConstants.PUBLISH_STAGE_SAVE_STYLE, () -> {
                 //Style style = new Style();
-                Style style = styleService.findByClosetStyleIdAndPlmStyleId(closetStyleId, externalStyleId);
+                Style style = styleService.findByClosetStyleIdAndPlmStyleId(closetStyleId, publishedExternalStyleId);
                 if(style==null){
                     style = new Style();
                 }
                 style.setClosetStyleId(closetStyleId);
-                style.setPlmStyleId(externalStyleId);
+                style.setPlmStyleId(publishedExternalStyleId);
                 Date time = new Date();
                 style.setCreateTimeStamp(time);
                 style.setModifyTimeStamp(time);
                 style.setClosetUser(headers.get("closet-user-name"));
                 style.setPlmUser(headers.get("plm-user-name"));
                 styleService.saveStyle(style);
-                logger.info("Successfully published to PLM.");
-                outJson.put(PLMConstants.PLM_MESSAGE_JSON_KEY, status);
+                return null;
+            }, postStyleStage);
+
+            try {
+                awaitAssetTransfers(publishGraph.getFutures());
+            } finally {
+                logger.info("INFO::PLMHelper: preparePublishToPLM() " + closetStyleId + " stage timings - " + publishGraph.getTimings()
+                        + ", critical path - " + publishGraph.getCriticalPath());
             }
+            publishStageTimings.record(publishGraph);
+            publishCheckpointService.clear(publishKey);
+            logger.info("Successfully published to PLM.");
+            outJson.put(PLMConstants.PLM_MESSAGE_JSON_KEY, postStyleStage.get());
 
             if(outerFile != null && outerFile.exists()) {
                 FileUtils.forceDelete(outerFile);
@@ -716,15 +1009,6 @@ public class PLMHelper {
                 }
             }
             throw new PLMException(io.getLocalizedMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
-        } catch (CLOSETException closetExc) {
-            if(outerFile != null && outerFile.exists()) {
-                try {
-                    FileUtils.forceDelete(outerFile);
-                } catch (IOException e) {
-                    throw new RuntimeException(e);
-                }
-            }
-            throw new PLMException(closetExc.getLocalizedMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
         } catch (Exception e) {
             if(outerFile != null && outerFile.exists()) {
                 try {
@@ -733,7 +1017,8 @@ public class PLMHelper {
                     throw new RuntimeException(io);
                 }
             }
-            throw new PLMException(e.getLocalizedMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+            throw new PLMException(e.getLocalizedMessage(), e instanceof UpstreamUnavailableException
+                    ? ((UpstreamUnavailableException) e).getStatusCode() : HttpStatus.INTERNAL_SERVER_ERROR);
         }
         //return  outJson;
     }
@@ -871,83 +1156,60 @@ public class PLMHelper {
     }
 
     /**
-     *
-     * @param files
-     * @param outerPath
-     * @return destFiles
-     * @throws PLMException
+     * uploadRenderArchives - Uploads the images of the renders zips, one part per image entry, read straight
+     * from the zips without extracting them
+     * @param files List renders zip files
+     * @param headers Map<String, String> headers
+     * @param plmurl String plmurl
+     * @return locationsJSON
+     * @throws PLMException exception
      */
-    public List<File> getUnzippedRenders(List<File> files, String outerPath) throws PLMException {
-        logger.info("INFO::PLMHelper: getUnzippedRenders() -> started");
-        List<File> destFiles = new ArrayList<File>();
-        ZipInputStream zipIn = null;
-        File destDir = null;
-        try{
-            for(File file: files) {
-                String zipName = file.getName();
-                int lastIndex = zipName.lastIndexOf(".");
-                zipName = zipName.substring(0,lastIndex);
-
-                destDir = new File(outerPath + File.separator + zipName);
-
-                if (!destDir.exists()) {
-                    destDir.mkdir();
-                }
-
-                zipIn = new ZipInputStream(new FileInputStream(file));
-                ZipEntry entry = zipIn.getNextEntry();
-
-                while (entry != null) {
-                    String filePathNew = FilenameUtils.getPath(entry.getName());
-
-                    logger.debug("DEBUG::PLMHelper: unzip() -> filePathNew :"+filePathNew);
-                    if(Utility.hasContent(filePathNew)) {
-                        File fileNew = new File(outerPath + filePathNew);
-                        if(!fileNew.exists()) {
-                            fileNew.mkdirs();
-                        }
-                    }
-
-                    logger.info("unzip() entry.getName() : "+entry.getName());
-
-                    String filePath = destDir + File.separator + entry.getName();
-
-                    logger.debug("DEBUG::PLMHelper: unzip() -> filePath: "+filePath);
-                    if (!entry.isDirectory()) {
-                        Utility.extractFile(zipIn, filePath);
-                    } else {
-                        File dir = new File(filePath);
-                        dir.mkdirs();
-                    }
-                    zipIn.closeEntry();
-
-                    File[] images = destDir.listFiles();
-                    for(int i = 0; i < images.length; i++) {
-                        File newFile = images[i];
-                        if (newFile != null) {
-                            destFiles.add(newFile);
-                        }
-                    }
-                    entry = zipIn.getNextEntry();
+    public JSONArray uploadRenderArchives(List<File> files, Map<String, String> headers, String plmurl) throws PLMException {
+        logger.info("INFO::PLMHelper: uploadRenderArchives() -> started");
+        List<ZipFile> zipFiles = new ArrayList<>();
+        try {
+            List<Resource> renderResources = new ArrayList<>();
+            for (File file : files) {
+                ZipFile zipFile = new ZipFile(file);
+                zipFiles.add(zipFile);
+                renderResources.addAll(getRenderResources(zipFile));
+            }
+            logger.debug("DEBUG::PLMHelper: uploadRenderArchives() -> renders :" + renderResources.size());
+            return uploadAttachmentResources(renderResources, headers, plmurl);
+        } catch (IOException ioExc) {
+            logger.error("ERROR::PLMHelper: uploadRenderArchives() - " + ioExc.getLocalizedMessage());
+            throw new PLMException(ioExc.getLocalizedMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+        } finally {
+            for (ZipFile zipFile : zipFiles) {
+                try {
+                    zipFile.close();
+                } catch (IOException e) {
+                    logger.warn("WARN::PLMHelper: uploadRenderArchives() close - " + e.getLocalizedMessage());
                 }
-
             }
         }
-        catch(Exception e) {
-            e.printStackTrace();
-            throw new PLMException(e.getLocalizedMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
-        }
-        finally{
-            try {
-                zipIn.close();
-            } catch (IOException e) {
-                // TODO Auto-generated catch block
-                e.printStackTrace();
+    }
+
+    /**
+     * getRenderResources - One upload part per image entry of a renders zip, skipping folders and
+     * OS metadata entries (__MACOSX, hidden files)
+     * @param zipFile ZipFile zipFile
+     * @return render resources
+     */
+    public List<Resource> getRenderResources(ZipFile zipFile) {
+        List<Resource> renderResources = new ArrayList<>();
+        Enumeration<? extends ZipEntry> entries = zipFile.entries();
+        while (entries.hasMoreElements()) {
+            ZipEntry entry = entries.nextElement();
+            String entryName = entry.getName();
+            String baseName = FilenameUtils.getName(entryName);
+            if (entry.isDirectory() || entryName.startsWith("__MACOSX/") || !Utility.hasContent(baseName) || baseName.startsWith(".")) {
+                logger.debug("DEBUG::PLMHelper: getRenderResources() -> skipping :" + entryName);
+                continue;
             }
+            renderResources.add(new ZipEntryResource(zipFile, entry));
         }
-        //logger.debug("DEBUG::CV3DModelAndVisualsLogic: unzip() -> images size :"+images.length);
-        logger.info("INFO::PLMHelper: unzip() -> end");
-        return destFiles;
+        return renderResources;
     }
 
     /**
@@ -986,10 +1248,12 @@ public class PLMHelper {
      *
      * @param closetAssets
      * @param outerPath
+     * @param closetStyleId
+     * @param closetStyleVersion
      * @return uploadFileNames
      * @throws PLMException
      */
-	public HashMap<String, File> getUploadFilesFromURLs(JSONObject closetAssets, String outerPath) throws PLMException {
+	public HashMap<String, File> getUploadFilesFromURLs(JSONObject closetAssets, String outerPath, String closetStyleId, int closetStyleVersion) throws PLMException {
         HashMap<String, File> uploadFileNames = new HashMap<String, File>();
 
         JSONObject projectFileDetails = closetAssets.getJSONObject(PLMConstants.PROJECT_FILE_DETAILS);
@@ -1001,20 +1265,14 @@ public class PLMHelper {
         String thumbnailFileName = thumbnailDetails.getString(PLMConstants.FILENAME);
         try {
             String filePath;
-            URL url;
             File uploadFile;
 
             if(Utility.hasContent(projectFileUrl)) {
                 filePath = outerPath + projectFileName;
                 uploadFile = new File(filePath);
 
-                url = new URL(projectFileUrl);
-                URLConnection conn = url.openConnection();
-
-                conn.setRequestProperty("User-Agent", "Mozilla/5.0 (Windows NT 6.1; WOW64; rv:31.0) Gecko/20100101 Firefox/31.0");
-                conn.connect();
-
-                FileUtils.copyInputStreamToFile(conn.getInputStream(), uploadFile);
+                assetTransferHelper.downloadToFile(projectFileUrl, uploadFile,
+                        AssetBlobStore.blobKey(closetStyleId, closetStyleVersion, AssetBlobStore.ASSET_TYPE_PROJECT_FILE));
 
 
                 uploadFileNames.put(uploadFile.getName(), uploadFile);
@@ -1024,13 +1282,8 @@ public class PLMHelper {
                 filePath = outerPath + thumbnailFileName;
                 uploadFile = new File(filePath);
 
-                url = new URL(thumbnailUrl);
-                URLConnection conn = url.openConnection();
-
-                conn.setRequestProperty("User-Agent", "Mozilla/5.0 (Windows NT 6.1; WOW64; rv:31.0) Gecko/20100101 Firefox/31.0");
-                conn.connect();
-
-                FileUtils.copyInputStreamToFile(conn.getInputStream(), uploadFile);
+                assetTransferHelper.downloadToFile(thumbnailUrl, uploadFile,
+                        AssetBlobStore.blobKey(closetStyleId, closetStyleVersion, AssetBlobStore.ASSET_TYPE_THUMBNAIL));
 
                 uploadFileNames.put(uploadFile.getName(), uploadFile);
             }
@@ -1041,6 +1294,184 @@ public class PLMHelper {
         return uploadFileNames;
     }
 
+    /**
+     * getUploadResourceFuturesFromURLs - Upload parts for the zprj and thumbnail, streamed from CLO-SET or staged
+     * depending on the transfer mode, or read from the asset blob store. Staged assets are downloaded concurrently
+     * @param closetAssets JSONObject closetAssets
+     * @param outerPath String outerPath
+     * @param closetStyleId String closetStyleId
+     * @param closetStyleVersion int closetStyleVersion
+     * @return futures of the upload resources
+     */
+    public List<CompletableFuture<Resource>> getUploadResourceFuturesFromURLs(JSONObject closetAssets, String outerPath,
+                                                                              String closetStyleId, int closetStyleVersion) {
+        List<CompletableFuture<Resource>> uploadResourceFutures = new ArrayList<>();
+
+        Map<String, JSONObject> assetDetailsByType = new LinkedHashMap<>();
+        assetDetailsByType.put(AssetBlobStore.ASSET_TYPE_PROJECT_FILE, closetAssets.getJSONObject(PLMConstants.PROJECT_FILE_DETAILS));
+        assetDetailsByType.put(AssetBlobStore.ASSET_TYPE_THUMBNAIL, closetAssets.getJSONObject(PLMConstants.THUMBNAIL_DETAILS));
+        for (Map.Entry<String, JSONObject> assetDetails : assetDetailsByType.entrySet()) {
+            String assetUrl = assetDetails.getValue().getString(PLMConstants.FILE_URL);
+            String assetFileName = assetDetails.getValue().getString(PLMConstants.FILENAME);
+            String blobKey = AssetBlobStore.blobKey(closetStyleId, closetStyleVersion, assetDetails.getKey());
+            if (Utility.hasContent(assetUrl)) {
+                uploadResourceFutures.add(assetTransferHelper.supplyAsync(assetFileName + " download",
+                        () -> assetTransferHelper.prepareAssetResource(assetUrl, assetFileName, outerPath, blobKey)));
+            }
+        }
+        return uploadResourceFutures;
+    }
+
+    /**
+     * uploadRenders - Uploads the images of the downloaded renders zip and prepares their publish attachments
+     * @param renderDetails JSONArray renderDetails
+     * @param renderUploadFiles HashMap renderUploadFiles
+     * @param headers Map<String, String> headers
+     * @param plmUrl String plmUrl
+     * @return render attachments for the publish payload, empty when there are no renders
+     * @throws PLMException exception
+     */
+    private JSONArray uploadRenders(JSONArray renderDetails, HashMap<String, File> renderUploadFiles,
+                                    Map<String, String> headers, String plmUrl) throws PLMException {
+        logger.info("renderUploadFiles - "+renderUploadFiles);
+        List<File> rendersFiles = new ArrayList<File>();
+        if(!renderUploadFiles.isEmpty()) {
+            rendersFiles = renderUploadFiles.values().stream().collect(Collectors.toList());
+        }
+        logger.info("rendersFiles - "+rendersFiles);
+        JSONArray renderPublishAttachmentsArray = new JSONArray();
+        if(!rendersFiles.isEmpty()) {
+            JSONArray rendersAttachmentsArray = uploadRenderArchives(rendersFiles, headers, plmUrl);
+            int lastRenderSeq;
+            if(renderDetails.getJSONObject(0).has(CLOSETConnectorConstants.CC_LAST_RENDER_SEQ_NO_JSON_KEY) && !renderDetails.getJSONObject(0).isNull(CLOSETConnectorConstants.CC_LAST_RENDER_SEQ_NO_JSON_KEY)) {
+                lastRenderSeq = renderDetails.getJSONObject(0).getInt(CLOSETConnectorConstants.CC_LAST_RENDER_SEQ_NO_JSON_KEY);
+            } else {
+                lastRenderSeq = 0;
+            }
+
+            renderPublishAttachmentsArray = prepareRendersAttachmentsArray(rendersAttachmentsArray, lastRenderSeq);
+        }
+        return renderPublishAttachmentsArray;
+    }
+
+    /**
+     * getRendersCheckpointInputs - Inputs of the renders stages: which render is published, and as what sequence
+     * @param closetAssets JSONObject closetAssets
+     * @return String inputs, without the (signed, changing) download URL
+     */
+    private String getRendersCheckpointInputs(JSONObject closetAssets) {
+        JSONArray rendersDetails = closetAssets.optJSONArray(PLMConstants.RENDERS_DETAILS);
+        if (rendersDetails == null || rendersDetails.isEmpty()) {
+            return "";
+        }
+        JSONObject rendersDetail = rendersDetails.getJSONObject(0);
+        return rendersDetail.opt(PLMConstants.RENDER_SEQ_NO_JSON_KEY) + "/" + rendersDetail.opt(CLOSETConnectorConstants.CC_LAST_RENDER_SEQ_NO_JSON_KEY)
+                + "/" + rendersDetail.opt(PLMConstants.FILENAME);
+    }
+
+    /**
+     * postStyle - Posts the style payload with its attachments and colorways to PLM
+     * @param publishPayLoad String publishPayLoad
+     * @param headers Map<String, String> headers
+     * @param plmUrl String plmUrl
+     * @return PLM status of the posted style
+     * @throws PLMException exception, also when PLM did not accept the style
+     */
+    private String postStyle(String publishPayLoad, Map<String, String> headers, String plmUrl) throws PLMException {
+        HttpHeaders restHeaders = preparePlmHeaders(headers);
+        String token = String.valueOf(restHeaders.get(PLMConstants.API_HEADER_TOKEN_KEY));
+
+        String responseData = restService.okmakeGetOrPostCall(plmUrl + PLMConstants.POST_STYLE_URI, publishPayLoad, token);
+        logger.info("responseData -:"+responseData);
+
+        JSONObject responseDataJSON = new JSONObject(responseData);
+        JSONObject publishResponseJSON = responseDataJSON.getJSONObject(PLMConstants.PLM_DOCUMENT_JSON_KEY);
+        JSONArray publishResponseTECHJSONArray = publishResponseJSON.getJSONArray(PLMConstants.PLM_TECH_SPEC_JSON_KEY);
+        JSONObject publishResponseTECHJSON = publishResponseTECHJSONArray.getJSONObject(0);
+        JSONArray messageJSONArray= publishResponseTECHJSON.getJSONArray(PLMConstants.PLM_MESSAGE_JSON_KEY);
+        JSONObject messageJSONObject  = messageJSONArray.getJSONObject(0);
+
+        String status = messageJSONObject.getString(PLMConstants.PLM_STATUS_JSON_KEY);
+
+        if(!PLMConstants.PLM_SUCCESS_STATUS_VALUE.equalsIgnoreCase(status)) {
+            String messageId = messageJSONObject.getString(PLMConstants.PLM_MESSAGE_ID_JSON_KEY);
+            String messageDesc = messageJSONObject.getString(PLMConstants.PLM_MESSAGE_DESC_JSON_KEY);
+            throw new PLMException(messageId + CLOSETConnectorConstants.COLON + CLOSETConnectorConstants.SPACE + messageDesc, HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+        return status;
+    }
+
+    /**
+     * awaitAssetTransfers - Waits for all asset transfers (or publish stages), cancelling the others as soon as one fails
+     * @param transfers List transfers
+     * @throws PLMException exception of the first failed transfer
+     */
+    private void awaitAssetTransfers(List<? extends CompletableFuture<?>> transfers) throws PLMException {
+        CompletableFuture<Void> allTransfers = CompletableFuture.allOf(transfers.toArray(new CompletableFuture[0]));
+        for (CompletableFuture<?> transfer : transfers) {
+            transfer.whenComplete((result, exc) -> {
+                if (exc != null) {
+                    allTransfers.completeExceptionally(exc);
+                }
+            });
+        }
+        try {
+            allTransfers.join();
+        } catch (CompletionException | CancellationException exc) {
+            for (CompletableFuture<?> transfer : transfers) {
+                transfer.cancel(true);
+            }
+            Throwable cause = exc;
+            while (cause instanceof CompletionException && cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+            logger.error("ERROR::PLMHelper: awaitAssetTransfers() - " + cause);
+            if (cause instanceof PLMException) {
+                throw (PLMException) cause;
+            }
+            if (cause instanceof CLOSETException) {
+                throw new PLMException(cause.getLocalizedMessage(), ((CLOSETException) cause).getStatusCode());
+            }
+            if (cause instanceof TimeoutException) {
+                throw new PLMException(cause.getLocalizedMessage(), HttpStatus.GATEWAY_TIMEOUT);
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new PLMException(cause.getLocalizedMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    /**
+     * uploadAssetResources - Uploads the zprj and thumbnail parts. When a streamed upload fails it cannot be
+     * replayed, so the assets are staged to disk and the upload is tried once more
+     * @param uploadResources List uploadResources
+     * @param closetAssets JSONObject closetAssets
+     * @param outerPath String outerPath
+     * @param closetStyleId String closetStyleId
+     * @param closetStyleVersion int closetStyleVersion
+     * @param headers Map<String, String> headers
+     * @param plmurl String plmurl
+     * @return locationsJSON
+     * @throws PLMException exception
+     */
+    private JSONArray uploadAssetResources(List<Resource> uploadResources, JSONObject closetAssets, String outerPath,
+                                           String closetStyleId, int closetStyleVersion,
+                                           Map<String, String> headers, String plmurl) throws PLMException {
+        try {
+            return uploadAttachmentResources(uploadResources, headers, plmurl, closetStyleVersion);
+        } catch (ResourceAccessException | HttpServerErrorException exc) {
+            if (assetTransferHelper.isRepeatable(uploadResources)) {
+                throw exc;
+            }
+            logger.warn("WARN::PLMHelper: uploadAssetResources() streamed upload failed, retrying from staged files - " + exc.getMessage());
+            List<File> files = new ArrayList<>(getUploadFilesFromURLs(closetAssets, outerPath, closetStyleId, closetStyleVersion).values());
+            return uploadAttachments(files, headers, plmurl);
+        } finally {
+            assetTransferHelper.release(uploadResources);
+        }
+    }
+
     /**
      *
      * @param closetAssets
@@ -1079,10 +1510,12 @@ public class PLMHelper {
      *
      * @param renderDetails
      * @param outerPath
+     * @param closetStyleId
+     * @param closetStyleVersion
      * @return uploadFileNames
      * @throws PLMException
      */
-    public HashMap<String, File> getRenderUploadFilesFromURLs(JSONArray renderDetails, String outerPath) throws PLMException {
+    public HashMap<String, File> getRenderUploadFilesFromURLs(JSONArray renderDetails, String outerPath, String closetStyleId, int closetStyleVersion) throws PLMException {
         HashMap<String, File> uploadFileNames = new HashMap<String, File>();
 
         //JSONArray rendersDetails = closetAssets.getJSONArray(PLMConstants.RENDERS_DETAILS);
@@ -1092,20 +1525,16 @@ public class PLMHelper {
                 String rendersUrl = renderDetails.getJSONObject(0).getString(PLMConstants.FILE_URL);
                 String rendersFileName = renderDetails.getJSONObject(0).getString(PLMConstants.FILENAME);
                 String filePath;
-                URL url;
                 File uploadFile;
 
                 if (Utility.hasContent(rendersUrl)) {
                     filePath = outerPath + rendersFileName;
                     uploadFile = new File(filePath);
 
-                    url = new URL(rendersUrl);
-                    URLConnection conn = url.openConnection();
-
-                    conn.setRequestProperty("User-Agent", "Mozilla/5.0 (Windows NT 6.1; WOW64; rv:31.0) Gecko/20100101 Firefox/31.0");
-                    conn.connect();
-
-                    FileUtils.copyInputStreamToFile(conn.getInputStream(), uploadFile);
+                    // A renders zip belongs to one render of the style version
+                    String renderSeq = renderDetails.getJSONObject(0).optString(PLMConstants.RENDER_SEQ_NO_JSON_KEY);
+                    assetTransferHelper.downloadToFile(rendersUrl, uploadFile,
+                            AssetBlobStore.blobKey(closetStyleId, closetStyleVersion, AssetBlobStore.ASSET_TYPE_RENDERS + renderSeq));
 
                     uploadFileNames.put(uploadFile.getName(), uploadFile);
                 }
@@ -1125,18 +1554,234 @@ public class PLMHelper {
      * @throws PLMException
      */
     public JSONArray uploadAttachments(List<File> files, Map<String, String> headers, String plmurl) throws PLMException {
-        HttpHeaders httpHeaders = preparePlmHeaders(headers);
-        httpHeaders.add(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE);
-
-        MultiValueMap<String, Object> multiPartsBody = Utility.prepareMultipartFilesBody(files);
-        ResponseEntity<String> responseEntity = restService.uploadMultipartFormData(multiPartsBody, plmurl + PLMConstants.UPLOAD_ATTACHMENT_URI, httpHeaders);
-        JSONObject responseJSON = new JSONObject(responseEntity.getBody());
-        JSONObject documentJSON = responseJSON.getJSONObject(PLMConstants.PLM_DOCUMENT_JSON_KEY);
-        JSONArray locationsJSON = documentJSON.getJSONArray(PLMConstants.PLM_LOCATION_KEY);
+        List<Resource> resources = new ArrayList<>();
+        for (File file : files) {
+            resources.add(new FileSystemResource(file));
+        }
+        return uploadAttachmentResources(resources, headers, plmurl);
+    }
+
+    /**
+     * uploadAttachmentResources - Uploads the resources PLM does not have yet. A resource whose content was uploaded
+     * before reuses its earlier location instead.
+     * @param resources List resources
+     * @param headers Map<String, String> headers
+     * @param plmurl String plmurl
+     * @return locationsJSON
+     * @throws PLMException exception
+     */
+    public JSONArray uploadAttachmentResources(List<? extends Resource> resources, Map<String, String> headers, String plmurl) throws PLMException {
+        return uploadAttachmentResources(resources, headers, plmurl, 0);
+    }
+
+    /**
+     * uploadAttachmentResources - Uploads the resources PLM does not have yet. A resource whose content (or, when
+     * streamed from a saved style version, whose CLO-SET asset) was uploaded before reuses its earlier location instead.
+     * The locations are returned in the order of the resources, as a single upload returns them.
+     * @param resources List resources
+     * @param headers Map<String, String> headers
+     * @param plmurl String plmurl
+     * @param closetStyleVersion int closetStyleVersion the resources belong to, 0 for latest or none
+     * @return locationsJSON
+     * @throws PLMException exception
+     */
+    public JSONArray uploadAttachmentResources(List<? extends Resource> resources, Map<String, String> headers, String plmurl,
+                                               int closetStyleVersion) throws PLMException {
+        JSONArray locations = new JSONArray();
+        List<Resource> uploadResources = new ArrayList<>();
+        Map<Resource, String> contentHashes = new IdentityHashMap<>();
+        for (Resource resource : resources) {
+            String contentHash = attachmentDedupService.contentHash(resource);
+            JSONObject uploadedLocation = attachmentDedupService.findUploaded(plmurl, resource, contentHash, closetStyleVersion);
+            if (uploadedLocation != null) {
+                locations.put(uploadedLocation);
+            } else {
+                uploadResources.add(resource);
+                contentHashes.put(resource, contentHash);
+            }
+        }
+        logger.info("INFO::PLMHelper: uploadAttachmentResources() parts - " + resources.size() + ", already uploaded - " + (resources.size() - uploadResources.size()));
+
+        if (!uploadResources.isEmpty()) {
+            JSONArray uploadedLocations = uploadPartitioned(uploadResources, headers, plmurl);
+            Map<String, Deque<Resource>> resourcesByName = new HashMap<>();
+            for (Resource resource : uploadResources) {
+                resourcesByName.computeIfAbsent(resource.getFilename(), name -> new ArrayDeque<>()).add(resource);
+            }
+            for (int i = 0; i < uploadedLocations.length(); i++) {
+                Object location = uploadedLocations.get(i);
+                locations.put(location);
+                if (location instanceof JSONObject) {
+                    Deque<Resource> named = resourcesByName.get(((JSONObject) location).optString(PLMConstants.PLM_OLD_NAME_JSON_KEY, null));
+                    Resource resource = named == null ? null : named.poll();
+                    if (resource != null) {
+                        attachmentDedupService.recordUpload(plmurl, resource, contentHashes.get(resource), (JSONObject) location, closetStyleVersion);
+                    }
+                }
+            }
+        }
+        JSONArray locationsJSON = orderByResources(locations, resources);
         logger.info("locationsJSON - "+locationsJSON);
         return locationsJSON;
     }
 
+    /**
+     * uploadPartitioned - Uploads the resources, split into size balanced partitions that are uploaded
+     * concurrently, one multipart request per partition. A failed partition is retried on its own when its parts
+     * can be read again.
+     * @param resources List resources
+     * @param headers Map<String, String> headers
+     * @param plmurl String plmurl
+     * @return locations of the uploaded resources, in partition order
+     * @throws PLMException exception
+     */
+    private JSONArray uploadPartitioned(List<Resource> resources, Map<String, String> headers, String plmurl) throws PLMException {
+        List<List<Resource>> partitions = partitionBySize(resources);
+        logger.debug("DEBUG::PLMHelper: uploadPartitioned() parts - " + resources.size() + ", partitions - " + partitions.size());
+        if (partitions.size() == 1) {
+            return uploadPartition(partitions.get(0), headers, plmurl);
+        }
+
+        List<CompletableFuture<JSONArray>> partitionUploads = new ArrayList<>();
+        for (List<Resource> partition : partitions) {
+            partitionUploads.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return uploadPartition(partition, headers, plmurl);
+                } catch (PLMException exc) {
+                    throw new CompletionException(exc);
+                }
+            }, attachmentUploadExecutor));
+        }
+
+        JSONArray uploadedLocations = new JSONArray();
+        try {
+            for (CompletableFuture<JSONArray> partitionUpload : partitionUploads) {
+                JSONArray partitionLocations = partitionUpload.join();
+                for (int i = 0; i < partitionLocations.length(); i++) {
+                    uploadedLocations.put(partitionLocations.get(i));
+                }
+            }
+        } catch (CompletionException exc) {
+            for (CompletableFuture<JSONArray> partitionUpload : partitionUploads) {
+                partitionUpload.cancel(true);
+            }
+            Throwable cause = exc.getCause();
+            if (cause instanceof PLMException) {
+                throw (PLMException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new PLMException(cause.getLocalizedMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+        return uploadedLocations;
+    }
+
+    /**
+     * uploadPartition - Uploads one partition as a multipart request, retrying server and connection failures
+     * while the parts can be read again
+     * @param partition List partition
+     * @param headers Map<String, String> headers
+     * @param plmurl String plmurl
+     * @return locationsJSON of the partition
+     * @throws PLMException exception
+     */
+    private JSONArray uploadPartition(List<Resource> partition, Map<String, String> headers, String plmurl) throws PLMException {
+        String url = plmurl + PLMConstants.UPLOAD_ATTACHMENT_URI;
+        return retryPolicy.execute(url, uploadPartitionRetries, () -> assetTransferHelper.isRepeatable(partition), () -> {
+            HttpHeaders httpHeaders = preparePlmHeaders(headers);
+            httpHeaders.add(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE);
+
+            MultiValueMap<String, Object> multiPartsBody = Utility.prepareMultipartResourcesBody(partition);
+            ResponseEntity<String> responseEntity = restService.uploadMultipartFormData(multiPartsBody, url, httpHeaders);
+            JSONObject responseJSON = new JSONObject(responseEntity.getBody());
+            JSONObject documentJSON = responseJSON.getJSONObject(PLMConstants.PLM_DOCUMENT_JSON_KEY);
+            return documentJSON.getJSONArray(PLMConstants.PLM_LOCATION_KEY);
+        });
+    }
+
+    /**
+     * partitionBySize - Splits the resources into at most max-partitions partitions of at least min-partition-bytes,
+     * largest resource first into the lightest partition. Resources whose size is only known once they are read
+     * (streamed downloads) count as min-partition-bytes.
+     * @param resources List resources
+     * @return partitions, a single one for small uploads
+     */
+    List<List<Resource>> partitionBySize(List<? extends Resource> resources) {
+        Map<Resource, Long> sizes = new IdentityHashMap<>();
+        long totalBytes = 0;
+        for (Resource resource : resources) {
+            long size = uploadMinPartitionBytes;
+            if (!resource.isOpen()) {
+                try {
+                    size = resource.contentLength();
+                } catch (IOException exc) {
+                    logger.debug("DEBUG::PLMHelper: partitionBySize() size of " + resource.getFilename() + " unknown - " + exc.getMessage());
+                }
+            }
+            sizes.put(resource, size);
+            totalBytes += size;
+        }
+
+        int partitionCount = (int) Math.min(Math.min(resources.size(), uploadMaxPartitions), Math.max(1, totalBytes / Math.max(1, uploadMinPartitionBytes)));
+        List<List<Resource>> partitions = new ArrayList<>();
+        long[] partitionBytes = new long[Math.max(1, partitionCount)];
+        for (int i = 0; i < partitionBytes.length; i++) {
+            partitions.add(new ArrayList<>());
+        }
+        List<Resource> bySizeDescending = new ArrayList<>(resources);
+        bySizeDescending.sort((first, second) -> Long.compare(sizes.get(second), sizes.get(first)));
+        for (Resource resource : bySizeDescending) {
+            int lightest = 0;
+            for (int i = 1; i < partitionBytes.length; i++) {
+                if (partitionBytes[i] < partitionBytes[lightest]) {
+                    lightest = i;
+                }
+            }
+            partitions.get(lightest).add(resource);
+            partitionBytes[lightest] += sizes.get(resource);
+        }
+        return partitions;
+    }
+
+    /**
+     * orderByResources - Puts the locations of a partitioned upload back in resource order, matched on @oldname.
+     * Locations that do not match a resource keep their order at the end.
+     * @param locations JSONArray locations
+     * @param resources List resources
+     * @return locationsJSON
+     */
+    JSONArray orderByResources(JSONArray locations, List<? extends Resource> resources) {
+        Map<String, Deque<Integer>> positionsByName = new HashMap<>();
+        for (int i = 0; i < resources.size(); i++) {
+            positionsByName.computeIfAbsent(resources.get(i).getFilename(), name -> new ArrayDeque<>()).add(i);
+        }
+        Object[] ordered = new Object[resources.size()];
+        List<Object> unmatched = new ArrayList<>();
+        for (int i = 0; i < locations.length(); i++) {
+            Object location = locations.get(i);
+            String oldName = location instanceof JSONObject ? ((JSONObject) location).optString(PLMConstants.PLM_OLD_NAME_JSON_KEY, null) : null;
+            Deque<Integer> positions = oldName == null ? null : positionsByName.get(oldName);
+            Integer position = positions == null ? null : positions.poll();
+            if (position == null) {
+                unmatched.add(location);
+            } else {
+                ordered[position] = location;
+            }
+        }
+
+        JSONArray locationsJSON = new JSONArray();
+        for (Object location : ordered) {
+            if (location != null) {
+                locationsJSON.put(location);
+            }
+        }
+        for (Object location : unmatched) {
+            locationsJSON.put(location);
+        }
+        return locationsJSON;
+    }
+
     /**
      *
      * @param inputAttachmentsArray
@@ -1392,7 +2037,7 @@ public class PLMHelper {
     private String getDeptDisplayValue(String deptCodeValue, HttpHeaders headers, String plmurl) {
         String url = plmurl + PLMConstants.DEPARTMENT_SEARCH_RESULTS_API;
         url = url + CLOSETConnectorConstants.QUESTION_MARK + PLMConstants.PLM_CODE_PARAM_KEY + CLOSETConnectorConstants.ASSIGN + deptCodeValue;
-        ResponseEntity<String> responseEntity1 = restService.makeGetOrPostCall(url, HttpMethod.GET, headers, new JSONObject());
+        ResponseEntity<String> responseEntity1 = restService.makeGetOrPostCall(url, HttpMethod.GET, headers, new JSONObject(), UpstreamBulkheads.Operation.SEARCH);
         String responseData1 = responseEntity1.getBody();
         JSONObject responseDataJSON1 = new JSONObject(responseData1);
 
@@ -1428,7 +2073,7 @@ public class PLMHelper {
         String url2 = plmurl + PLMConstants.BRAND_SEARCH_RESULTS_API;
         url2 = url2 + CLOSETConnectorConstants.QUESTION_MARK + PLMConstants.PLM_CODE_PARAM_KEY + CLOSETConnectorConstants.ASSIGN + brandCodeValue;
 
-        ResponseEntity<String> responseEntity1 = restService.makeGetOrPostCall(url2, HttpMethod.GET, headers, new JSONObject());
+        ResponseEntity<String> responseEntity1 = restService.makeGetOrPostCall(url2, HttpMethod.GET, headers, new JSONObject(), UpstreamBulkheads.Operation.SEARCH);
         String responseData1 = responseEntity1.getBody();
         JSONObject responseDataJSON1 = new JSONObject(responseData1);
 
@@ -1463,7 +2108,7 @@ public class PLMHelper {
     private String getDivisionDisplayValue(String divisionCodeValue, HttpHeaders headers, String plmurl) {
         String url = plmurl + PLMConstants.DIVISION_SEARCH_RESULTS_API;
         url = url + CLOSETConnectorConstants.QUESTION_MARK + PLMConstants.PLM_CODE_PARAM_KEY + CLOSETConnectorConstants.ASSIGN + divisionCodeValue;
-        ResponseEntity<String> responseEntity1 = restService.makeGetOrPostCall(url, HttpMethod.GET, headers, new JSONObject());
+        ResponseEntity<String> responseEntity1 = restService.makeGetOrPostCall(url, HttpMethod.GET, headers, new JSONObject(), UpstreamBulkheads.Operation.SEARCH);
         String responseData1 = responseEntity1.getBody();
         JSONObject responseDataJSON1 = new JSONObject(responseData1);
 
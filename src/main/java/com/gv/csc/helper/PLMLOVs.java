@@ -1,31 +1,250 @@
 package com.gv.csc.helper;
 
-import java.util.HashMap;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * PLMLOVs - Cache of PLM LOV display values (department, brand, division), keyed by PLM instance, attribute and code
+ *
+ * Reads are lock-free, a missing value is loaded once even when several requests ask for it at the same time,
+ * and entries expire after a TTL. The cache is bounded in size and keeps hit/miss statistics.
+ */
 public class PLMLOVs {
 
-    private static HashMap<String, HashMap<String, String>> PLM_LOV_LIST =  new HashMap<String, HashMap<String, String>>();
+    Logger logger = LoggerFactory.getLogger(PLMLOVs.class);
+
+    @Value("${csc.plm.lov.ttl-minutes:60}")
+    private long ttlMinutes;
+
+    @Value("${csc.plm.lov.max-size:10000}")
+    private int maxSize;
+
+    private final ConcurrentHashMap<LOVKey, CompletableFuture<LOVValue>> lovCache = new ConcurrentHashMap<>();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loadFailures = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * getDisplayValue - Returns the cached display value, loading it with the given loader when missing or expired
+     *
+     * @param plmUrl String plmUrl
+     * @param attribute String attribute
+     * @param code String code
+     * @param loader Supplier loader used on a cache miss
+     * @return display value
+     */
+    public String getDisplayValue(String plmUrl, String attribute, String code, Supplier<String> loader) {
+        LOVKey key = new LOVKey(plmUrl, attribute, code);
+        while (true) {
+            CompletableFuture<LOVValue> existing = lovCache.get(key);
+            if (existing != null && !isStale(existing)) {
+                hits.increment();
+                return await(existing).value;
+            }
+
+            CompletableFuture<LOVValue> loading = new CompletableFuture<>();
+            boolean owner = existing == null ? lovCache.putIfAbsent(key, loading) == null : lovCache.replace(key, existing, loading);
+            if (!owner) {
+                // Another request started loading the same value, use its result
+                continue;
+            }
 
-    public static HashMap<String, HashMap<String, String>> getPLM_LOV_LIST() {
-        return PLM_LOV_LIST;
+            misses.increment();
+            try {
+                String value = loader.get();
+                loading.complete(new LOVValue(value, System.nanoTime() + TimeUnit.MINUTES.toNanos(ttlMinutes)));
+            } catch (RuntimeException exc) {
+                loadFailures.increment();
+                lovCache.remove(key, loading);
+                loading.completeExceptionally(exc);
+                throw exc;
+            }
+            evictIfNeeded();
+            return loading.join().value;
+        }
     }
 
     /**
+     * peek - Returns the cached display value without loading it
      *
-     * @param attKey
-     * @param lovKey
-     * @param lovValue
+     * @param plmUrl String plmUrl
+     * @param attribute String attribute
+     * @param code String code
+     * @return display value, null when not cached or expired
+     */
+    public String peek(String plmUrl, String attribute, String code) {
+        CompletableFuture<LOVValue> existing = lovCache.get(new LOVKey(plmUrl, attribute, code));
+        if (existing == null || !existing.isDone() || isStale(existing)) {
+            return null;
+        }
+        hits.increment();
+        return existing.join().value;
+    }
+
+    /**
+     * put - Stores a display value loaded in bulk
+     *
+     * @param plmUrl String plmUrl
+     * @param attribute String attribute
+     * @param code String code
+     * @param value String value
+     */
+    public void put(String plmUrl, String attribute, String code, String value) {
+        lovCache.put(new LOVKey(plmUrl, attribute, code),
+                CompletableFuture.completedFuture(new LOVValue(value, System.nanoTime() + TimeUnit.MINUTES.toNanos(ttlMinutes))));
+        evictIfNeeded();
+    }
+
+    /**
+     * clear - Removes every cached value
+     */
+    public void clear() {
+        lovCache.clear();
+    }
+
+    /**
+     * getStatistics - Cache statistics
+     *
+     * @return JSONObject with size, hits, misses, load failures and evictions
+     */
+    public JSONObject getStatistics() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        long requestCount = hitCount + missCount;
+
+        JSONObject statistics = new JSONObject();
+        statistics.put("size", lovCache.size());
+        statistics.put("maxSize", maxSize);
+        statistics.put("ttlMinutes", ttlMinutes);
+        statistics.put("hits", hitCount);
+        statistics.put("misses", missCount);
+        statistics.put("hitRate", requestCount == 0 ? 0.0 : (double) hitCount / requestCount);
+        statistics.put("loadFailures", loadFailures.sum());
+        statistics.put("evictions", evictions.sum());
+        return statistics;
+    }
+
+    private boolean isStale(CompletableFuture<LOVValue> future) {
+        if (!future.isDone()) {
+            return false;
+        }
+        if (future.isCompletedExceptionally()) {
+            return true;
+        }
+        return future.join().isExpired(System.nanoTime());
+    }
+
+    private LOVValue await(CompletableFuture<LOVValue> future) {
+        try {
+            return future.join();
+        } catch (CompletionException exc) {
+            if (exc.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) exc.getCause();
+            }
+            throw exc;
+        }
+    }
+
+    /**
+     * evictIfNeeded - Drops expired entries, then the entries closest to expiry, until the cache is back under its size bound
      */
-    public static void setPLM_LOV_LIST(String attKey, String lovKey, String lovValue) {
-        HashMap<String, String> tempLOV;
-        if(PLM_LOV_LIST.containsKey(attKey)) {
-            tempLOV = PLM_LOV_LIST.get(attKey);
-            tempLOV.put(lovKey, lovValue);
-            PLM_LOV_LIST.put(attKey, tempLOV);
-        } else {
-            tempLOV = new HashMap<String, String>();
-            tempLOV.put(lovKey, lovValue);
-            PLM_LOV_LIST.put(attKey, tempLOV);
+    private void evictIfNeeded() {
+        if (lovCache.size() <= maxSize || !evictionLock.tryLock()) {
+            return;
+        }
+        try {
+            long now = System.nanoTime();
+            List<Map.Entry<LOVKey, CompletableFuture<LOVValue>>> loaded = new ArrayList<>();
+            for (Map.Entry<LOVKey, CompletableFuture<LOVValue>> entry : lovCache.entrySet()) {
+                CompletableFuture<LOVValue> future = entry.getValue();
+                if (!future.isDone()) {
+                    continue;
+                }
+                if (future.isCompletedExceptionally() || future.join().isExpired(now)) {
+                    if (lovCache.remove(entry.getKey(), future)) {
+                        evictions.increment();
+                    }
+                } else {
+                    loaded.add(entry);
+                }
+            }
+
+            int target = Math.max(0, maxSize - maxSize / 10);
+            if (lovCache.size() > target) {
+                loaded.sort(Comparator.comparingLong(entry -> entry.getValue().join().expiresAt));
+                for (Map.Entry<LOVKey, CompletableFuture<LOVValue>> entry : loaded) {
+                    if (lovCache.size() <= target) {
+                        break;
+                    }
+                    if (lovCache.remove(entry.getKey(), entry.getValue())) {
+                        evictions.increment();
+                    }
+                }
+            }
+            logger.debug("DEBUG::PLMLOVs: evictIfNeeded() size after eviction - " + lovCache.size());
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    private static final class LOVKey {
+        private final String plmUrl;
+        private final String attribute;
+        private final String code;
+
+        LOVKey(String plmUrl, String attribute, String code) {
+            this.plmUrl = plmUrl;
+            this.attribute = attribute;
+            this.code = code;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof LOVKey)) {
+                return false;
+            }
+            LOVKey other = (LOVKey) o;
+            return Objects.equals(plmUrl, other.plmUrl) && Objects.equals(attribute, other.attribute) && Objects.equals(code, other.code);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(plmUrl, attribute, code);
+        }
+    }
+
+    private static final class LOVValue {
+        private final String value;
+        private final long expiresAt;
+
+        LOVValue(String value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isExpired(long now) {
+            return now - expiresAt >= 0;
         }
     }
 }
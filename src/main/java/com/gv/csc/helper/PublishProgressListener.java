@@ -0,0 +1,17 @@
+package com.gv.csc.helper;
+
+/**
+ * PublishProgressListener - Callback notified as the publish pipeline moves from one stage to the next
+ */
+@FunctionalInterface
+public interface PublishProgressListener {
+
+    PublishProgressListener NONE = stage -> { };
+
+    /**
+     * onStage - Called when the publish pipeline starts a stage
+     *
+     * @param stage String stage, one of the PLMConstants.PUBLISH_STAGE_* values
+     */
+    void onStage(String stage);
+}
@@ -0,0 +1,71 @@
+package com.gv.csc.helper;
+
+import org.json.JSONObject;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * PublishStageTimings - Running totals of the publish stage timings, per stage: how often it ran, its total and
+ * longest duration, and how often it was on the critical path of a publish
+ */
+public class PublishStageTimings {
+
+    private final Map<String, StageTiming> timings = new ConcurrentHashMap<>();
+    private final LongAdder publishes = new LongAdder();
+
+    /**
+     * record - Adds the timings of a completed publish
+     *
+     * @param graph StageGraph graph of the publish
+     */
+    public void record(StageGraph graph) {
+        publishes.increment();
+        for (StageGraph.Stage<?> stage : graph.getStages()) {
+            if (stage.isFinished()) {
+                StageTiming timing = timings.computeIfAbsent(stage.getName(), stageName -> new StageTiming());
+                long durationMillis = stage.getDurationMillis();
+                timing.runs.increment();
+                timing.totalMillis.add(durationMillis);
+                timing.maxMillis.accumulate(durationMillis);
+            }
+        }
+        List<String> criticalPath = graph.getCriticalPath();
+        for (String stageName : criticalPath) {
+            timings.computeIfAbsent(stageName, name -> new StageTiming()).criticalPath.increment();
+        }
+    }
+
+    /**
+     * getStatistics - Timings per stage
+     *
+     * @return JSONObject with the number of publishes and runs, averageMs, maxMs and criticalPath per stage
+     */
+    public JSONObject getStatistics() {
+        JSONObject statistics = new JSONObject();
+        statistics.put("publishes", publishes.sum());
+        JSONObject stages = new JSONObject();
+        for (Map.Entry<String, StageTiming> entry : timings.entrySet()) {
+            StageTiming timing = entry.getValue();
+            long runs = timing.runs.sum();
+            JSONObject stage = new JSONObject();
+            stage.put("runs", runs);
+            stage.put("averageMs", runs == 0 ? 0 : timing.totalMillis.sum() / runs);
+            stage.put("maxMs", timing.maxMillis.get());
+            stage.put("criticalPath", timing.criticalPath.sum());
+            stages.put(entry.getKey(), stage);
+        }
+        statistics.put("stages", stages);
+        return statistics;
+    }
+
+    private static final class StageTiming {
+        private final LongAdder runs = new LongAdder();
+        private final LongAdder totalMillis = new LongAdder();
+        private final LongAccumulator maxMillis = new LongAccumulator(Math::max, 0);
+        private final LongAdder criticalPath = new LongAdder();
+    }
+}
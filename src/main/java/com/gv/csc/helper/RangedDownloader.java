@@ -0,0 +1,357 @@
+package com.gv.csc.helper;
+
+import com.gv.csc.util.CLOSETConnectorConstants;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * RangedDownloader - Downloads large CLO-SET assets as concurrent byte ranges
+ *
+ * The download starts with a request for the first byte. When the server answers with a range (206) and the asset
+ * is large enough, the file is preallocated and a few workers fetch fixed size ranges into it with positional
+ * writes. A failed range is retried on its own, resuming after the bytes it already wrote. When the server ignores
+ * the range (200) the response is simply streamed to the file.
+ */
+public class RangedDownloader {
+
+    private static final Pattern CONTENT_RANGE = Pattern.compile("bytes\\s+(\\d+)-(\\d+)/(\\d+)");
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    @Autowired
+    private CloseableHttpClient pooledHttpClient;
+
+    @Autowired
+    private UpstreamBulkheads upstreamBulkheads;
+
+    @Autowired
+    @Qualifier("rangedDownloadExecutor")
+    private ExecutorService rangedDownloadExecutor;
+
+    @Value("${csc.publish.download.ranged.min-bytes:67108864}")
+    private long minBytes;
+
+    @Value("${csc.publish.download.ranged.range-bytes:16777216}")
+    private long rangeBytes;
+
+    @Value("${csc.publish.download.ranged.ranges:4}")
+    private int ranges;
+
+    @Value("${csc.publish.download.ranged.range-retries:3}")
+    private int rangeRetries;
+
+    @Value("${csc.publish.download.ranged.retry-backoff-ms:500}")
+    private long retryBackoffMs;
+
+    Logger logger = LoggerFactory.getLogger(RangedDownloader.class);
+
+    /**
+     * download - Downloads an asset to a file, in concurrent ranges when the server supports them
+     *
+     * @param url String url
+     * @param file File file
+     * @return File
+     * @throws IOException exception
+     */
+    public File download(String url, File file) throws IOException {
+        // Never write through an existing file, it may be a link to a stored blob
+        Files.deleteIfExists(file.toPath());
+        Probe probe = upstreamBulkheads.call(url, UpstreamBulkheads.Operation.DOWNLOAD, () -> probe(url, file));
+        if (probe == null) {
+            return file;
+        }
+
+        if (probe.totalLength < minBytes) {
+            return upstreamBulkheads.call(url, UpstreamBulkheads.Operation.DOWNLOAD, () -> downloadSingle(url, file));
+        }
+        downloadRanges(url, file, probe.totalLength, probe.validator);
+        return file;
+    }
+
+    /**
+     * canDownload - Whether a download URL currently grants access to its asset, asked with a request for the first
+     * byte. A server ignoring the range answers with the whole asset, its connection is dropped unread.
+     *
+     * @param url String url, signed as the caller received it
+     * @return boolean false when the upstream refused the URL or could not be reached
+     */
+    public boolean canDownload(String url) {
+        try {
+            return upstreamBulkheads.call(url, UpstreamBulkheads.Operation.DOWNLOAD, () -> {
+                HttpGet probe = newGet(url);
+                probe.setHeader(HttpHeaders.RANGE, "bytes=0-0");
+                try (CloseableHttpResponse response = pooledHttpClient.execute(probe)) {
+                    int status = response.getStatusLine().getStatusCode();
+                    if (status == HttpStatus.SC_PARTIAL_CONTENT) {
+                        EntityUtils.consume(response.getEntity());
+                    }
+                    return status == HttpStatus.SC_OK || status == HttpStatus.SC_PARTIAL_CONTENT;
+                }
+            });
+        } catch (IOException | RuntimeException exc) {
+            logger.debug("DEBUG::RangedDownloader: canDownload() - " + exc.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * probe - Requests the first byte to learn whether the server supports ranges and how large the asset is
+     *
+     * @return Probe, null when the server ignored the range and the whole asset was streamed to the file
+     */
+    private Probe probe(String url, File file) throws IOException {
+        HttpGet probe = newGet(url);
+        probe.setHeader(HttpHeaders.RANGE, "bytes=0-0");
+        try (CloseableHttpResponse response = pooledHttpClient.execute(probe)) {
+            int status = response.getStatusLine().getStatusCode();
+            HttpEntity entity = response.getEntity();
+            if (status == HttpStatus.SC_OK && entity != null) {
+                // Ranges are not supported, the probe already is the whole download
+                logger.debug("DEBUG::RangedDownloader: download() no range support, streaming " + file.getName());
+                streamToFile(entity.getContent(), file);
+                return null;
+            }
+            long[] contentRange = status == HttpStatus.SC_PARTIAL_CONTENT ? parseContentRange(response) : null;
+            if (contentRange == null) {
+                throw new IOException("Download of " + file.getName() + " failed with status " + status);
+            }
+            // Read the single byte so the connection goes back to the pool
+            EntityUtils.consume(entity);
+            return new Probe(contentRange[2], getStrongETag(response));
+        }
+    }
+
+    /**
+     * downloadSingle - Downloads an asset in one stream
+     */
+    private File downloadSingle(String url, File file) throws IOException {
+        try (CloseableHttpResponse response = pooledHttpClient.execute(newGet(url))) {
+            int status = response.getStatusLine().getStatusCode();
+            HttpEntity entity = response.getEntity();
+            if (status < 200 || status >= 300 || entity == null) {
+                throw new IOException("Download of " + file.getName() + " failed with status " + status);
+            }
+            streamToFile(entity.getContent(), file);
+        }
+        return file;
+    }
+
+    /**
+     * downloadRanges - Fetches all ranges of the asset into a preallocated file with a few concurrent workers
+     */
+    private void downloadRanges(String url, File file, long totalLength, String validator) throws IOException {
+        int rangeCount = (int) ((totalLength + rangeBytes - 1) / rangeBytes);
+        int workers = Math.max(1, Math.min(ranges, rangeCount));
+        logger.info("INFO::RangedDownloader: downloadRanges() " + file.getName() + " - " + totalLength + " bytes in "
+                + rangeCount + " ranges, " + workers + " at a time");
+
+        Files.createDirectories(file.getAbsoluteFile().getParentFile().toPath());
+        try (RandomAccessFile output = new RandomAccessFile(file, "rw")) {
+            output.setLength(totalLength);
+            FileChannel channel = output.getChannel();
+            AtomicInteger nextRange = new AtomicInteger();
+            List<Future<?>> running = new ArrayList<>();
+            for (int i = 0; i < workers; i++) {
+                running.add(rangedDownloadExecutor.submit(() -> {
+                    int range;
+                    try {
+                        while ((range = nextRange.getAndIncrement()) < rangeCount) {
+                            long start = range * rangeBytes;
+                            long end = Math.min(totalLength, start + rangeBytes) - 1;
+                            fetchRange(url, file.getName(), validator, channel, start, end);
+                        }
+                    } catch (IOException | RuntimeException exc) {
+                        // The download failed, the other workers stop taking ranges
+                        nextRange.set(rangeCount);
+                        throw exc;
+                    }
+                    return null;
+                }));
+            }
+            awaitRanges(running, nextRange, rangeCount);
+        } catch (IOException exc) {
+            Files.deleteIfExists(file.toPath());
+            throw exc;
+        }
+    }
+
+    /**
+     * fetchRange - Fetches one byte range, retrying from the first byte not yet written
+     */
+    private void fetchRange(String url, String fileName, String validator, FileChannel channel, long start, long end) throws IOException {
+        // First byte not written yet, advanced by writeRange as bytes land in the file
+        long[] position = {start};
+        for (int attempt = 0; ; attempt++) {
+            try {
+                upstreamBulkheads.call(url, UpstreamBulkheads.Operation.DOWNLOAD,
+                        () -> writeRange(url, fileName, validator, channel, position, end));
+                return;
+            } catch (InterruptedIOException exc) {
+                throw exc;
+            } catch (IOException exc) {
+                if (attempt >= rangeRetries || Thread.currentThread().isInterrupted()) {
+                    throw exc;
+                }
+                logger.warn("WARN::RangedDownloader: fetchRange() " + fileName + " bytes " + position[0] + "-" + end
+                        + " attempt " + (attempt + 1) + " failed, retrying - " + exc.getMessage());
+                try {
+                    Thread.sleep(retryBackoffMs * (attempt + 1));
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Download of " + fileName + " interrupted");
+                }
+            }
+        }
+    }
+
+    /**
+     * writeRange - Requests bytes position..end and writes them at their offset in the file, advancing position
+     */
+    private Void writeRange(String url, String fileName, String validator, FileChannel channel, long[] next, long end) throws IOException {
+        long position = next[0];
+        HttpGet get = newGet(url);
+        get.setHeader(HttpHeaders.RANGE, "bytes=" + position + "-" + end);
+        if (validator != null) {
+            // The asset changed since the probe: the server answers 200 and the range is rejected below
+            get.setHeader(HttpHeaders.IF_RANGE, validator);
+        }
+        try (CloseableHttpResponse response = pooledHttpClient.execute(get)) {
+            int status = response.getStatusLine().getStatusCode();
+            long[] contentRange = status == HttpStatus.SC_PARTIAL_CONTENT ? parseContentRange(response) : null;
+            HttpEntity entity = response.getEntity();
+            if (contentRange == null || contentRange[0] != position || entity == null) {
+                throw new IOException("Range " + position + "-" + end + " of " + fileName + " failed with status " + status);
+            }
+            try (InputStream content = entity.getContent()) {
+                ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+                byte[] bytes = buffer.array();
+                int read;
+                while (position <= end && (read = content.read(bytes, 0, (int) Math.min(bytes.length, end - position + 1))) != -1) {
+                    buffer.clear().limit(read);
+                    while (buffer.hasRemaining()) {
+                        position += channel.write(buffer, position);
+                    }
+                    next[0] = position;
+                    if (Thread.currentThread().isInterrupted()) {
+                        throw new InterruptedIOException("Download of " + fileName + " interrupted");
+                    }
+                }
+            }
+            if (position <= end) {
+                throw new IOException("Range " + position + "-" + end + " of " + fileName + " ended early");
+            }
+        }
+        return null;
+    }
+
+    /**
+     * awaitRanges - Waits for the range workers. When one fails the others stop taking ranges and are interrupted
+     */
+    private void awaitRanges(List<Future<?>> running, AtomicInteger nextRange, int rangeCount) throws IOException {
+        try {
+            for (Future<?> worker : running) {
+                worker.get();
+            }
+        } catch (InterruptedException exc) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Ranged download interrupted");
+        } catch (ExecutionException exc) {
+            Throwable cause = exc.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause);
+        } finally {
+            nextRange.set(rangeCount);
+            for (Future<?> worker : running) {
+                worker.cancel(true);
+            }
+        }
+    }
+
+    private HttpGet newGet(String url) {
+        HttpGet get = new HttpGet(url);
+        get.setHeader("User-Agent", CLOSETConnectorConstants.ASSET_DOWNLOAD_USER_AGENT);
+        return get;
+    }
+
+    private void streamToFile(InputStream content, File file) throws IOException {
+        Files.createDirectories(file.getAbsoluteFile().getParentFile().toPath());
+        try (InputStream input = content; OutputStream output = Files.newOutputStream(file.toPath())) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                output.write(buffer, 0, read);
+            }
+        }
+    }
+
+    /**
+     * parseContentRange - First byte, last byte and total length from a Content-Range header
+     *
+     * @return long[] or null when the header is missing or the total length unknown
+     */
+    private static long[] parseContentRange(CloseableHttpResponse response) {
+        Header header = response.getFirstHeader(HttpHeaders.CONTENT_RANGE);
+        if (header == null) {
+            return null;
+        }
+        Matcher matcher = CONTENT_RANGE.matcher(header.getValue().trim());
+        if (!matcher.matches()) {
+            return null;
+        }
+        return new long[]{Long.parseLong(matcher.group(1)), Long.parseLong(matcher.group(2)), Long.parseLong(matcher.group(3))};
+    }
+
+    /**
+     * getStrongETag - ETag usable in If-Range, weak validators are not allowed there
+     */
+    private static String getStrongETag(CloseableHttpResponse response) {
+        Header header = response.getFirstHeader(HttpHeaders.ETAG);
+        if (header == null || header.getValue().startsWith("W/")) {
+            return null;
+        }
+        return header.getValue();
+    }
+
+    /**
+     * Probe - Total length of a ranged asset and the validator of its ranges
+     */
+    private static final class Probe {
+        private final long totalLength;
+        private final String validator;
+
+        private Probe(long totalLength, String validator) {
+            this.totalLength = totalLength;
+            this.validator = validator;
+        }
+    }
+}
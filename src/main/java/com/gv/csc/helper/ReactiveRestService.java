@@ -0,0 +1,189 @@
+package com.gv.csc.helper;
+
+import org.json.JSONObject;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.RestClientResponseException;
+import org.springframework.web.client.UnknownHttpStatusCodeException;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * ReactiveRestService - Non-blocking variants of the RestService calls, used for fan-out paths. Calls share the
+ * event loop of the reactive WebClient (see RestClientConfig) instead of holding a thread each.
+ *
+ * Error responses are raised as HttpClientErrorException / HttpServerErrorException, as RestService does.
+ */
+public class ReactiveRestService {
+
+    @Autowired
+    private WebClient reactiveWebClient;
+
+    @Autowired
+    private UpstreamBulkheads upstreamBulkheads;
+
+    @Autowired
+    private RetryPolicy retryPolicy;
+
+    @Autowired
+    private HedgingExecutor hedgingExecutor;
+
+    /**
+     * make post or get calls
+     *
+     * @param url         server url
+     * @param methodType  method type
+     * @param headers     headers
+     * @param requestBody data to be added
+     * @return response, emitted once received
+     */
+    public Mono<ResponseEntity<String>> makeGetOrPostCall(String url,
+                                                          HttpMethod methodType,
+                                                          HttpHeaders headers,
+                                                          JSONObject requestBody) {
+        return doGetOrPostCall(url, methodType, headers, requestBody.toString());
+    }
+
+    /**
+     * make post or get calls within the bulkhead of a given operation class
+     *
+     * @param url         server url
+     * @param methodType  method type
+     * @param headers     headers
+     * @param requestBody data to be added
+     * @param operation   operation class of the call, e.g. SEARCH
+     * @return response, emitted once received
+     */
+    public Mono<ResponseEntity<String>> makeGetOrPostCall(String url,
+                                                          HttpMethod methodType,
+                                                          HttpHeaders headers,
+                                                          JSONObject requestBody,
+                                                          UpstreamBulkheads.Operation operation) {
+        return doGetOrPostCall(url, methodType, headers, requestBody.toString(), operation, null);
+    }
+
+    /**
+     * makeHedgedGetCall - GET for a latency critical, idempotent read, hedged by the HedgingExecutor when enabled
+     *
+     * @param url         server url
+     * @param headers     headers
+     * @param requestBody data to be added
+     * @param operation   operation whose latency the call is measured against
+     * @return response, emitted once received
+     */
+    public Mono<ResponseEntity<String>> makeHedgedGetCall(String url,
+                                                          HttpHeaders headers,
+                                                          JSONObject requestBody,
+                                                          String operation) {
+        return doGetOrPostCall(url, HttpMethod.GET, headers, requestBody.toString(), UpstreamBulkheads.Operation.READ, operation);
+    }
+
+    /**
+     * make post or get calls
+     *
+     * @param url         server url
+     * @param methodType  method type
+     * @param headers     headers
+     * @param requestBody data to be added
+     * @return response, emitted once received
+     */
+    public Mono<ResponseEntity<String>> doGetOrPostCall(String url,
+                                                        HttpMethod methodType,
+                                                        HttpHeaders headers,
+                                                        String requestBody) {
+        return doGetOrPostCall(url, methodType, headers, requestBody, UpstreamBulkheads.Operation.forMethod(methodType), null);
+    }
+
+    private Mono<ResponseEntity<String>> doGetOrPostCall(String url,
+                                                         HttpMethod methodType,
+                                                         HttpHeaders headers,
+                                                         String requestBody,
+                                                         UpstreamBulkheads.Operation operation,
+                                                         String hedgedOperation) {
+        WebClient.RequestBodySpec request = reactiveWebClient.method(methodType)
+                .uri(url)
+                .headers(requestHeaders -> requestHeaders.addAll(headers));
+        // GET bodies are dropped by the blocking client, do not send them here either
+        WebClient.RequestHeadersSpec<?> requestSpec = methodType == HttpMethod.GET ? request : request.bodyValue(requestBody);
+        Mono<ResponseEntity<String>> call = upstreamBulkheads.callAsync(url, operation, requestSpec.retrieve()
+                .toEntity(String.class)
+                .onErrorMap(WebClientResponseException.class, ReactiveRestService::toRestClientException));
+        if (methodType != HttpMethod.GET) {
+            return call;
+        }
+        if (hedgedOperation != null) {
+            // Each attempt is hedged on its own, the retry backoff is not part of the measured latency
+            call = hedgingExecutor.executeAsync(hedgedOperation, call);
+        }
+        // GETs are idempotent, each retry subscribes to the call again
+        return retryPolicy.executeAsync(url, call);
+    }
+
+    /**
+     * make patch calls
+     *
+     * @param url         server url
+     * @param headers     headers
+     * @param requestBody data to be updated with
+     * @return response body, emitted once received
+     */
+    public Mono<String> makePatchCall(String url,
+                                      HttpHeaders headers,
+                                      JSONObject requestBody) {
+        return doGetOrPostCall(url, HttpMethod.PATCH, headers, requestBody.toString())
+                .flatMap(response -> Mono.justOrEmpty(response.getBody()));
+    }
+
+    /**
+     * await - Blocks the calling (servlet) thread until the result is available. Must not be called on the event loop.
+     *
+     * @param result Mono result
+     * @param exceptionType Class checked exception the caller declares
+     * @return result, null when empty
+     * @throws E the checked exception the result failed with
+     */
+    public <T, E extends Exception> T await(Mono<T> result, Class<E> exceptionType) throws E {
+        try {
+            return result.block();
+        } catch (RuntimeException exc) {
+            // Checked exceptions come back wrapped by block()
+            Throwable cause = Exceptions.unwrap(exc);
+            if (exceptionType.isInstance(cause)) {
+                throw exceptionType.cast(cause);
+            }
+            if (cause instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw exc;
+        }
+    }
+
+    /**
+     * toRestClientException - Maps a WebClient error response to the exception RestTemplate raises for it
+     *
+     * @param exc WebClientResponseException exc
+     * @return RestClientResponseException
+     */
+    private static RestClientResponseException toRestClientException(WebClientResponseException exc) {
+        HttpStatus status = HttpStatus.resolve(exc.getRawStatusCode());
+        if (status != null && status.is4xxClientError()) {
+            return HttpClientErrorException.create(status, exc.getStatusText(), exc.getHeaders(), exc.getResponseBodyAsByteArray(), StandardCharsets.UTF_8);
+        }
+        if (status != null && status.is5xxServerError()) {
+            return HttpServerErrorException.create(status, exc.getStatusText(), exc.getHeaders(), exc.getResponseBodyAsByteArray(), StandardCharsets.UTF_8);
+        }
+        return new UnknownHttpStatusCodeException(exc.getRawStatusCode(), exc.getStatusText(), exc.getHeaders(), exc.getResponseBodyAsByteArray(), StandardCharsets.UTF_8);
+    }
+}
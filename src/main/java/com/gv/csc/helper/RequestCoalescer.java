@@ -0,0 +1,82 @@
+package com.gv.csc.helper;
+
+import org.json.JSONObject;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * RequestCoalescer - Single-flight execution of identical concurrent calls
+ *
+ * The first caller for a key runs the call on its own thread; callers arriving with the same key while it is in
+ * flight wait for it and receive the same result or exception. Nothing is cached: once the call completed the next
+ * caller runs it again. The key must cover everything the result depends on, including the caller's credentials.
+ */
+public class RequestCoalescer {
+
+    private final ConcurrentHashMap<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    /**
+     * execute - Runs the call, or joins the identical call already in flight
+     *
+     * @param key String key identifying the call and the caller's identity
+     * @param call Supplier call
+     * @return T result, shared by all callers of the flight
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String key, Supplier<T> call) {
+        CompletableFuture<Object> flight = new CompletableFuture<>();
+        CompletableFuture<Object> running = inFlight.putIfAbsent(key, flight);
+        if (running != null) {
+            coalesced.increment();
+            return (T) await(running);
+        }
+
+        calls.increment();
+        try {
+            T result = call.get();
+            // Leave the map first, callers from now on start a new flight
+            inFlight.remove(key, flight);
+            flight.complete(result);
+            return result;
+        } catch (RuntimeException | Error exc) {
+            inFlight.remove(key, flight);
+            flight.completeExceptionally(exc);
+            throw exc;
+        }
+    }
+
+    /**
+     * getStatistics - Coalescing statistics
+     *
+     * @return JSONObject with upstream calls, coalesced calls and flights in progress
+     */
+    public JSONObject getStatistics() {
+        JSONObject statistics = new JSONObject();
+        statistics.put("calls", calls.sum());
+        statistics.put("coalesced", coalesced.sum());
+        statistics.put("inFlight", inFlight.size());
+        return statistics;
+    }
+
+    private static Object await(CompletableFuture<Object> running) {
+        try {
+            return running.join();
+        } catch (CompletionException exc) {
+            Throwable cause = exc.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw exc;
+        }
+    }
+}
@@ -2,27 +2,87 @@ package com.gv.csc.helper;
 
 
 import com.gv.csc.exceptions.PLMException;
+import com.gv.csc.exceptions.UpstreamUnavailableException;
 import com.gv.csc.util.PLMConstants;
 import okhttp3.*;
-import org.apache.http.client.HttpClient;
-import org.apache.http.conn.ssl.NoopHostnameVerifier;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClientBuilder;
-import org.apache.http.impl.client.HttpClients;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.*;
 import org.springframework.http.MediaType;
-import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.util.MultiValueMap;
+import org.springframework.web.client.RestClientResponseException;
 import org.springframework.web.client.RestTemplate;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
 
 /**
  * RestService - Helper class containing the helper logic for speaking with Rest APIs calls and preparing response
  */
 public class RestService {
+
+    /**
+     * RestTemplate backed by the shared, pooled HTTP client (see RestClientConfig)
+     */
+    @Autowired
+    private RestTemplate restTemplate;
+
+    /**
+     * Pooled RestTemplate that streams request bodies, used for multipart uploads
+     */
+    @Autowired
+    @Qualifier("streamingRestTemplate")
+    private RestTemplate streamingRestTemplate;
+
+    /**
+     * OkHttp client shared by the PLM write path (see RestClientConfig)
+     */
+    @Autowired
+    private OkHttpClient plmOkHttpClient;
+
+    @Autowired
+    private UpstreamBulkheads upstreamBulkheads;
+
+    @Autowired
+    private RetryPolicy retryPolicy;
+
+    @Autowired
+    private HedgingExecutor hedgingExecutor;
+
+    @Value("${csc.plm.post-style.write-timeout-ms:120000}")
+    private long postStyleWriteTimeoutMs;
+
+    @Value("${csc.plm.post-style.read-timeout-ms:480000}")
+    private long postStyleReadTimeoutMs;
+
+    @Value("${csc.plm.post-style.call-timeout-ms:600000}")
+    private long postStyleCallTimeoutMs;
+
+    @Value("${csc.http.coalescing.enabled:true}")
+    private boolean coalescingEnabled;
+
+    /**
+     * Identical GETs in flight at the same time share one upstream call
+     */
+    private final RequestCoalescer getCoalescer = new RequestCoalescer();
+
+    private final LongAdder plmCalls = new LongAdder();
+    private final LongAdder plmHttp2Calls = new LongAdder();
+    private final LongAdder plmCallFailures = new LongAdder();
+
+    Logger logger = LoggerFactory.getLogger(RestService.class);
+
     /**
      * make post or get calls
      *
@@ -36,17 +96,27 @@ public class RestService {
                                                     HttpMethod methodType,
                                                     HttpHeaders headers,
                                                     JSONObject requestBody) {
-        CloseableHttpClient httpClient = HttpClients.custom().setSSLHostnameVerifier(new NoopHostnameVerifier())
-                .build();
-        HttpComponentsClientHttpRequestFactory requestFactory = new HttpComponentsClientHttpRequestFactory();
-        requestFactory.setHttpClient(httpClient);
-
-        RestTemplate restTemplate = new RestTemplate(requestFactory);
+        return exchange(url, methodType, headers, requestBody.toString(), UpstreamBulkheads.Operation.forMethod(methodType), null);
+    }
 
-        HttpEntity<String> entity = new HttpEntity<>(requestBody.toString(), headers);
-        return restTemplate.exchange(url, methodType, entity, String.class);
+    /**
+     * make post or get calls within the bulkhead of a given operation class
+     *
+     * @param url         server url
+     * @param methodType  method type
+     * @param headers     headers
+     * @param requestBody data to be added
+     * @param operation   operation class of the call, e.g. SEARCH
+     * @return success response
+     */
+    public ResponseEntity<String> makeGetOrPostCall(String url,
+                                                    HttpMethod methodType,
+                                                    HttpHeaders headers,
+                                                    JSONObject requestBody,
+                                                    UpstreamBulkheads.Operation operation) {
+        return exchange(url, methodType, headers, requestBody.toString(), operation, null);
     }
-    
+
     /**
      * make post or get calls
      *
@@ -60,43 +130,152 @@ public class RestService {
                                                     HttpMethod methodType,
                                                     HttpHeaders headers,
                                                     String requestBody) {
-        CloseableHttpClient httpClient = HttpClients.custom().setSSLHostnameVerifier(new NoopHostnameVerifier())
-                .build();
-        HttpComponentsClientHttpRequestFactory requestFactory = new HttpComponentsClientHttpRequestFactory();
-        requestFactory.setHttpClient(httpClient);
+        return exchange(url, methodType, headers, requestBody, UpstreamBulkheads.Operation.forMethod(methodType), null);
+    }
 
-        RestTemplate restTemplate = new RestTemplate(requestFactory);
+    /**
+     * make post or get calls within the bulkhead of a given operation class
+     *
+     * @param url         server url
+     * @param methodType  method type
+     * @param headers     headers
+     * @param requestBody data to be added
+     * @param operation   operation class of the call, e.g. SEARCH
+     * @return success response
+     */
+    public ResponseEntity<String> doGetOrPostCall(String url,
+                                                    HttpMethod methodType,
+                                                    HttpHeaders headers,
+                                                    String requestBody,
+                                                    UpstreamBulkheads.Operation operation) {
+        return exchange(url, methodType, headers, requestBody, operation, null);
+    }
+
+    /**
+     * makeHedgedGetCall - GET for a latency critical, idempotent read. When the HedgingExecutor is enabled and an
+     * attempt is slower than is usual for the operation, an identical attempt is started and the first answer wins.
+     *
+     * @param url String url
+     * @param headers HttpHeaders headers
+     * @param requestBody JSONObject requestBody
+     * @param operation String operation whose latency the call is measured against
+     * @return success response
+     */
+    public ResponseEntity<String> makeHedgedGetCall(String url, HttpHeaders headers, JSONObject requestBody, String operation) {
+        return exchange(url, HttpMethod.GET, headers, requestBody.toString(), UpstreamBulkheads.Operation.READ, operation);
+    }
 
+    /**
+     * exchange - Makes the call on the pooled RestTemplate within the bulkhead of its operation, GETs are retried by the RetryPolicy. Concurrent GETs with the same url, headers and body are
+     * coalesced into one upstream call; the headers carry the caller's token or cookie, so callers with different
+     * credentials never share a response. The shared ResponseEntity is immutable: read-only headers, String body.
+     * GETs with a hedgedOperation have each attempt hedged, the retry backoff is not part of the measured latency.
+     */
+    private ResponseEntity<String> exchange(String url, HttpMethod methodType, HttpHeaders headers, String requestBody,
+                                            UpstreamBulkheads.Operation operation, String hedgedOperation) {
         HttpEntity<String> entity = new HttpEntity<>(requestBody, headers);
-        return restTemplate.exchange(url, methodType, entity, String.class);
+        if (methodType != HttpMethod.GET) {
+            return upstreamBulkheads.call(url, operation,
+                    () -> restTemplate.exchange(url, methodType, entity, String.class));
+        }
+        Supplier<ResponseEntity<String>> attempt = () -> upstreamBulkheads.call(url, operation,
+                () -> restTemplate.exchange(url, methodType, entity, String.class));
+        if (hedgedOperation != null) {
+            Supplier<ResponseEntity<String>> unhedged = attempt;
+            attempt = () -> hedgingExecutor.execute(hedgedOperation, unhedged);
+        }
+        Supplier<ResponseEntity<String>> call = attempt;
+        if (!coalescingEnabled) {
+            return retryPolicy.execute(url, call::get);
+        }
+        // GETs are idempotent and retried on transient failures. Coalesced callers wait for the shared call, only
+        // its attempts take a permit
+        return getCoalescer.execute(coalescingKey(url, methodType, headers, requestBody),
+                () -> retryPolicy.execute(url, call::get));
     }
 
     /**
+     * coalescingKey - Method, url and a hash of the request headers and body. Header names are sorted ignoring case
+     * so the same request always gets the same key.
+     */
+    private static String coalescingKey(String url, HttpMethod methodType, HttpHeaders headers, String requestBody) {
+        Map<String, List<String>> sortedHeaders = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        if (headers != null) {
+            sortedHeaders.putAll(headers);
+        }
+        StringBuilder identity = new StringBuilder();
+        for (Map.Entry<String, List<String>> header : sortedHeaders.entrySet()) {
+            identity.append(header.getKey()).append(':').append(header.getValue()).append('\n');
+        }
+        identity.append('\n').append(requestBody);
+        return methodType + " " + url + " " + DigestUtils.sha256Hex(identity.toString());
+    }
+
+    /**
+     * getCoalescingStatistics - Statistics of the GET request coalescing
      *
-     * @param multipartBody
-     * @param url
-     * @param headers
+     * @return JSONObject statistics
+     */
+    public JSONObject getCoalescingStatistics() {
+        JSONObject statistics = getCoalescer.getStatistics();
+        statistics.put("enabled", coalescingEnabled);
+        return statistics;
+    }
+
+    /**
+     * uploadMultipartFormData - Posts a multipart form on the pooled connections. The body is streamed in chunked
+     * transfer mode: each Resource part is copied from its file or upstream stream through a small buffer while the
+     * request is written, so memory use does not grow with the size or number of the parts.
+     *
+     * @param multipartBody parts by name, file parts as Resource
+     * @param url           server url
+     * @param headers       headers, the content type is set to multipart/form-data
      * @return success response
      */
     public ResponseEntity<String> uploadMultipartFormData(MultiValueMap<String, Object> multipartBody,
                                                           String url,
                                                           HttpHeaders headers) {
-        headers.remove(HttpHeaders.CONTENT_TYPE);
-        headers.add(HttpHeaders.CONTENT_TYPE, MediaType.MULTIPART_FORM_DATA_VALUE);
-        HttpEntity<MultiValueMap<String, Object>> requestEntity = new HttpEntity<>(multipartBody, headers);
-        RestTemplate restTemplate = new RestTemplate();
-        return restTemplate.postForEntity(url, requestEntity, String.class);
+        HttpHeaders uploadHeaders = new HttpHeaders();
+        uploadHeaders.putAll(headers);
+        uploadHeaders.setContentType(MediaType.MULTIPART_FORM_DATA);
+        HttpEntity<MultiValueMap<String, Object>> requestEntity = new HttpEntity<>(multipartBody, uploadHeaders);
+        return upstreamBulkheads.call(url, UpstreamBulkheads.Operation.UPLOAD,
+                () -> streamingRestTemplate.postForEntity(url, requestEntity, String.class));
     }
 
-    public Response okmakeGetOrPostCall(String url, JSONObject requestBody, String token) throws PLMException {
-        OkHttpClient.Builder builder = new OkHttpClient.Builder();
-        builder.connectTimeout(480, TimeUnit.SECONDS);
-        builder.readTimeout(480, TimeUnit.SECONDS);
-        builder.writeTimeout(480, TimeUnit.SECONDS);
-        OkHttpClient client = builder.build();
+    /**
+     * okmakeGetOrPostCall - Posts the request xml to PLM on the shared OkHttp client, with the postStyle timeouts
+     *
+     * @param url         server url
+     * @param requestBody data to be posted
+     * @param token       PLM token
+     * @return response body
+     * @throws PLMException when the call fails
+     */
+    public String okmakeGetOrPostCall(String url, JSONObject requestBody, String token) throws PLMException {
+        return okmakeGetOrPostCall(url, requestBody.toString(), token);
+    }
+
+    /**
+     * okmakeGetOrPostCall - Posts an already serialized request xml to PLM on the shared OkHttp client, with the
+     * postStyle timeouts
+     *
+     * @param url         server url
+     * @param requestBody data to be posted
+     * @param token       PLM token
+     * @return response body
+     * @throws PLMException when the call fails or PLM responds with an error status, carrying that status
+     */
+    public String okmakeGetOrPostCall(String url, String requestBody, String token) throws PLMException {
+        // Derived clients share the connection pool and dispatcher of the shared one
+        OkHttpClient client = plmOkHttpClient.newBuilder()
+                .writeTimeout(postStyleWriteTimeoutMs, TimeUnit.MILLISECONDS)
+                .readTimeout(postStyleReadTimeoutMs, TimeUnit.MILLISECONDS)
+                .callTimeout(postStyleCallTimeoutMs, TimeUnit.MILLISECONDS)
+                .build();
 
         RequestBody body = new MultipartBody.Builder().setType(MultipartBody.FORM)
-                .addFormDataPart("requestxml", requestBody.toString())
+                .addFormDataPart("requestxml", requestBody)
                 .build();
         Request request = new Request.Builder()
                 .url(url)
@@ -106,16 +285,62 @@ public class RestService {
                 .addHeader("t", token)
                 .addHeader(PLMConstants.API_HEADER_VERSION_KEY, PLMConstants.API_HEADER_VERSION_VALUE)
                 .build();
-        Response response = null;
+        plmCalls.increment();
         try {
-            response = client.newCall(request).execute();
-
+            return upstreamBulkheads.call(url, UpstreamBulkheads.Operation.POST_STYLE, () -> {
+                // The response is always closed, which releases its connection back to the pool
+                try (Response response = client.newCall(request).execute()) {
+                    if (response.protocol() == Protocol.HTTP_2) {
+                        plmHttp2Calls.increment();
+                    }
+                    ResponseBody responseBody = response.body();
+                    String responseData = responseBody == null ? "" : responseBody.string();
+                    if (!response.isSuccessful()) {
+                        // Raised inside the bulkhead so it and the circuit breaker see the failed status
+                        throw new RestClientResponseException("PLM responded " + response.code() + " to " + url, response.code(),
+                                response.message(), null, responseData.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8);
+                    }
+                    return responseData;
+                }
+            });
+        } catch (RestClientResponseException e) {
+            plmCallFailures.increment();
+            logger.error("ERROR::RestService: okmakeGetOrPostCall() failed - " + e.getMessage() + " - " + e.getResponseBodyAsString());
+            HttpStatus status = HttpStatus.resolve(e.getRawStatusCode());
+            String responseData = e.getResponseBodyAsString();
+            throw new PLMException(responseData.trim().isEmpty() ? e.getMessage() : responseData,
+                    status == null ? HttpStatus.INTERNAL_SERVER_ERROR : status);
+        } catch (UpstreamUnavailableException e) {
+            plmCallFailures.increment();
+            logger.error("ERROR::RestService: okmakeGetOrPostCall() failed - " + e);
+            throw new PLMException(e.getMessage(), e.getStatusCode());
         } catch (IOException e) {
-            e.printStackTrace();
+            plmCallFailures.increment();
+            logger.error("ERROR::RestService: okmakeGetOrPostCall() failed - " + e);
             throw new PLMException(e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
         }
-        return response;
     }
+
+    /**
+     * getPLMClientStatistics - Connection pool and call statistics of the shared PLM OkHttp client
+     *
+     * @return JSONObject statistics
+     */
+    public JSONObject getPLMClientStatistics() {
+        ConnectionPool connectionPool = plmOkHttpClient.connectionPool();
+        JSONObject statistics = new JSONObject();
+        statistics.put("connections", connectionPool.connectionCount());
+        statistics.put("idleConnections", connectionPool.idleConnectionCount());
+        statistics.put("protocols", plmOkHttpClient.protocols().toString());
+        statistics.put("calls", plmCalls.sum());
+        statistics.put("http2Calls", plmHttp2Calls.sum());
+        statistics.put("callFailures", plmCallFailures.sum());
+        statistics.put("postStyleReadTimeoutMs", postStyleReadTimeoutMs);
+        statistics.put("postStyleWriteTimeoutMs", postStyleWriteTimeoutMs);
+        statistics.put("postStyleCallTimeoutMs", postStyleCallTimeoutMs);
+        return statistics;
+    }
+
     /**
      * make patch calls
      *
@@ -128,11 +353,9 @@ public class RestService {
                                 HttpHeaders headers,
                                 JSONObject requestBody) {
 
-        RestTemplate restTemplate = new RestTemplate();
-        HttpClient httpClient = HttpClientBuilder.create().build();
-        restTemplate.setRequestFactory(new HttpComponentsClientHttpRequestFactory(httpClient));
         HttpEntity<String> requestEntity = new HttpEntity<>(requestBody.toString(), headers);
-        ResponseEntity<String> response = restTemplate.exchange(url, HttpMethod.PATCH, requestEntity, String.class);
+        ResponseEntity<String> response = upstreamBulkheads.call(url, UpstreamBulkheads.Operation.WRITE,
+                () -> restTemplate.exchange(url, HttpMethod.PATCH, requestEntity, String.class));
         return response.getBody();
     }
 }
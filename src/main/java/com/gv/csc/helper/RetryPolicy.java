@@ -0,0 +1,300 @@
+package com.gv.csc.helper;
+
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientResponseException;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+
+/**
+ * RetryPolicy - Retries idempotent upstream calls that failed transiently
+ *
+ * Connection failures and the statuses in csc.retry.statuses (502, 503, 504 and 429 by default) are retried after an
+ * exponential backoff with full jitter, or after the Retry-After the upstream asked for when that is longer. Retries
+ * of each host are limited by a budget: within a window at most min-retries plus ratio times the calls made are
+ * retried, so while an upstream is down retries cannot multiply the load on it. Only callers that know their call is
+ * idempotent may use the policy.
+ */
+public class RetryPolicy {
+
+    /**
+     * One attempt of a call
+     */
+    @FunctionalInterface
+    public interface Attempt<T, E extends Exception> {
+        T call() throws E;
+    }
+
+    @Value("${csc.retry.enabled:true}")
+    private boolean enabled;
+
+    @Value("${csc.retry.max-retries:2}")
+    private int maxRetries;
+
+    @Value("${csc.retry.base-delay-ms:200}")
+    private long baseDelayMs;
+
+    @Value("${csc.retry.max-delay-ms:5000}")
+    private long maxDelayMs;
+
+    @Value("${csc.retry.max-retry-after-ms:30000}")
+    private long maxRetryAfterMs;
+
+    @Value("${csc.retry.statuses:429,502,503,504}")
+    private int[] retryableStatuses;
+
+    @Value("${csc.retry.budget.ratio:0.1}")
+    private double budgetRatio;
+
+    @Value("${csc.retry.budget.min-retries:10}")
+    private int budgetMinRetries;
+
+    @Value("${csc.retry.budget.window-ms:10000}")
+    private long budgetWindowMs;
+
+    private final Map<String, RetryBudget> budgets = new ConcurrentHashMap<>();
+
+    Logger logger = LoggerFactory.getLogger(RetryPolicy.class);
+
+    /**
+     * execute - Runs an idempotent call, retrying transient failures with the default number of retries
+     *
+     * @param url String url of the call, its host selects the retry budget
+     * @param call Attempt call, run once per attempt
+     * @return T result
+     * @throws E the exception of the last attempt
+     */
+    public <T, E extends Exception> T execute(String url, Attempt<T, E> call) throws E {
+        return execute(url, maxRetries, () -> true, call);
+    }
+
+    /**
+     * execute - Runs a call, retrying transient failures while it can be repeated
+     *
+     * @param url String url of the call, its host selects the retry budget
+     * @param retries int retries at most
+     * @param repeatable BooleanSupplier checked before each retry, e.g. whether the request body can be read again
+     * @param call Attempt call, run once per attempt
+     * @return T result
+     * @throws E the exception of the last attempt
+     */
+    public <T, E extends Exception> T execute(String url, int retries, BooleanSupplier repeatable, Attempt<T, E> call) throws E {
+        if (!enabled) {
+            return call.call();
+        }
+        RetryBudget budget = budget(url);
+        budget.called();
+        for (int attempt = 0; ; attempt++) {
+            try {
+                return call.call();
+            } catch (Exception exc) {
+                if (!repeatable.getAsBoolean()) {
+                    throw exc;
+                }
+                long delayMs = retryDelay(budget, url, attempt, retries, exc);
+                if (delayMs < 0) {
+                    throw exc;
+                }
+                try {
+                    Thread.sleep(delayMs);
+                } catch (InterruptedException interruptedExc) {
+                    Thread.currentThread().interrupt();
+                    throw exc;
+                }
+            }
+        }
+    }
+
+    /**
+     * executeAsync - Resubscribes an idempotent reactive call on transient failures, the backoff does not hold a
+     * thread
+     *
+     * @param url String url of the call, its host selects the retry budget
+     * @param call Mono call, each subscription makes a new attempt
+     * @return Mono result, fails with the error of the last attempt
+     */
+    public <T> Mono<T> executeAsync(String url, Mono<T> call) {
+        if (!enabled) {
+            return call;
+        }
+        RetryBudget budget = budget(url);
+        return Mono.defer(() -> {
+            budget.called();
+            return call.retryWhen(Retry.from(signals -> signals.concatMap(signal -> {
+                long delayMs = retryDelay(budget, url, (int) signal.totalRetries(), maxRetries, signal.failure());
+                return delayMs < 0 ? Mono.error(signal.failure()) : Mono.delay(Duration.ofMillis(delayMs));
+            })));
+        });
+    }
+
+    /**
+     * getStatistics - Calls, retries performed and retries suppressed per host
+     *
+     * @return JSONObject statistics
+     */
+    public JSONObject getStatistics() {
+        JSONObject statistics = new JSONObject();
+        statistics.put("enabled", enabled);
+        statistics.put("maxRetries", maxRetries);
+        JSONObject hosts = new JSONObject();
+        for (Map.Entry<String, RetryBudget> entry : new TreeMap<>(budgets).entrySet()) {
+            RetryBudget budget = entry.getValue();
+            JSONObject host = new JSONObject();
+            host.put("calls", budget.calls.sum());
+            host.put("retries", budget.retries.sum());
+            host.put("suppressedByBudget", budget.suppressedByBudget.sum());
+            host.put("suppressedByRetryAfter", budget.suppressedByRetryAfter.sum());
+            host.put("exhausted", budget.exhausted.sum());
+            hosts.put(entry.getKey(), host);
+        }
+        statistics.put("hosts", hosts);
+        return statistics;
+    }
+
+    /**
+     * clear - Resets the statistics and budgets
+     */
+    public void clear() {
+        budgets.clear();
+    }
+
+    /**
+     * retryDelay - Whether and when a failed attempt is retried
+     *
+     * @return long delay in ms, -1 when the failure is final
+     */
+    private long retryDelay(RetryBudget budget, String url, int attempt, int retries, Throwable exc) {
+        if (!isRetryable(exc)) {
+            return -1;
+        }
+        if (attempt >= retries) {
+            budget.exhausted.increment();
+            return -1;
+        }
+        long retryAfterMs = retryAfterMs(exc);
+        if (retryAfterMs > maxRetryAfterMs) {
+            budget.suppressedByRetryAfter.increment();
+            logger.warn("WARN::RetryPolicy: retryDelay() not retrying " + url + ", upstream asked to wait " + retryAfterMs + " ms");
+            return -1;
+        }
+        if (!budget.tryRetry()) {
+            budget.suppressedByBudget.increment();
+            logger.warn("WARN::RetryPolicy: retryDelay() retry budget spent, not retrying " + url + " - " + exc.getMessage());
+            return -1;
+        }
+        // Full jitter: anywhere between 0 and the exponential delay, so retrying callers spread out
+        long ceilingMs = Math.min(maxDelayMs, baseDelayMs << Math.min(attempt, 20));
+        long delayMs = Math.max(retryAfterMs, ThreadLocalRandom.current().nextLong(ceilingMs + 1));
+        logger.warn("WARN::RetryPolicy: retryDelay() attempt " + (attempt + 1) + " of " + url + " failed, retrying in "
+                + delayMs + " ms - " + exc.getMessage());
+        return delayMs;
+    }
+
+    private boolean isRetryable(Throwable exc) {
+        if (exc instanceof ResourceAccessException) {
+            return true;
+        }
+        if (exc instanceof RestClientResponseException) {
+            int status = ((RestClientResponseException) exc).getRawStatusCode();
+            for (int retryableStatus : retryableStatuses) {
+                if (status == retryableStatus) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * retryAfterMs - Delay asked for in a Retry-After header, in seconds or as an HTTP date
+     *
+     * @return long ms, 0 when there is none
+     */
+    private static long retryAfterMs(Throwable exc) {
+        if (!(exc instanceof RestClientResponseException)) {
+            return 0;
+        }
+        HttpHeaders headers = ((RestClientResponseException) exc).getResponseHeaders();
+        String retryAfter = headers == null ? null : headers.getFirst(HttpHeaders.RETRY_AFTER);
+        if (retryAfter == null) {
+            return 0;
+        }
+        try {
+            return Math.max(0, Long.parseLong(retryAfter.trim()) * 1000);
+        } catch (NumberFormatException notSeconds) {
+            try {
+                return Math.max(0, headers.getFirstDate(HttpHeaders.RETRY_AFTER) - System.currentTimeMillis());
+            } catch (IllegalArgumentException notDate) {
+                return 0;
+            }
+        }
+    }
+
+    private RetryBudget budget(String url) {
+        return budgets.computeIfAbsent(UpstreamBulkheads.hostOf(url), host -> new RetryBudget());
+    }
+
+    /**
+     * RetryBudget - Calls and retries of a host in the current window
+     */
+    private final class RetryBudget {
+        private final ReentrantLock lock = new ReentrantLock();
+        private long windowStart = System.currentTimeMillis();
+        private long windowCalls;
+        private long windowRetries;
+
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder retries = new LongAdder();
+        private final LongAdder suppressedByBudget = new LongAdder();
+        private final LongAdder suppressedByRetryAfter = new LongAdder();
+        private final LongAdder exhausted = new LongAdder();
+
+        private void called() {
+            calls.increment();
+            lock.lock();
+            try {
+                rollWindow();
+                windowCalls++;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private boolean tryRetry() {
+            lock.lock();
+            try {
+                rollWindow();
+                if (windowRetries >= budgetMinRetries + budgetRatio * windowCalls) {
+                    return false;
+                }
+                windowRetries++;
+            } finally {
+                lock.unlock();
+            }
+            retries.increment();
+            return true;
+        }
+
+        private void rollWindow() {
+            long now = System.currentTimeMillis();
+            if (now - windowStart >= budgetWindowMs) {
+                windowStart = now;
+                windowCalls = 0;
+                windowRetries = 0;
+            }
+        }
+    }
+}
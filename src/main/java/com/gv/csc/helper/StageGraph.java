@@ -0,0 +1,248 @@
+package com.gv.csc.helper;
+
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * StageGraph - Runs the stages of a pipeline as a dependency graph
+ *
+ * Each stage starts as soon as the stages it depends on completed, so independent stages overlap and the pipeline
+ * takes as long as its critical path rather than the sum of its stages. Start and duration of every stage are
+ * recorded. Stages are declared on one thread, dependencies first; they run through the StageRunner.
+ */
+public class StageGraph {
+
+    /**
+     * Starts the work of a stage asynchronously, e.g. AssetTransferHelper::supplyStageAsync
+     */
+    @FunctionalInterface
+    public interface StageRunner {
+        <T> CompletableFuture<T> supplyAsync(String stageName, Callable<T> work);
+    }
+
+    private final String name;
+    private final StageRunner runner;
+    private final PublishProgressListener progressListener;
+    private final long startNanos = System.nanoTime();
+    private final Map<String, Stage<?>> stages = new LinkedHashMap<>();
+    // Serializes the listener calls of concurrent stages; a lock rather than synchronized, listeners may do I/O
+    private final ReentrantLock listenerLock = new ReentrantLock();
+
+    /**
+     * @param name String name of the pipeline run, used in stage names
+     * @param runner StageRunner runner
+     * @param progressListener PublishProgressListener notified as stages start, never from two stages at once
+     */
+    public StageGraph(String name, StageRunner runner, PublishProgressListener progressListener) {
+        this.name = name;
+        this.runner = runner;
+        this.progressListener = progressListener;
+    }
+
+    /**
+     * stage - Declares a stage that runs once all its dependencies completed
+     *
+     * @param stageName String stageName
+     * @param work Callable work, may read the results of its dependencies with Stage.get()
+     * @param dependencies Stage dependencies, null entries are ignored
+     * @return Stage
+     */
+    public <T> Stage<T> stage(String stageName, Callable<T> work, Stage<?>... dependencies) {
+        List<Stage<?>> stageDependencies = new ArrayList<>();
+        List<CompletableFuture<?>> dependencyFutures = new ArrayList<>();
+        for (Stage<?> dependency : dependencies) {
+            if (dependency != null) {
+                stageDependencies.add(dependency);
+                dependencyFutures.add(dependency.future);
+            }
+        }
+        Stage<T> stage = new Stage<>(stageName, stageDependencies);
+        CompletableFuture<T> result = new CompletableFuture<>();
+        stage.future = result;
+        add(stage);
+        CompletableFuture.allOf(dependencyFutures.toArray(new CompletableFuture[0])).whenComplete((ready, dependencyExc) -> {
+            if (dependencyExc != null) {
+                result.completeExceptionally(dependencyExc);
+                return;
+            }
+            CompletableFuture<T> running = runner.supplyAsync(name + " " + stageName, () -> {
+                stage.started();
+                try {
+                    return work.call();
+                } finally {
+                    stage.finished();
+                }
+            });
+            running.whenComplete((value, exc) -> {
+                if (exc != null) {
+                    result.completeExceptionally(exc);
+                } else {
+                    result.complete(value);
+                }
+            });
+            // Cancelling the stage interrupts its work
+            result.whenComplete((value, exc) -> {
+                if (exc != null) {
+                    running.cancel(true);
+                }
+            });
+        });
+        return stage;
+    }
+
+    /**
+     * stage - Declares a stage for work that was already started, it counts as started now
+     *
+     * @param stageName String stageName
+     * @param running CompletableFuture running
+     * @return Stage
+     */
+    public <T> Stage<T> stage(String stageName, CompletableFuture<T> running) {
+        Stage<T> stage = new Stage<>(stageName, Collections.emptyList());
+        stage.started();
+        stage.future = running.whenComplete((result, exc) -> stage.finished());
+        stage.future.whenComplete((result, exc) -> {
+            if (exc != null) {
+                running.cancel(true);
+            }
+        });
+        add(stage);
+        return stage;
+    }
+
+    /**
+     * getFutures - Futures of all stages, in declaration order
+     *
+     * @return List of futures
+     */
+    public List<CompletableFuture<?>> getFutures() {
+        List<CompletableFuture<?>> futures = new ArrayList<>();
+        for (Stage<?> stage : stages.values()) {
+            futures.add(stage.future);
+        }
+        return futures;
+    }
+
+    /**
+     * getStages - All stages, in declaration order
+     *
+     * @return List of stages
+     */
+    public List<Stage<?>> getStages() {
+        return new ArrayList<>(stages.values());
+    }
+
+    /**
+     * getCriticalPath - Stages that determined the total time: from the stage finishing last, back through the
+     * dependency each stage waited for longest
+     *
+     * @return List of stage names, first stage first
+     */
+    public List<String> getCriticalPath() {
+        Stage<?> last = null;
+        for (Stage<?> stage : stages.values()) {
+            if (stage.isFinished() && (last == null || stage.endNanos > last.endNanos)) {
+                last = stage;
+            }
+        }
+        List<String> criticalPath = new ArrayList<>();
+        while (last != null) {
+            criticalPath.add(0, last.name);
+            Stage<?> latestDependency = null;
+            for (Stage<?> dependency : last.dependencies) {
+                if (dependency.isFinished() && (latestDependency == null || dependency.endNanos > latestDependency.endNanos)) {
+                    latestDependency = dependency;
+                }
+            }
+            last = latestDependency;
+        }
+        return criticalPath;
+    }
+
+    /**
+     * getTimings - Start (relative to the graph) and duration of every stage that ran
+     *
+     * @return JSONObject stage name to {startMs, durationMs}
+     */
+    public JSONObject getTimings() {
+        JSONObject timings = new JSONObject();
+        for (Stage<?> stage : stages.values()) {
+            if (stage.isFinished()) {
+                JSONObject timing = new JSONObject();
+                timing.put("startMs", TimeUnit.NANOSECONDS.toMillis(stage.startNanos - startNanos));
+                timing.put("durationMs", stage.getDurationMillis());
+                timings.put(stage.name, timing);
+            }
+        }
+        return timings;
+    }
+
+    private void add(Stage<?> stage) {
+        if (stages.putIfAbsent(stage.name, stage) != null) {
+            throw new IllegalArgumentException("Stage " + stage.name + " is declared twice");
+        }
+    }
+
+    /**
+     * Stage - One stage of the graph and its result
+     */
+    public final class Stage<T> {
+        private final String name;
+        private final List<Stage<?>> dependencies;
+        private CompletableFuture<T> future;
+        private volatile long startNanos;
+        private volatile long endNanos;
+        private volatile boolean finished;
+
+        private Stage(String name, List<Stage<?>> dependencies) {
+            this.name = name;
+            this.dependencies = dependencies;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * get - Result of the stage. Blocks until it is available, so only call it once the stage completed, e.g. in
+         * a stage depending on it
+         *
+         * @return T result
+         */
+        public T get() {
+            return future.join();
+        }
+
+        public boolean isFinished() {
+            return finished;
+        }
+
+        public long getDurationMillis() {
+            return isFinished() ? TimeUnit.NANOSECONDS.toMillis(endNanos - startNanos) : -1;
+        }
+
+        private void started() {
+            startNanos = System.nanoTime();
+            listenerLock.lock();
+            try {
+                progressListener.onStage(name);
+            } finally {
+                listenerLock.unlock();
+            }
+        }
+
+        private void finished() {
+            endNanos = System.nanoTime();
+            finished = true;
+        }
+    }
+}
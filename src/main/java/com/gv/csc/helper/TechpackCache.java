@@ -0,0 +1,427 @@
+package com.gv.csc.helper;
+
+import com.gv.csc.exceptions.CLOSETException;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+
+import javax.annotation.PostConstruct;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * TechpackCache - Cache of CLO-SET techpack documents, keyed by style id and version
+ *
+ * A saved style version never changes, so its techpack is downloaded once and kept gzip-compressed in memory,
+ * bounded by bytes. Entries pushed out of memory can spill to disk. Concurrent requests for the same techpack
+ * share one download. A cached techpack is only served to callers whose credentials already downloaded it,
+ * so the cache never grants access CLO-SET would refuse. Version 0 (latest) is never cached.
+ */
+public class TechpackCache {
+
+    Logger logger = LoggerFactory.getLogger(TechpackCache.class);
+
+    @Value("${csc.closet.techpack-cache.max-bytes:67108864}")
+    private long maxBytes;
+
+    @Value("${csc.closet.techpack-cache.spill-dir:}")
+    private String spillDir;
+
+    @Value("${csc.closet.techpack-cache.spill-max-bytes:536870912}")
+    private long spillMaxBytes;
+
+    // Access ordered, the eldest entry is the least recently used one. Guarded by itself, as is spilled
+    private final LinkedHashMap<TechpackKey, CachedTechpack> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<TechpackKey, CachedTechpack> spilled = new LinkedHashMap<>(16, 0.75f, true);
+    private long usedBytes;
+    private long spilledBytes;
+
+    private final ConcurrentHashMap<LoadKey, CompletableFuture<byte[]>> loads = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder diskHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder bypasses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Loads a techpack document from CLO-SET
+     */
+    @FunctionalInterface
+    public interface TechpackLoader {
+        String load() throws CLOSETException;
+    }
+
+    @PostConstruct
+    public void init() {
+        File directory = getSpillDirectory();
+        if (directory != null) {
+            // Spilled entries are only valid for the identities recorded in memory, start clean
+            try {
+                FileUtils.deleteDirectory(directory);
+                Files.createDirectories(directory.toPath());
+            } catch (IOException exc) {
+                logger.warn("WARN::TechpackCache: init() spill directory disabled - " + exc.getMessage());
+                spillDir = "";
+            }
+        }
+    }
+
+    /**
+     * identityOf - Identity a cached techpack is bound to, derived from the caller's CLO-SET credentials
+     *
+     * @param authToken String authToken
+     * @param email String email
+     * @return String identity
+     */
+    public static String identityOf(String authToken, String email) {
+        return DigestUtils.sha256Hex(String.valueOf(authToken) + '\n' + String.valueOf(email));
+    }
+
+    /**
+     * getTechSpec - Returns the techpack of a style version, downloading it with the loader when it is not cached
+     * for this identity
+     *
+     * @param styleId String styleId
+     * @param version int version, 0 (latest) is never cached
+     * @param identity String identity of the caller, see identityOf
+     * @param loader TechpackLoader loader
+     * @return JSONObject techpack, a new instance on every call
+     * @throws CLOSETException exception from the loader
+     */
+    public JSONObject getTechSpec(String styleId, int version, String identity, TechpackLoader loader) throws CLOSETException {
+        if (version <= 0) {
+            bypasses.increment();
+            return new JSONObject(loader.load());
+        }
+
+        TechpackKey key = new TechpackKey(styleId, version);
+        byte[] compressed = lookup(key, identity);
+        if (compressed != null) {
+            return new JSONObject(decompress(compressed));
+        }
+
+        LoadKey loadKey = new LoadKey(key, identity);
+        CompletableFuture<byte[]> loading = new CompletableFuture<>();
+        CompletableFuture<byte[]> existing = loads.putIfAbsent(loadKey, loading);
+        if (existing != null) {
+            return new JSONObject(decompress(await(existing)));
+        }
+
+        misses.increment();
+        try {
+            String techpack = loader.load();
+            JSONObject techpackJson = new JSONObject(techpack);
+            compressed = compress(techpack);
+            store(key, identity, compressed);
+            loading.complete(compressed);
+            return techpackJson;
+        } catch (CLOSETException | RuntimeException exc) {
+            loading.completeExceptionally(exc);
+            throw exc;
+        } finally {
+            loads.remove(loadKey, loading);
+        }
+    }
+
+    /**
+     * clear - Removes every cached techpack
+     */
+    public void clear() {
+        List<CachedTechpack> removed;
+        synchronized (entries) {
+            entries.clear();
+            usedBytes = 0;
+            removed = new ArrayList<>(spilled.values());
+            spilled.clear();
+            spilledBytes = 0;
+        }
+        for (CachedTechpack techpack : removed) {
+            deleteSpillFile(techpack);
+        }
+    }
+
+    /**
+     * getStatistics - Cache statistics
+     *
+     * @return JSONObject with entries, bytes, hits, misses and evictions
+     */
+    public JSONObject getStatistics() {
+        JSONObject statistics = new JSONObject();
+        synchronized (entries) {
+            statistics.put("entries", entries.size());
+            statistics.put("bytes", usedBytes);
+            statistics.put("spilledEntries", spilled.size());
+            statistics.put("spilledBytes", spilledBytes);
+        }
+        statistics.put("maxBytes", maxBytes);
+        statistics.put("spillEnabled", getSpillDirectory() != null);
+        statistics.put("hits", hits.sum());
+        statistics.put("diskHits", diskHits.sum());
+        statistics.put("misses", misses.sum());
+        statistics.put("bypasses", bypasses.sum());
+        statistics.put("evictions", evictions.sum());
+        return statistics;
+    }
+
+    private byte[] lookup(TechpackKey key, String identity) {
+        CachedTechpack spilledTechpack;
+        synchronized (entries) {
+            CachedTechpack techpack = entries.get(key);
+            if (techpack != null) {
+                if (!techpack.identities.contains(identity)) {
+                    return null;
+                }
+                hits.increment();
+                return techpack.compressed;
+            }
+            spilledTechpack = spilled.get(key);
+            if (spilledTechpack == null || !spilledTechpack.identities.contains(identity)) {
+                return null;
+            }
+        }
+
+        try {
+            byte[] compressed = Files.readAllBytes(spilledTechpack.spillFile.toPath());
+            diskHits.increment();
+            // Bring it back to memory; the disk copy goes when the memory entry is stored
+            CachedTechpack techpack = new CachedTechpack(compressed);
+            techpack.identities.addAll(spilledTechpack.identities);
+            put(key, techpack);
+            return compressed;
+        } catch (IOException exc) {
+            logger.warn("WARN::TechpackCache: lookup() unreadable spill file " + spilledTechpack.spillFile + " - " + exc.getMessage());
+            synchronized (entries) {
+                if (spilled.remove(key, spilledTechpack)) {
+                    spilledBytes -= spilledTechpack.size;
+                }
+            }
+            return null;
+        }
+    }
+
+    private void store(TechpackKey key, String identity, byte[] compressed) {
+        synchronized (entries) {
+            CachedTechpack techpack = entries.get(key);
+            if (techpack != null) {
+                techpack.identities.add(identity);
+                return;
+            }
+        }
+        CachedTechpack techpack = new CachedTechpack(compressed);
+        techpack.identities.add(identity);
+        put(key, techpack);
+    }
+
+    private void put(TechpackKey key, CachedTechpack techpack) {
+        if (techpack.size > maxBytes) {
+            return;
+        }
+        List<Map.Entry<TechpackKey, CachedTechpack>> evicted = new ArrayList<>();
+        CachedTechpack replacedSpill;
+        synchronized (entries) {
+            CachedTechpack previous = entries.put(key, techpack);
+            if (previous != null) {
+                usedBytes -= previous.size;
+                techpack.identities.addAll(previous.identities);
+            }
+            usedBytes += techpack.size;
+            replacedSpill = spilled.remove(key);
+            if (replacedSpill != null) {
+                spilledBytes -= replacedSpill.size;
+                techpack.identities.addAll(replacedSpill.identities);
+            }
+
+            Iterator<Map.Entry<TechpackKey, CachedTechpack>> iterator = entries.entrySet().iterator();
+            while (usedBytes > maxBytes && iterator.hasNext()) {
+                Map.Entry<TechpackKey, CachedTechpack> eldest = iterator.next();
+                iterator.remove();
+                usedBytes -= eldest.getValue().size;
+                evictions.increment();
+                evicted.add(eldest);
+            }
+        }
+        if (replacedSpill != null) {
+            deleteSpillFile(replacedSpill);
+        }
+        for (Map.Entry<TechpackKey, CachedTechpack> eldest : evicted) {
+            spill(eldest.getKey(), eldest.getValue());
+        }
+    }
+
+    /**
+     * spill - Writes an entry evicted from memory to the spill directory, dropping the least recently used
+     * spilled entries to stay within the disk budget
+     */
+    private void spill(TechpackKey key, CachedTechpack techpack) {
+        File directory = getSpillDirectory();
+        if (directory == null || techpack.compressed.length > spillMaxBytes) {
+            return;
+        }
+        File spillFile = new File(directory, DigestUtils.sha256Hex(key.styleId + '_' + key.version) + ".json.gz");
+        try {
+            File tempFile = File.createTempFile("techpack", ".tmp", directory);
+            Files.write(tempFile.toPath(), techpack.compressed);
+            Files.move(tempFile.toPath(), spillFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException exc) {
+            logger.warn("WARN::TechpackCache: spill() " + key.styleId + " - " + exc.getMessage());
+            return;
+        }
+
+        CachedTechpack spilledTechpack = new CachedTechpack(null, spillFile, techpack.size);
+        spilledTechpack.identities.addAll(techpack.identities);
+        List<CachedTechpack> dropped = new ArrayList<>();
+        synchronized (entries) {
+            CachedTechpack previous = spilled.put(key, spilledTechpack);
+            if (previous != null) {
+                spilledBytes -= previous.size;
+            }
+            spilledBytes += spilledTechpack.size;
+            Iterator<Map.Entry<TechpackKey, CachedTechpack>> iterator = spilled.entrySet().iterator();
+            while (spilledBytes > spillMaxBytes && iterator.hasNext()) {
+                Map.Entry<TechpackKey, CachedTechpack> eldest = iterator.next();
+                iterator.remove();
+                spilledBytes -= eldest.getValue().size;
+                dropped.add(eldest.getValue());
+            }
+        }
+        for (CachedTechpack droppedTechpack : dropped) {
+            deleteSpillFile(droppedTechpack);
+        }
+    }
+
+    private void deleteSpillFile(CachedTechpack techpack) {
+        if (techpack.spillFile != null && !techpack.spillFile.delete() && techpack.spillFile.exists()) {
+            logger.warn("WARN::TechpackCache: deleteSpillFile() could not delete " + techpack.spillFile);
+        }
+    }
+
+    private File getSpillDirectory() {
+        return spillDir == null || spillDir.trim().isEmpty() ? null : new File(spillDir.trim());
+    }
+
+    private byte[] await(CompletableFuture<byte[]> future) throws CLOSETException {
+        try {
+            return future.join();
+        } catch (CompletionException exc) {
+            if (exc.getCause() instanceof CLOSETException) {
+                throw (CLOSETException) exc.getCause();
+            }
+            if (exc.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) exc.getCause();
+            }
+            throw exc;
+        }
+    }
+
+    private static byte[] compress(String techpack) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(Math.max(512, techpack.length() / 8));
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+            gzip.write(techpack.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException exc) {
+            throw new IllegalStateException(exc);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static String decompress(byte[] compressed) {
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            return IOUtils.toString(gzip, StandardCharsets.UTF_8);
+        } catch (IOException exc) {
+            throw new IllegalStateException(exc);
+        }
+    }
+
+    private static final class CachedTechpack {
+        private final byte[] compressed;
+        private final File spillFile;
+        private final long size;
+        private final Set<String> identities = ConcurrentHashMap.newKeySet();
+
+        CachedTechpack(byte[] compressed) {
+            this(compressed, null, compressed.length);
+        }
+
+        CachedTechpack(byte[] compressed, File spillFile, long size) {
+            this.compressed = compressed;
+            this.spillFile = spillFile;
+            this.size = size;
+        }
+    }
+
+    private static final class TechpackKey {
+        private final String styleId;
+        private final int version;
+
+        TechpackKey(String styleId, int version) {
+            this.styleId = styleId;
+            this.version = version;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof TechpackKey)) {
+                return false;
+            }
+            TechpackKey other = (TechpackKey) o;
+            return version == other.version && Objects.equals(styleId, other.styleId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(styleId, version);
+        }
+    }
+
+    private static final class LoadKey {
+        private final TechpackKey techpackKey;
+        private final String identity;
+
+        LoadKey(TechpackKey techpackKey, String identity) {
+            this.techpackKey = techpackKey;
+            this.identity = identity;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof LoadKey)) {
+                return false;
+            }
+            LoadKey other = (LoadKey) o;
+            return techpackKey.equals(other.techpackKey) && Objects.equals(identity, other.identity);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(techpackKey, identity);
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package com.gv.csc.helper;
+
+import com.gv.csc.exceptions.UpstreamUnavailableException;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.client.RestClientResponseException;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * UpstreamBulkheads - One AdaptiveBulkhead per upstream host and operation, so a burst against one PLM instance or
+ * one kind of call cannot take the connections and threads the others need. Calls pass the CircuitBreakers first, an
+ * upstream that is down is not waited for.
+ *
+ * Limits are configured per operation as csc.bulkhead.&lt;operation&gt;.{adaptive, initial-limit, min-limit,
+ * max-limit}. Transfers (upload, download) keep a fixed limit, their latency follows the asset size rather than the
+ * load of the upstream.
+ */
+public class UpstreamBulkheads {
+
+    /**
+     * Operation classes, each host gets a bulkhead per class
+     */
+    public enum Operation {
+        SEARCH("search", true, 16, 4, 64),
+        READ("read", true, 16, 4, 64),
+        UPLOAD("upload", false, 16, 16, 16),
+        DOWNLOAD("download", false, 32, 32, 32),
+        WRITE("write", true, 8, 2, 32),
+        POST_STYLE("postStyle", true, 4, 1, 16);
+
+        private final String key;
+        private final boolean adaptive;
+        private final int initialLimit;
+        private final int minLimit;
+        private final int maxLimit;
+
+        Operation(String key, boolean adaptive, int initialLimit, int minLimit, int maxLimit) {
+            this.key = key;
+            this.adaptive = adaptive;
+            this.initialLimit = initialLimit;
+            this.minLimit = minLimit;
+            this.maxLimit = maxLimit;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        /**
+         * forMethod - Class of a call nobody classified: GET and HEAD read, every other method writes
+         *
+         * @param method HttpMethod method
+         * @return Operation READ or WRITE
+         */
+        public static Operation forMethod(HttpMethod method) {
+            return method == HttpMethod.GET || method == HttpMethod.HEAD ? READ : WRITE;
+        }
+    }
+
+    /**
+     * A blocking upstream call
+     */
+    @FunctionalInterface
+    public interface UpstreamCall<T, E extends Exception> {
+        T call() throws E;
+    }
+
+    @Autowired
+    private Environment environment;
+
+    @Autowired
+    private CircuitBreakers circuitBreakers;
+
+    @Value("${csc.bulkhead.enabled:true}")
+    private boolean enabled;
+
+    @Value("${csc.bulkhead.max-wait-ms:10000}")
+    private long maxWaitMs;
+
+    @Value("${csc.bulkhead.max-queue:200}")
+    private int maxQueue;
+
+    private final Map<String, AdaptiveBulkhead> bulkheads = new ConcurrentHashMap<>();
+
+    Logger logger = LoggerFactory.getLogger(UpstreamBulkheads.class);
+
+    /**
+     * call - Runs a blocking upstream call through the circuit breaker of its upstream and within the bulkhead of its
+     * host and operation
+     *
+     * @param url String url of the call
+     * @param operation Operation operation
+     * @param call UpstreamCall call
+     * @return T result
+     * @throws E the exception of the call
+     * @throws UpstreamUnavailableException when the breaker is open or no permit was available within max-wait-ms
+     */
+    public <T, E extends Exception> T call(String url, Operation operation, UpstreamCall<T, E> call) throws E {
+        return circuitBreakers.call(url, () -> callInBulkhead(url, operation, call));
+    }
+
+    /**
+     * callAsync - Runs a reactive upstream call through the circuit breaker of its upstream and within the bulkhead of
+     * its host and operation. Waiting for the permit does not block a thread.
+     *
+     * @param url String url of the call
+     * @param operation Operation operation
+     * @param call Mono call, subscribed once a permit was granted
+     * @return Mono result, fails with UpstreamUnavailableException when the breaker is open or no permit was available
+     * within max-wait-ms
+     */
+    public <T> Mono<T> callAsync(String url, Operation operation, Mono<T> call) {
+        return circuitBreakers.callAsync(url, callInBulkheadAsync(url, operation, call));
+    }
+
+    private <T, E extends Exception> T callInBulkhead(String url, Operation operation, UpstreamCall<T, E> call) throws E {
+        if (!enabled) {
+            return call.call();
+        }
+        AdaptiveBulkhead.Permit permit = bulkhead(url, operation).acquire(maxWaitMs);
+        boolean success = false;
+        try {
+            T result = call.call();
+            success = true;
+            return result;
+        } catch (Exception exc) {
+            success = isUpstreamHealthy(exc);
+            throw exc;
+        } finally {
+            permit.release(success);
+        }
+    }
+
+    private <T> Mono<T> callInBulkheadAsync(String url, Operation operation, Mono<T> call) {
+        if (!enabled) {
+            return call;
+        }
+        AdaptiveBulkhead bulkhead = bulkhead(url, operation);
+        return Mono.defer(() -> {
+            long startNanos = System.nanoTime();
+            CompletableFuture<AdaptiveBulkhead.Permit> waiter = bulkhead.acquireAsync();
+            return Mono.fromFuture(waiter)
+                    .doOnCancel(() -> bulkhead.abandon(waiter))
+                    .timeout(Duration.ofMillis(maxWaitMs))
+                    .onErrorMap(TimeoutException.class, exc -> bulkhead.reject("no permit within " + maxWaitMs + " ms"))
+                    .flatMap(permit -> {
+                        bulkhead.recordWait(System.nanoTime() - startNanos);
+                        return call.doOnSuccess(result -> permit.release(true))
+                                .doOnError(exc -> permit.release(isUpstreamHealthy(exc)))
+                                // Cancelled by a caller's timeout, the upstream was too slow
+                                .doOnCancel(() -> permit.release(false));
+                    });
+        });
+    }
+
+    /**
+     * getStatistics - Statistics of every bulkhead
+     *
+     * @return JSONObject host and operation to bulkhead statistics
+     */
+    public JSONObject getStatistics() {
+        JSONObject statistics = new JSONObject();
+        statistics.put("enabled", enabled);
+        statistics.put("maxWaitMs", maxWaitMs);
+        statistics.put("maxQueue", maxQueue);
+        JSONObject bulkheadStatistics = new JSONObject();
+        for (Map.Entry<String, AdaptiveBulkhead> entry : new TreeMap<>(bulkheads).entrySet()) {
+            bulkheadStatistics.put(entry.getKey(), entry.getValue().getStatistics());
+        }
+        statistics.put("bulkheads", bulkheadStatistics);
+        return statistics;
+    }
+
+    private AdaptiveBulkhead bulkhead(String url, Operation operation) {
+        String name = hostOf(url) + " " + operation.key;
+        return bulkheads.computeIfAbsent(name, bulkheadName -> {
+            String prefix = "csc.bulkhead." + operation.key + ".";
+            AdaptiveBulkhead bulkhead = new AdaptiveBulkhead(bulkheadName,
+                    environment.getProperty(prefix + "adaptive", Boolean.class, operation.adaptive),
+                    environment.getProperty(prefix + "initial-limit", Integer.class, operation.initialLimit),
+                    environment.getProperty(prefix + "min-limit", Integer.class, operation.minLimit),
+                    environment.getProperty(prefix + "max-limit", Integer.class, operation.maxLimit),
+                    maxQueue);
+            logger.info("INFO::UpstreamBulkheads: bulkhead() created " + bulkheadName + " - " + bulkhead.getStatistics());
+            return bulkhead;
+        });
+    }
+
+    /**
+     * isUpstreamHealthy - A 4xx answer is a fast, regular response; errors, 5xx and timeouts lower the limit
+     */
+    private static boolean isUpstreamHealthy(Throwable exc) {
+        return exc instanceof RestClientResponseException && ((RestClientResponseException) exc).getRawStatusCode() < 500;
+    }
+
+    /**
+     * hostOf - Host and port of a url. Parsed by hand, urls with unencoded query values are not valid URIs.
+     */
+    static String hostOf(String url) {
+        int start = url.indexOf("://");
+        start = start < 0 ? 0 : start + 3;
+        int end = start;
+        while (end < url.length() && "/?#".indexOf(url.charAt(end)) < 0) {
+            end++;
+        }
+        String authority = url.substring(start, end);
+        int userInfo = authority.lastIndexOf('@');
+        return (userInfo < 0 ? authority : authority.substring(userInfo + 1)).toLowerCase();
+    }
+}
@@ -0,0 +1,165 @@
+package com.gv.csc.service;
+
+import com.gv.csc.dao.UploadedAttachmentDAO;
+import com.gv.csc.entity.UploadedAttachment;
+import com.gv.csc.util.MappedBlobResource;
+import com.gv.csc.util.PLMConstants;
+import com.gv.csc.util.StreamedAssetResource;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AttachmentDedupService - Remembers the PLM location of every uploaded attachment by content hash (SHA-256) and
+ * PLM instance, so a republish reuses the location of unchanged files instead of uploading them again
+ *
+ * Streamed CLO-SET assets are hashed while they stream. When they belong to a saved style version they are also
+ * remembered by their download URL (without query string) and that version, which lets the next publish skip them
+ * before any byte is downloaded. The assets of version 0 (latest) change between saves and are only matched by hash.
+ */
+@Service
+public class AttachmentDedupService {
+
+    @Autowired
+    private UploadedAttachmentDAO uploadedAttachmentDAO;
+
+    @Value("${csc.publish.dedup.enabled:true}")
+    private boolean enabled;
+
+    @Value("${csc.publish.dedup.max-age-days:30}")
+    private long maxAgeDays;
+
+    Logger logger = LoggerFactory.getLogger(AttachmentDedupService.class);
+
+    /**
+     * contentHash - Hash of a resource that can be read before it is uploaded (file, zip entry)
+     *
+     * @param resource Resource resource
+     * @return hex encoded SHA-256, null when disabled or the resource cannot be read ahead
+     */
+    public String contentHash(Resource resource) {
+        if (!enabled || resource.isOpen()) {
+            return null;
+        }
+        if (resource instanceof MappedBlobResource) {
+            return ((MappedBlobResource) resource).getContentHash();
+        }
+        try (InputStream content = resource.getInputStream()) {
+            return DigestUtils.sha256Hex(content);
+        } catch (IOException exc) {
+            logger.warn("WARN::AttachmentDedupService: contentHash() " + resource.getFilename() + " - " + exc.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * findUploaded - Location of an earlier upload of the same content, or for a streamed resource of the same
+     * CLO-SET asset of a saved style version
+     *
+     * @param plmUrl String plmUrl
+     * @param resource Resource resource
+     * @param contentHash String contentHash, null when unknown
+     * @param styleVersion int styleVersion the resource belongs to, 0 for latest or none
+     * @return location JSON named after the resource, null when the resource has to be uploaded
+     */
+    public JSONObject findUploaded(String plmUrl, Resource resource, String contentHash, int styleVersion) {
+        if (!enabled) {
+            return null;
+        }
+        Date createdAfter = new Date(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(maxAgeDays));
+        UploadedAttachment uploaded = null;
+        if (contentHash != null) {
+            uploaded = uploadedAttachmentDAO.findFirstByPlmUrlAndContentHashAndCreateTimeStampAfterOrderByCreateTimeStampDesc(plmUrl, contentHash, createdAfter);
+        } else {
+            String sourceKey = sourceKey(resource, styleVersion);
+            if (sourceKey != null) {
+                uploaded = uploadedAttachmentDAO.findFirstByPlmUrlAndSourceKeyAndCreateTimeStampAfterOrderByCreateTimeStampDesc(plmUrl, sourceKey, createdAfter);
+            }
+        }
+        if (uploaded == null) {
+            return null;
+        }
+
+        logger.info("INFO::AttachmentDedupService: findUploaded() reusing " + uploaded.getLocation() + " for " + resource.getFilename());
+        JSONObject location = new JSONObject(uploaded.getLocation());
+        location.put(PLMConstants.PLM_OLD_NAME_JSON_KEY, resource.getFilename());
+        return location;
+    }
+
+    /**
+     * recordUpload - Remembers the location PLM returned for an uploaded resource
+     *
+     * @param plmUrl String plmUrl
+     * @param resource Resource resource
+     * @param contentHash String contentHash, null to take it from a streamed resource
+     * @param location JSONObject location returned by the upload
+     * @param styleVersion int styleVersion the resource belongs to, 0 for latest or none
+     */
+    public void recordUpload(String plmUrl, Resource resource, String contentHash, JSONObject location, int styleVersion) {
+        if (!enabled || !isSuccess(location)) {
+            return;
+        }
+        long contentLength = -1;
+        try {
+            if (resource instanceof StreamedAssetResource) {
+                contentHash = ((StreamedAssetResource) resource).getContentHash();
+            } else {
+                contentLength = resource.contentLength();
+            }
+        } catch (IOException exc) {
+            logger.warn("WARN::AttachmentDedupService: recordUpload() " + resource.getFilename() + " - " + exc.getMessage());
+        }
+        if (contentHash == null) {
+            return;
+        }
+
+        UploadedAttachment uploaded = new UploadedAttachment();
+        uploaded.setPlmUrl(plmUrl);
+        uploaded.setContentHash(contentHash);
+        uploaded.setSourceKey(sourceKey(resource, styleVersion));
+        uploaded.setFileName(resource.getFilename());
+        uploaded.setContentLength(contentLength);
+        uploaded.setLocation(location.toString());
+        uploaded.setCreateTimeStamp(new Date());
+        uploadedAttachmentDAO.save(uploaded);
+    }
+
+    /**
+     * purgeExpiredUploads - Removes uploads older than max-age-days, their location is no longer reused
+     */
+    @Scheduled(fixedDelayString = "${csc.publish.dedup.purge-interval-ms:86400000}", initialDelayString = "${csc.publish.dedup.purge-interval-ms:86400000}")
+    public void purgeExpiredUploads() {
+        long purged = uploadedAttachmentDAO.deleteByCreateTimeStampBefore(new Date(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(maxAgeDays)));
+        if (purged > 0) {
+            logger.info("INFO::AttachmentDedupService: purgeExpiredUploads() purged - " + purged);
+        }
+    }
+
+    /**
+     * sourceKey - Identifies the CLO-SET asset of a streamed resource across publishes, null unless it belongs to a
+     * saved style version: the assets of version 0 (latest) change between saves under the same download URL
+     */
+    private static String sourceKey(Resource resource, int styleVersion) {
+        if (!(resource instanceof StreamedAssetResource) || styleVersion <= 0) {
+            return null;
+        }
+        return ((StreamedAssetResource) resource).getSourceKey() + "#" + styleVersion;
+    }
+
+    private boolean isSuccess(JSONObject location) {
+        JSONObject messagesJson = location.optJSONObject(PLMConstants.PLM_MESSAGES_JSON_KEY);
+        return messagesJson != null && PLMConstants.PLM_SUCCESS_STATUS_VALUE.equalsIgnoreCase(messagesJson.optString(PLMConstants.PLM_STATUS_JSON_KEY))
+                && location.has(PLMConstants.PLM_NEW_NAME_JSON_KEY);
+    }
+}
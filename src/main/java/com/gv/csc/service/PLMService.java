@@ -3,6 +3,7 @@ package com.gv.csc.service;
 import com.gv.csc.exceptions.CLOSETException;
 import com.gv.csc.exceptions.PLMException;
 import com.gv.csc.helper.PLMHelper;
+import com.gv.csc.helper.PublishProgressListener;
 import org.json.JSONObject;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpHeaders;
@@ -90,14 +91,16 @@ public class PLMService {
     public JSONObject getPLMResultConfig(HttpHeaders headers) throws PLMException{
         return plmHelper.prepareGetPLMResultResponse(headers);
     }
-	/** publishToPLM - Service function used to get Style from PLM and get response
-     * @param publishData MultipartHttpServletRequest multiPartRequest
+	/** publishToPLM - Service function used to publish a style to PLM and get response, reporting each stage to the listener
+     * @param publishData JSONObject publishData
      * @param httpHeaders Map<String, String> httpHeaders
+     * @param plmUrl String plmUrl
+     * @param progressListener PublishProgressListener progressListener
      * @return JSONObject
      * @throws PLMException exception
      */
-    public JSONObject publishToPLM(JSONObject publishData, Map<String, String> httpHeaders, String plmUrl) throws PLMException{
-        return plmHelper.preparePublishToPLM(publishData, httpHeaders, plmUrl);
+    public JSONObject publishToPLM(JSONObject publishData, Map<String, String> httpHeaders, String plmUrl, PublishProgressListener progressListener) throws PLMException{
+        return plmHelper.preparePublishToPLM(publishData, httpHeaders, plmUrl, progressListener);
     }
 
 	public JSONObject licenseLogout(String userId) throws PLMException {
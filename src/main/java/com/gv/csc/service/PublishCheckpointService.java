@@ -0,0 +1,135 @@
+package com.gv.csc.service;
+
+import com.gv.csc.dao.PublishCheckpointDAO;
+import com.gv.csc.entity.PublishCheckpoint;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PublishCheckpointService - Persists the results of completed publish stages, so a retry of a failed publish
+ * resumes after the last completed stage instead of transferring everything again
+ *
+ * A publish is identified by PLM instance, CLO-SET style version, external style id and user. Each checkpoint also
+ * records a fingerprint of the inputs its stage used; a checkpoint whose inputs changed is not reused. Only saved
+ * style versions are checkpointed, version 0 (latest) can change between attempts. The checkpoints of a publish are
+ * removed when it succeeds.
+ */
+@Service
+public class PublishCheckpointService {
+
+    @Autowired
+    private PublishCheckpointDAO publishCheckpointDAO;
+
+    @Value("${csc.publish.checkpoint.enabled:true}")
+    private boolean enabled;
+
+    @Value("${csc.publish.checkpoint.max-age-hours:24}")
+    private long maxAgeHours;
+
+    Logger logger = LoggerFactory.getLogger(PublishCheckpointService.class);
+
+    /**
+     * publishKey - Key of the checkpoints of a publish
+     *
+     * @param plmUrl String plmUrl
+     * @param closetStyleId String closetStyleId
+     * @param closetStyleVersion int closetStyleVersion
+     * @param externalStyleId String externalStyleId
+     * @param userId String userId
+     * @return String key, null when the publish is not checkpointed
+     */
+    public String publishKey(String plmUrl, String closetStyleId, int closetStyleVersion, String externalStyleId, String userId) {
+        if (!enabled || closetStyleVersion <= 0) {
+            return null;
+        }
+        return fingerprint(plmUrl, closetStyleId, closetStyleVersion, externalStyleId, userId);
+    }
+
+    /**
+     * fingerprint - Hash of the inputs of a stage
+     *
+     * @param inputs Object inputs
+     * @return hex encoded SHA-256
+     */
+    public String fingerprint(Object... inputs) {
+        StringBuilder joined = new StringBuilder();
+        for (Object input : inputs) {
+            joined.append(input).append('\n');
+        }
+        return DigestUtils.sha256Hex(joined.toString());
+    }
+
+    /**
+     * find - Result a previous attempt of the publish recorded for a stage
+     *
+     * @param publishKey String publishKey, null when the publish is not checkpointed
+     * @param stage String stage
+     * @param fingerprint String fingerprint of the stage inputs now
+     * @return String data, null when the stage has to run
+     */
+    public String find(String publishKey, String stage, String fingerprint) {
+        if (publishKey == null) {
+            return null;
+        }
+        PublishCheckpoint checkpoint = publishCheckpointDAO.findFirstByPublishKeyAndStageAndCreateTimeStampAfterOrderByCreateTimeStampDesc(
+                publishKey, stage, new Date(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(maxAgeHours)));
+        if (checkpoint == null || !checkpoint.getFingerprint().equals(fingerprint)) {
+            return null;
+        }
+        logger.info("INFO::PublishCheckpointService: find() resuming " + stage + " of publish " + publishKey);
+        return checkpoint.getData();
+    }
+
+    /**
+     * save - Records the result of a completed stage, replacing an earlier one
+     *
+     * @param publishKey String publishKey, null when the publish is not checkpointed
+     * @param stage String stage
+     * @param fingerprint String fingerprint of the stage inputs
+     * @param data String data
+     */
+    public void save(String publishKey, String stage, String fingerprint, String data) {
+        if (publishKey == null) {
+            return;
+        }
+        publishCheckpointDAO.deleteByPublishKeyAndStage(publishKey, stage);
+        PublishCheckpoint checkpoint = new PublishCheckpoint();
+        checkpoint.setPublishKey(publishKey);
+        checkpoint.setStage(stage);
+        checkpoint.setFingerprint(fingerprint);
+        checkpoint.setData(data);
+        checkpoint.setCreateTimeStamp(new Date());
+        publishCheckpointDAO.save(checkpoint);
+        logger.debug("DEBUG::PublishCheckpointService: save() " + stage + " of publish " + publishKey);
+    }
+
+    /**
+     * clear - Removes the checkpoints of a publish that completed
+     *
+     * @param publishKey String publishKey, null when the publish is not checkpointed
+     */
+    public void clear(String publishKey) {
+        if (publishKey != null) {
+            publishCheckpointDAO.deleteByPublishKey(publishKey);
+        }
+    }
+
+    /**
+     * purgeExpiredCheckpoints - Removes checkpoints older than max-age-hours, they are no longer resumed from
+     */
+    @Scheduled(fixedDelayString = "${csc.publish.checkpoint.purge-interval-ms:3600000}", initialDelayString = "${csc.publish.checkpoint.purge-interval-ms:3600000}")
+    public void purgeExpiredCheckpoints() {
+        long purged = publishCheckpointDAO.deleteByCreateTimeStampBefore(new Date(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(maxAgeHours)));
+        if (purged > 0) {
+            logger.info("INFO::PublishCheckpointService: purgeExpiredCheckpoints() purged - " + purged);
+        }
+    }
+}
@@ -0,0 +1,328 @@
+package com.gv.csc.service;
+
+import com.gv.csc.dao.PublishJobDAO;
+import com.gv.csc.entity.PublishJob;
+import com.gv.csc.exceptions.PLMException;
+import com.gv.csc.helper.PLMHelper;
+import com.gv.csc.util.CLOSETConstants;
+import com.gv.csc.util.PLMConstants;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PublishJobService - Runs publishes to PLM as durable jobs on a bounded worker pool
+ *
+ * Jobs are stored in H2 before they are queued, so a job accepted before a restart is picked up again when the
+ * application comes back. Progress and results are read back through the job id.
+ */
+@Service
+public class PublishJobService {
+
+    private static final List<String> ACTIVE_STATUSES = Arrays.asList(PLMConstants.PUBLISH_JOB_QUEUED, PLMConstants.PUBLISH_JOB_RUNNING);
+    private static final List<String> FINISHED_STATUSES = Arrays.asList(PLMConstants.PUBLISH_JOB_COMPLETED, PLMConstants.PUBLISH_JOB_FAILED);
+    private static final String CLOSET_USER_NAME = "closet-user-name";
+    // The only request headers a publish reads; they hold the PLM and CLO-SET credentials, so nothing else is stored
+    private static final List<String> REPLAY_HEADERS = Arrays.asList(PLMConstants.PLM_AUTH_TOKEN, CLOSETConstants.CLOSET_AUTH_TOKEN,
+            CLOSETConstants.CLO_SET_EMAIL, CLOSETConstants.PLM_USER_NAME, CLOSET_USER_NAME);
+
+    @Autowired
+    private PublishJobDAO publishJobDAO;
+
+    @Autowired
+    private PLMService plmService;
+
+    @Autowired
+    @Qualifier("publishJobExecutor")
+    private ExecutorService publishJobExecutor;
+
+    @Value("${csc.publish.jobs.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${csc.publish.jobs.retention-hours:72}")
+    private long retentionHours;
+
+    private final Map<String, CompletableFuture<PublishJob>> completions = new ConcurrentHashMap<>();
+
+    Logger logger = LoggerFactory.getLogger(PublishJobService.class);
+
+    /**
+     * submitPublish - Stores the publish as a queued job and hands it to the worker pool
+     *
+     * @param publishData JSONObject publishData
+     * @param headers Map<String, String> headers
+     * @param plmUrl String plmUrl
+     * @return PublishJob queued job
+     */
+    public PublishJob submitPublish(JSONObject publishData, Map<String, String> headers, String plmUrl) {
+        logger.info("INFO::PublishJobService: submitPublish() started.");
+        Map<String, String> jobHeaders = new HashMap<>();
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            String headerName = header.getKey().toLowerCase();
+            if (REPLAY_HEADERS.contains(headerName)) {
+                jobHeaders.put(headerName, header.getValue());
+            }
+        }
+
+        Date time = new Date();
+        PublishJob job = new PublishJob();
+        job.setJobId(UUID.randomUUID().toString());
+        job.setStatus(PLMConstants.PUBLISH_JOB_QUEUED);
+        job.setPublishData(publishData.toString());
+        job.setRequestHeaders(new JSONObject(jobHeaders).toString());
+        job.setPlmUrl(plmUrl);
+        job.setClosetUser(headerValue(headers, CLOSET_USER_NAME));
+        job.setPlmUser(headerValue(headers, CLOSETConstants.PLM_USER_NAME));
+        job.setCreateTimeStamp(time);
+        job.setModifyTimeStamp(time);
+        job = publishJobDAO.save(job);
+
+        completions.put(job.getJobId(), new CompletableFuture<>());
+        dispatch(job.getJobId());
+        logger.info("INFO::PublishJobService: submitPublish() queued job - " + job.getJobId());
+        return job;
+    }
+
+    /**
+     * getJob - Get a publish job by job id
+     *
+     * @param jobId String jobId
+     * @return PublishJob, null when unknown
+     */
+    public PublishJob getJob(String jobId) {
+        return publishJobDAO.findByJobId(jobId);
+    }
+
+    /**
+     * getJob - Get a publish job by job id, only when the caller submitted it
+     *
+     * @param jobId String jobId
+     * @param headers Map<String, String> headers of the caller
+     * @return PublishJob, null when unknown or submitted by another user
+     */
+    public PublishJob getJob(String jobId, Map<String, String> headers) {
+        PublishJob job = publishJobDAO.findByJobId(jobId);
+        if (job == null || isOwner(job, headers)) {
+            return job;
+        }
+        logger.warn("WARN::PublishJobService: getJob() job - " + jobId + " was not submitted by the caller");
+        return null;
+    }
+
+    /**
+     * isOwner - Whether the caller is the CLO-SET and PLM user who submitted the job. A job that recorded neither user
+     * belongs to nobody.
+     *
+     * @param job PublishJob job
+     * @param headers Map<String, String> headers of the caller
+     * @return boolean
+     */
+    public boolean isOwner(PublishJob job, Map<String, String> headers) {
+        if (job.getClosetUser() == null && job.getPlmUser() == null) {
+            return false;
+        }
+        return Objects.equals(job.getClosetUser(), headerValue(headers, CLOSET_USER_NAME))
+                && Objects.equals(job.getPlmUser(), headerValue(headers, CLOSETConstants.PLM_USER_NAME));
+    }
+
+    /**
+     * getCompletion - Future completed with the job once it has finished
+     *
+     * @param jobId String jobId
+     * @return CompletableFuture of the finished job, null when the job is unknown
+     */
+    public CompletableFuture<PublishJob> getCompletion(String jobId) {
+        CompletableFuture<PublishJob> completion = completions.get(jobId);
+        if (completion != null) {
+            return completion;
+        }
+        PublishJob job = publishJobDAO.findByJobId(jobId);
+        if (job == null) {
+            return null;
+        }
+        if (FINISHED_STATUSES.contains(job.getStatus())) {
+            return CompletableFuture.completedFuture(job);
+        }
+        completion = completions.computeIfAbsent(jobId, key -> new CompletableFuture<>());
+        // The job may have finished between the lookup and the registration
+        job = publishJobDAO.findByJobId(jobId);
+        if (FINISHED_STATUSES.contains(job.getStatus())) {
+            completions.remove(jobId, completion);
+            completion.complete(job);
+        }
+        return completion;
+    }
+
+    /**
+     * prepareJobStatusResponse - Prepares the status JSON of a publish job
+     *
+     * @param job PublishJob job
+     * @return JSONObject with job status, stage, timestamps and result or error
+     */
+    public JSONObject prepareJobStatusResponse(PublishJob job) {
+        JSONObject outJson = new JSONObject();
+        outJson.put(PLMConstants.PUBLISH_JOB_ID_JSON_KEY, job.getJobId());
+        outJson.put(PLMConstants.PUBLISH_JOB_STATUS_JSON_KEY, job.getStatus());
+        outJson.put(PLMConstants.PUBLISH_JOB_STAGE_JSON_KEY, job.getStage());
+        outJson.put("attempts", job.getAttempts());
+        outJson.put("createTimeStamp", job.getCreateTimeStamp());
+        outJson.put("startTimeStamp", job.getStartTimeStamp());
+        outJson.put("endTimeStamp", job.getEndTimeStamp());
+        if (PLMConstants.PUBLISH_JOB_COMPLETED.equals(job.getStatus()) && job.getResult() != null) {
+            outJson.put(PLMConstants.PUBLISH_JOB_RESULT_JSON_KEY, new JSONObject(job.getResult()));
+        } else if (PLMConstants.PUBLISH_JOB_FAILED.equals(job.getStatus())) {
+            outJson.put(PLMConstants.PUBLISH_JOB_RESULT_JSON_KEY,
+                    PLMHelper.prepareErrorResponse(new PLMException(job.getErrorMessage(), resolveStatus(job))));
+        }
+        return outJson;
+    }
+
+    /**
+     * resolveStatus - Http status of a failed job
+     *
+     * @param job PublishJob job
+     * @return HttpStatus
+     */
+    public HttpStatus resolveStatus(PublishJob job) {
+        HttpStatus status = HttpStatus.resolve(job.getStatusCode());
+        return status == null ? HttpStatus.INTERNAL_SERVER_ERROR : status;
+    }
+
+    /**
+     * requeueUnfinishedJobs - Picks up the jobs that were queued or running when the application stopped
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void requeueUnfinishedJobs() {
+        List<PublishJob> jobs = publishJobDAO.findByStatusInOrderByCreateTimeStampAsc(ACTIVE_STATUSES);
+        logger.info("INFO::PublishJobService: requeueUnfinishedJobs() jobs - " + jobs.size());
+        for (PublishJob job : jobs) {
+            if (PLMConstants.PUBLISH_JOB_RUNNING.equals(job.getStatus())) {
+                job.setStatus(PLMConstants.PUBLISH_JOB_QUEUED);
+                job.setModifyTimeStamp(new Date());
+                publishJobDAO.save(job);
+            }
+            dispatch(job.getJobId());
+        }
+    }
+
+    /**
+     * purgeFinishedJobs - Removes finished jobs older than the retention period, and the request headers of finished
+     * jobs stored before they were cleared on finishing
+     */
+    @Scheduled(fixedDelayString = "${csc.publish.jobs.purge-interval-ms:3600000}")
+    public void purgeFinishedJobs() {
+        int cleared = publishJobDAO.clearRequestHeadersByStatusIn(FINISHED_STATUSES);
+        if (cleared > 0) {
+            logger.info("INFO::PublishJobService: purgeFinishedJobs() cleared request headers of jobs - " + cleared);
+        }
+        Date before = new Date(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(retentionHours));
+        long purged = publishJobDAO.deleteByStatusInAndEndTimeStampBefore(FINISHED_STATUSES, before);
+        if (purged > 0) {
+            logger.info("INFO::PublishJobService: purgeFinishedJobs() purged - " + purged);
+        }
+    }
+
+    private void dispatch(String jobId) {
+        try {
+            publishJobExecutor.execute(() -> runJob(jobId));
+        } catch (RejectedExecutionException exc) {
+            // Shutting down, the job stays queued and is picked up on the next start
+            logger.warn("WARN::PublishJobService: dispatch() rejected job - " + jobId);
+        }
+    }
+
+    /**
+     * runJob - Runs one publish job and stores its outcome
+     *
+     * @param jobId String jobId
+     */
+    private void runJob(String jobId) {
+        PublishJob job = publishJobDAO.findByJobId(jobId);
+        if (job == null || !PLMConstants.PUBLISH_JOB_QUEUED.equals(job.getStatus())) {
+            return;
+        }
+        if (job.getAttempts() >= maxAttempts) {
+            finish(job, PLMConstants.PUBLISH_JOB_FAILED, null,
+                    "Publish was interrupted " + job.getAttempts() + " times and was not retried.", HttpStatus.INTERNAL_SERVER_ERROR);
+            return;
+        }
+
+        logger.info("INFO::PublishJobService: runJob() started job - " + jobId);
+        Date time = new Date();
+        job.setStatus(PLMConstants.PUBLISH_JOB_RUNNING);
+        job.setAttempts(job.getAttempts() + 1);
+        job.setStartTimeStamp(time);
+        job.setModifyTimeStamp(time);
+        PublishJob runningJob = publishJobDAO.save(job);
+
+        Map<String, String> headers = new HashMap<>();
+        JSONObject headersJson = runningJob.getRequestHeaders() == null ? new JSONObject() : new JSONObject(runningJob.getRequestHeaders());
+        for (String key : headersJson.keySet()) {
+            headers.put(key, headersJson.getString(key));
+        }
+
+        try {
+            JSONObject outJson = plmService.publishToPLM(new JSONObject(runningJob.getPublishData()), headers, runningJob.getPlmUrl(), stage -> {
+                runningJob.setStage(stage);
+                runningJob.setModifyTimeStamp(new Date());
+                publishJobDAO.save(runningJob);
+            });
+            finish(runningJob, PLMConstants.PUBLISH_JOB_COMPLETED, outJson.toString(), null, HttpStatus.OK);
+        } catch (PLMException exe) {
+            logger.error("ERROR::PublishJobService: runJob() job - " + jobId + " failed - " + exe.getMessage());
+            finish(runningJob, PLMConstants.PUBLISH_JOB_FAILED, null, exe.getMessage(), exe.getStatusCode());
+        } catch (RuntimeException exe) {
+            logger.error("ERROR::PublishJobService: runJob() job - " + jobId + " failed", exe);
+            finish(runningJob, PLMConstants.PUBLISH_JOB_FAILED, null, exe.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    private static String headerValue(Map<String, String> headers, String headerName) {
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            if (headerName.equalsIgnoreCase(header.getKey())) {
+                return header.getValue();
+            }
+        }
+        return null;
+    }
+
+    private void finish(PublishJob job, String status, String result, String errorMessage, HttpStatus statusCode) {
+        Date time = new Date();
+        job.setStatus(status);
+        // The credentials are only needed to run the job, do not keep them until the job is purged
+        job.setRequestHeaders(null);
+        job.setResult(result);
+        job.setErrorMessage(errorMessage != null && errorMessage.length() > 4000 ? errorMessage.substring(0, 4000) : errorMessage);
+        job.setStatusCode(statusCode == null ? HttpStatus.INTERNAL_SERVER_ERROR.value() : statusCode.value());
+        job.setEndTimeStamp(time);
+        job.setModifyTimeStamp(time);
+        PublishJob finishedJob = publishJobDAO.save(job);
+
+        CompletableFuture<PublishJob> completion = completions.remove(job.getJobId());
+        if (completion != null) {
+            completion.complete(finishedJob);
+        }
+        logger.info("INFO::PublishJobService: finish() job - " + job.getJobId() + " " + status);
+    }
+}
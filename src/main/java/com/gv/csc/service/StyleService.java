@@ -8,6 +8,7 @@ import com.gv.csc.exceptions.CLOSETException;
 import com.gv.csc.exceptions.PLMException;
 import com.gv.csc.helper.CLOSETHelper;
 import com.gv.csc.helper.PLMHelper;
+import com.gv.csc.helper.ReactiveRestService;
 import com.gv.csc.helper.RestService;
 import com.gv.csc.util.Utility;
 import org.json.JSONArray;
@@ -15,8 +16,12 @@ import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
@@ -37,6 +42,12 @@ public class StyleService {
     @Autowired
     private PLMHelper plmHelper;
 
+    @Autowired
+    private ReactiveRestService reactiveRestService;
+
+    @Value("${csc.style.recent-content.parallelism:8}")
+    private int recentContentParallelism;
+
     Logger logger = LoggerFactory.getLogger(StyleService.class);
 
     /**
@@ -118,13 +129,8 @@ public class StyleService {
         ObjectMapper objectMapper = new ObjectMapper();
         String data = objectMapper.writeValueAsString(list);
         JSONArray json = new JSONArray(data);
-        JSONObject plmStyleJson = new JSONObject();
-        JSONObject closetStyleJson = new JSONObject();
-        JSONObject tempJson = new JSONObject();
-        JSONObject tempStyleJson = new JSONObject();
-        JSONArray stylesArray = new JSONArray();
+        List<String[]> recentStyles = new ArrayList<>();
         for (int i = 0; i<json.length(); i++) {
-            tempStyleJson = new JSONObject();
             JSONObject jsonObject = json.getJSONObject(i);
             String closetStyleId = jsonObject.getString("closetStyleId");
             String plmStyleId = jsonObject.getString("plmStyleId");
@@ -135,22 +141,26 @@ public class StyleService {
             if(!plmStyleId.contains("-:-")) {
                 continue;
             }
-            tempJson = closetHelper.prepareGetStyleResponse(closetStyleId, version, headers);
-            closetStyleJson = tempJson.getJSONObject("style");
-            tempStyleJson.put("closetStyle", closetStyleJson);
-
+            recentStyles.add(new String[] {closetStyleId, plmStyleId.split("-:-")[0], plmStyleId.split("-:-")[1]});
+        }
 
-            String owner = plmStyleId.split("-:-")[0];
-            String requestNo = plmStyleId.split("-:-")[1];
-            try {
-                tempJson = plmHelper.prepareGetStyleResponse(requestNo, owner, headers, plmUrl);
-            } catch (PLMException e) {
-                //throw new RuntimeException(e);
-                continue;
-            }
-            plmStyleJson = tempJson.getJSONObject("style");
-            tempStyleJson.put("plmStyle", plmStyleJson);
+        // The CLO-SET and PLM lookups of the recent styles run concurrently on the shared event loop, in recent order.
+        // A style PLM cannot return is left out of the list.
+        List<JSONObject> styles = reactiveRestService.await(Flux.fromIterable(recentStyles)
+                .flatMapSequential(recentStyle -> Mono.zip(
+                        closetHelper.prepareGetStyleResponseAsync(recentStyle[0], version, headers),
+                        plmHelper.prepareGetStyleResponseAsync(recentStyle[2], recentStyle[1], headers, plmUrl)
+                                .onErrorResume(PLMException.class, exc -> Mono.empty()))
+                        .map(lookups -> {
+                            JSONObject tempStyleJson = new JSONObject();
+                            tempStyleJson.put("closetStyle", lookups.getT1().getJSONObject("style"));
+                            tempStyleJson.put("plmStyle", lookups.getT2().getJSONObject("style"));
+                            return tempStyleJson;
+                        }), recentContentParallelism)
+                .collectList(), CLOSETException.class);
 
+        JSONArray stylesArray = new JSONArray();
+        for (JSONObject tempStyleJson : styles) {
             stylesArray.put(tempStyleJson);
         }
         outJson.put("recentStyles", stylesArray);
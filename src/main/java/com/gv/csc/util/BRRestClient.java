@@ -1,14 +1,10 @@
 package com.gv.csc.util;
 
-import org.apache.http.conn.ssl.NoopHostnameVerifier;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
 import org.json.JSONObject;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.ResponseEntity;
-import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 
@@ -17,15 +13,12 @@ public class BRRestClient {
 
     private final RestTemplate restTemplate;
 
-    BRRestClient() {
-        CloseableHttpClient httpClient = HttpClients
-                .custom()
-                .setSSLHostnameVerifier(new NoopHostnameVerifier())
-                .build();
-        HttpComponentsClientHttpRequestFactory requestFactory = new HttpComponentsClientHttpRequestFactory();
-        requestFactory.setHttpClient(httpClient);
-
-        this.restTemplate = new RestTemplate(requestFactory);
+    /**
+     *
+     * @param pooledRestTemplate RestTemplate backed by the shared, pooled HTTP client
+     */
+    BRRestClient(RestTemplate pooledRestTemplate) {
+        this.restTemplate = pooledRestTemplate;
     }
 
     public ResponseEntity<String> makeRESTCall(String url,
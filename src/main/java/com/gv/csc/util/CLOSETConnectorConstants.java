@@ -43,6 +43,7 @@ public class CLOSETConnectorConstants {
     public final static String PNG_EXTENSION = "png";
     public final static String PERIOD = ".";
 
+    public final static String ASSET_DOWNLOAD_USER_AGENT = "Mozilla/5.0 (Windows NT 6.1; WOW64; rv:31.0) Gecko/20100101 Firefox/31.0";
     public final static String STORAGE_DIRECTORY = new File("").getAbsolutePath() + File.separator + "src"
             + File.separator + "main" + File.separator + "resources" + File.separator + "static" + File.separator
             + "images" + File.separator + "storageDirectory" + File.separator;
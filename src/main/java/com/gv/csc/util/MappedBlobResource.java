@@ -0,0 +1,137 @@
+package com.gv.csc.util;
+
+import org.springframework.core.io.AbstractResource;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * MappedBlobResource - Upload part read from an asset blob store file through a read-only memory mapping
+ *
+ * The file is mapped when the resource is created, so the content stays readable even if the blob is evicted from
+ * the store while the upload is running. Unlike a streamed asset it can be read any number of times.
+ */
+public class MappedBlobResource extends AbstractResource {
+
+    private final String fileName;
+    private final String contentHash;
+    private final long contentLength;
+    // One mapping per 2 GB region, a single MappedByteBuffer cannot address more
+    private final ByteBuffer[] regions;
+
+    /**
+     * @param blobFile File blobFile
+     * @param fileName String fileName used as the part file name
+     * @param contentHash String contentHash of the blob
+     * @throws IOException when the blob cannot be mapped
+     */
+    public MappedBlobResource(File blobFile, String fileName, String contentHash) throws IOException {
+        this.fileName = fileName;
+        this.contentHash = contentHash;
+        try (FileChannel channel = FileChannel.open(blobFile.toPath(), StandardOpenOption.READ)) {
+            contentLength = channel.size();
+            int regionCount = (int) Math.max(1, (contentLength + Integer.MAX_VALUE - 1) / Integer.MAX_VALUE);
+            regions = new ByteBuffer[regionCount];
+            for (int i = 0; i < regionCount; i++) {
+                long position = (long) i * Integer.MAX_VALUE;
+                regions[i] = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(Integer.MAX_VALUE, contentLength - position));
+            }
+        }
+    }
+
+    @Override
+    public String getFilename() {
+        return fileName;
+    }
+
+    @Override
+    public String getDescription() {
+        return "Stored asset [" + fileName + "]";
+    }
+
+    @Override
+    public boolean exists() {
+        return true;
+    }
+
+    @Override
+    public long contentLength() {
+        return contentLength;
+    }
+
+    /**
+     * getContentHash - SHA-256 of the content, the name of the blob in the store
+     *
+     * @return hex encoded hash
+     */
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        ByteBuffer[] streamRegions = new ByteBuffer[regions.length];
+        for (int i = 0; i < regions.length; i++) {
+            streamRegions[i] = regions[i].duplicate();
+        }
+        return new MappedInputStream(streamRegions);
+    }
+
+    private static final class MappedInputStream extends InputStream {
+        private final ByteBuffer[] regions;
+        private int region;
+
+        MappedInputStream(ByteBuffer[] regions) {
+            this.regions = regions;
+        }
+
+        @Override
+        public int read() {
+            ByteBuffer buffer = current();
+            return buffer == null ? -1 : buffer.get() & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            ByteBuffer buffer = current();
+            if (buffer == null) {
+                return -1;
+            }
+            int read = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, read);
+            return read;
+        }
+
+        @Override
+        public long skip(long count) {
+            long skipped = 0;
+            ByteBuffer buffer;
+            while (skipped < count && (buffer = current()) != null) {
+                int step = (int) Math.min(count - skipped, buffer.remaining());
+                buffer.position(buffer.position() + step);
+                skipped += step;
+            }
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            ByteBuffer buffer = current();
+            return buffer == null ? 0 : buffer.remaining();
+        }
+
+        private ByteBuffer current() {
+            while (region < regions.length && !regions[region].hasRemaining()) {
+                region++;
+            }
+            return region < regions.length ? regions[region] : null;
+        }
+    }
+}
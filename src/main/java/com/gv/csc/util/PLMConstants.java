@@ -105,4 +105,28 @@ public class PLMConstants {
         add("@brand");
     }};
 
+    /****** Publish job constants start ******/
+    public static final String PUBLISH_JOB_QUEUED = "QUEUED";
+    public static final String PUBLISH_JOB_RUNNING = "RUNNING";
+    public static final String PUBLISH_JOB_COMPLETED = "COMPLETED";
+    public static final String PUBLISH_JOB_FAILED = "FAILED";
+
+    public static final String PUBLISH_STAGE_EXTERNAL_ID = "EXTERNAL_ID";
+    public static final String PUBLISH_STAGE_DOWNLOAD_ASSETS = "DOWNLOAD_ASSETS";
+    public static final String PUBLISH_STAGE_UPLOAD_ATTACHMENTS = "UPLOAD_ATTACHMENTS";
+    public static final String PUBLISH_STAGE_RENDERS_URL = "RENDERS_URL";
+    public static final String PUBLISH_STAGE_DOWNLOAD_RENDERS = "DOWNLOAD_RENDERS";
+    public static final String PUBLISH_STAGE_UPLOAD_RENDERS = "UPLOAD_RENDERS";
+    public static final String PUBLISH_STAGE_TECH_SPEC = "TECH_SPEC";
+    public static final String PUBLISH_STAGE_COLORWAYS = "COLORWAYS";
+    public static final String PUBLISH_STAGE_PAYLOAD = "PAYLOAD";
+    public static final String PUBLISH_STAGE_POST_STYLE = "POST_STYLE";
+    public static final String PUBLISH_STAGE_SAVE_STYLE = "SAVE_STYLE";
+
+    public static final String PUBLISH_JOB_ID_JSON_KEY = "jobId";
+    public static final String PUBLISH_JOB_STATUS_JSON_KEY = "jobStatus";
+    public static final String PUBLISH_JOB_STAGE_JSON_KEY = "stage";
+    public static final String PUBLISH_JOB_RESULT_JSON_KEY = "result";
+    /****** Publish job constants end ******/
+
 }
@@ -0,0 +1,328 @@
+package com.gv.csc.util;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.apache.http.HttpEntity;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.AbstractResource;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * StreamedAssetResource - Upload part whose content is read straight from a CLO-SET download
+ *
+ * The download is only opened when the part is written, so the connection is not held while other parts are sent.
+ * When the upstream does not report its size the content is staged to disk first and served from the file.
+ * A streamed resource can be read once; a staged one can be read again. An optional ContentSink receives a copy of
+ * the content as it is read, e.g. to keep the asset in the blob store.
+ */
+public class StreamedAssetResource extends AbstractResource implements Closeable {
+
+    Logger logger = LoggerFactory.getLogger(StreamedAssetResource.class);
+
+    private final CloseableHttpClient httpClient;
+    private final String url;
+    private final String fileName;
+    private final File stagingFile;
+    // A lock rather than synchronized: the download is opened while holding it, which would pin a virtual thread
+    private final ReentrantLock lock = new ReentrantLock();
+    private static final int STAGING_BUFFER_SIZE = 64 * 1024;
+
+    private CloseableHttpResponse response;
+    private InputStream content;
+    private long contentLength = -1;
+    private boolean staged;
+    private boolean consumed;
+    // Hashed while the content streams, known once it was fully read
+    private final MessageDigest contentDigest = DigestUtils.getSha256Digest();
+    private volatile String contentHash;
+    private ContentSink contentSink;
+
+    /**
+     * Receives a copy of the content while it is read. Implementations must not throw: a failing copy must not fail
+     * the upload
+     */
+    public interface ContentSink {
+        void write(byte[] bytes, int offset, int length);
+
+        /**
+         * complete - The content was fully read
+         *
+         * @param contentHash String hex encoded SHA-256 of the content
+         */
+        void complete(String contentHash);
+
+        /**
+         * discard - The content was not fully read, the copy is incomplete
+         */
+        void discard();
+    }
+
+    /**
+     * @param httpClient CloseableHttpClient httpClient
+     * @param url String url of the asset
+     * @param fileName String fileName used as the part file name
+     * @param stagingFile File used when the content has to be staged
+     */
+    public StreamedAssetResource(CloseableHttpClient httpClient, String url, String fileName, File stagingFile) {
+        this.httpClient = httpClient;
+        this.url = url;
+        this.fileName = fileName;
+        this.stagingFile = stagingFile;
+    }
+
+    /**
+     * setContentSink - Sink receiving a copy of the content, must be set before the content is read
+     *
+     * @param contentSink ContentSink contentSink, null for none
+     */
+    public void setContentSink(ContentSink contentSink) {
+        this.contentSink = contentSink;
+    }
+
+    @Override
+    public String getFilename() {
+        return fileName;
+    }
+
+    @Override
+    public String getDescription() {
+        return "CLO-SET asset [" + fileName + "]";
+    }
+
+    @Override
+    public boolean exists() {
+        return true;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return !staged;
+    }
+
+    /**
+     * isStaged - Whether the content was staged to disk because the upstream size was unknown
+     *
+     * @return boolean
+     */
+    public boolean isStaged() {
+        return staged;
+    }
+
+    /**
+     * isConsumed - Whether the streamed content was already read
+     *
+     * @return boolean
+     */
+    public boolean isConsumed() {
+        return consumed;
+    }
+
+    /**
+     * getSourceKey - Download URL without its query string, which identifies the CLO-SET asset independently of
+     * the (signed, expiring) query parameters
+     *
+     * @return String source key
+     */
+    public String getSourceKey() {
+        int queryStart = url.indexOf('?');
+        return queryStart < 0 ? url : url.substring(0, queryStart);
+    }
+
+    /**
+     * getContentHash - SHA-256 of the content, once the streamed content was fully read or when it was staged
+     *
+     * @return hex encoded hash, null while unknown
+     */
+    public String getContentHash() throws IOException {
+        if (contentHash == null && staged) {
+            try (InputStream stagedContent = new FileInputStream(stagingFile)) {
+                contentHash = DigestUtils.sha256Hex(stagedContent);
+            }
+        }
+        return contentHash;
+    }
+
+    @Override
+    public long contentLength() throws IOException {
+        lock.lock();
+        try {
+            open();
+            return contentLength;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        lock.lock();
+        try {
+            return openInputStream();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private InputStream openInputStream() throws IOException {
+        open();
+        if (staged) {
+            return new FileInputStream(stagingFile);
+        }
+        if (consumed) {
+            throw new IOException(getDescription() + " was already read and cannot be streamed again");
+        }
+        consumed = true;
+        return new FilterInputStream(content) {
+            private boolean eof;
+
+            @Override
+            public int read() throws IOException {
+                int read = super.read();
+                if (read == -1) {
+                    finish();
+                } else {
+                    contentDigest.update((byte) read);
+                    if (contentSink != null) {
+                        contentSink.write(new byte[]{(byte) read}, 0, 1);
+                    }
+                }
+                return read;
+            }
+
+            @Override
+            public int read(byte[] bytes, int offset, int length) throws IOException {
+                int read = super.read(bytes, offset, length);
+                if (read == -1) {
+                    finish();
+                } else {
+                    contentDigest.update(bytes, offset, read);
+                    if (contentSink != null) {
+                        contentSink.write(bytes, offset, read);
+                    }
+                }
+                return read;
+            }
+
+            private void finish() {
+                if (!eof) {
+                    eof = true;
+                    contentHash = Hex.encodeHexString(contentDigest.digest());
+                    if (contentSink != null) {
+                        contentSink.complete(contentHash);
+                    }
+                }
+            }
+
+            @Override
+            public void close() throws IOException {
+                try {
+                    if (eof) {
+                        // Fully read, the connection goes back to the pool
+                        super.close();
+                    }
+                } finally {
+                    // Not fully read, closing the response drops the connection instead of draining it
+                    StreamedAssetResource.this.close();
+                }
+            }
+        };
+    }
+
+    /**
+     * open - Starts the download, staging it to disk when the upstream size is unknown
+     */
+    private void open() throws IOException {
+        if (response != null || staged || consumed) {
+            return;
+        }
+        HttpGet get = new HttpGet(url);
+        get.setHeader("User-Agent", CLOSETConnectorConstants.ASSET_DOWNLOAD_USER_AGENT);
+        response = httpClient.execute(get);
+        int status = response.getStatusLine().getStatusCode();
+        HttpEntity entity = response.getEntity();
+        if (status < 200 || status >= 300 || entity == null) {
+            close();
+            throw new IOException("Download of " + fileName + " failed with status " + status);
+        }
+
+        contentLength = entity.getContentLength();
+        content = entity.getContent();
+        if (contentLength < 0) {
+            logger.info("INFO::StreamedAssetResource: open() size of " + fileName + " unknown, staging to " + stagingFile);
+            try {
+                stage();
+            } finally {
+                close();
+            }
+            contentLength = stagingFile.length();
+            staged = true;
+        }
+    }
+
+    /**
+     * stage - Copies the download to the staging file, hashing it and feeding the content sink on the way
+     */
+    private void stage() throws IOException {
+        // Never write through an existing file, it may be a link to a stored blob
+        Files.deleteIfExists(stagingFile.toPath());
+        FileUtils.forceMkdirParent(stagingFile);
+        boolean complete = false;
+        try (OutputStream staging = new FileOutputStream(stagingFile)) {
+            byte[] buffer = new byte[STAGING_BUFFER_SIZE];
+            int read;
+            while ((read = content.read(buffer)) != -1) {
+                staging.write(buffer, 0, read);
+                contentDigest.update(buffer, 0, read);
+                if (contentSink != null) {
+                    contentSink.write(buffer, 0, read);
+                }
+            }
+            complete = true;
+        } finally {
+            if (contentSink != null && !complete) {
+                contentSink.discard();
+            }
+        }
+        contentHash = Hex.encodeHexString(contentDigest.digest());
+        if (contentSink != null) {
+            contentSink.complete(contentHash);
+        }
+    }
+
+    /**
+     * close - Releases the download connection when the content was not read
+     */
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (contentSink != null && contentHash == null) {
+                contentSink.discard();
+            }
+            if (response != null) {
+                CloseableHttpResponse openResponse = response;
+                response = null;
+                content = null;
+                openResponse.close();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+}
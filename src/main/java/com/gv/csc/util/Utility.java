@@ -3,7 +3,7 @@ package com.gv.csc.util;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
-import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Service;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
@@ -77,10 +77,10 @@ public class Utility {
         return outputFile;
     }
 
-    public static MultiValueMap<String, Object> prepareMultipartFilesBody(List<File> files) {
+    public static MultiValueMap<String, Object> prepareMultipartResourcesBody(List<? extends Resource> resources) {
         MultiValueMap<String, Object> multiPartsBody = new LinkedMultiValueMap<>();
-        for(File file : files) {
-            multiPartsBody.add(file.getName(), new FileSystemResource(file));
+        for(Resource resource : resources) {
+            multiPartsBody.add(resource.getFilename(), resource);
         }
 
         return multiPartsBody;
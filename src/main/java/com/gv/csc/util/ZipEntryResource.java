@@ -0,0 +1,56 @@
+package com.gv.csc.util;
+
+import org.apache.commons.io.FilenameUtils;
+import org.springframework.core.io.AbstractResource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * ZipEntryResource - Upload part read directly from an entry of a zip file, without extracting it
+ *
+ * The entry is inflated while the part is written, so only the copy buffer is held in memory. The resource can be
+ * read again as long as the zip file is open.
+ */
+public class ZipEntryResource extends AbstractResource {
+
+    private final ZipFile zipFile;
+    private final ZipEntry entry;
+
+    /**
+     * @param zipFile ZipFile zipFile, closed by the caller once the upload is done
+     * @param entry ZipEntry entry
+     */
+    public ZipEntryResource(ZipFile zipFile, ZipEntry entry) {
+        this.zipFile = zipFile;
+        this.entry = entry;
+    }
+
+    @Override
+    public String getFilename() {
+        return FilenameUtils.getName(entry.getName());
+    }
+
+    @Override
+    public String getDescription() {
+        return "zip entry [" + entry.getName() + "] of [" + zipFile.getName() + "]";
+    }
+
+    @Override
+    public boolean exists() {
+        return true;
+    }
+
+    @Override
+    public long contentLength() throws IOException {
+        long size = entry.getSize();
+        return size >= 0 ? size : super.contentLength();
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return zipFile.getInputStream(entry);
+    }
+}
@@ -0,0 +1,145 @@
+package com.gv.csc.helper;
+
+import com.gv.csc.exceptions.UpstreamUnavailableException;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Permits, waiter queue and limit of the adaptive bulkhead
+ */
+class AdaptiveBulkheadTest {
+
+    @Test
+    void waitersAreGrantedInArrivalOrder() {
+        AdaptiveBulkhead bulkhead = new AdaptiveBulkhead("test", false, 1, 1, 1, 10);
+        CompletableFuture<AdaptiveBulkhead.Permit> first = bulkhead.acquireAsync();
+        CompletableFuture<AdaptiveBulkhead.Permit> second = bulkhead.acquireAsync();
+        CompletableFuture<AdaptiveBulkhead.Permit> third = bulkhead.acquireAsync();
+        assertTrue(first.isDone());
+        assertFalse(second.isDone());
+        assertFalse(third.isDone());
+
+        first.join().release(true);
+        assertTrue(second.isDone());
+        assertFalse(third.isDone());
+
+        second.join().release(true);
+        assertTrue(third.isDone());
+        third.join().release(true);
+        assertEquals(0, bulkhead.getStatistics().getInt("inFlight"));
+    }
+
+    @Test
+    void callersBeyondTheQueueAreRejected() {
+        AdaptiveBulkhead bulkhead = new AdaptiveBulkhead("test", false, 1, 1, 1, 1);
+        bulkhead.acquireAsync();
+        CompletableFuture<AdaptiveBulkhead.Permit> queued = bulkhead.acquireAsync();
+        CompletableFuture<AdaptiveBulkhead.Permit> rejected = bulkhead.acquireAsync();
+
+        assertFalse(queued.isDone());
+        CompletionException exc = assertThrows(CompletionException.class, rejected::join);
+        assertTrue(exc.getCause() instanceof UpstreamUnavailableException);
+        assertEquals(1, bulkhead.getStatistics().getLong("rejected"));
+    }
+
+    @Test
+    void timedOutWaitersLeaveTheQueue() {
+        AdaptiveBulkhead bulkhead = new AdaptiveBulkhead("test", false, 1, 1, 1, 10);
+        AdaptiveBulkhead.Permit permit = bulkhead.acquire(10);
+
+        assertThrows(UpstreamUnavailableException.class, () -> bulkhead.acquire(10));
+        assertEquals(0, bulkhead.getStatistics().getInt("waiting"));
+
+        permit.release(true);
+        bulkhead.acquire(10).release(true);
+    }
+
+    @Test
+    void abandonedWaitersDoNotKeepPermits() {
+        AdaptiveBulkhead bulkhead = new AdaptiveBulkhead("test", false, 1, 1, 1, 10);
+        AdaptiveBulkhead.Permit permit = bulkhead.acquireAsync().join();
+        CompletableFuture<AdaptiveBulkhead.Permit> abandoned = bulkhead.acquireAsync();
+        CompletableFuture<AdaptiveBulkhead.Permit> waiting = bulkhead.acquireAsync();
+
+        bulkhead.abandon(abandoned);
+        permit.release(true);
+
+        assertTrue(waiting.isDone());
+        assertEquals(1, bulkhead.getStatistics().getInt("inFlight"));
+    }
+
+    @Test
+    void permitsAreReleasedOnce() {
+        AdaptiveBulkhead bulkhead = new AdaptiveBulkhead("test", false, 2, 1, 2, 10);
+        AdaptiveBulkhead.Permit permit = bulkhead.acquireAsync().join();
+        bulkhead.acquireAsync().join();
+
+        permit.release(true);
+        permit.release(true);
+
+        assertEquals(1, bulkhead.getStatistics().getInt("inFlight"));
+    }
+
+    @Test
+    void limitGrowsWhileLatencyHoldsAndShrinksWhenItRises() throws InterruptedException {
+        AdaptiveBulkhead bulkhead = new AdaptiveBulkhead("test", true, 10, 1, 100, 10);
+        for (int round = 0; round < 20; round++) {
+            runAtLimit(bulkhead, 2);
+        }
+        int grownLimit = bulkhead.getStatistics().getInt("limit");
+        assertTrue(grownLimit > 10, "limit " + grownLimit);
+
+        for (int round = 0; round < 5; round++) {
+            runAtLimit(bulkhead, 40);
+        }
+        int shrunkLimit = bulkhead.getStatistics().getInt("limit");
+        assertTrue(shrunkLimit < grownLimit, "limit " + shrunkLimit + " after " + grownLimit);
+    }
+
+    @Test
+    void failuresBackOffTheLimit() {
+        AdaptiveBulkhead bulkhead = new AdaptiveBulkhead("test", true, 10, 5, 100, 10);
+
+        bulkhead.acquireAsync().join().release(false);
+        assertEquals(9, bulkhead.getStatistics().getInt("limit"));
+
+        for (int i = 0; i < 20; i++) {
+            bulkhead.acquireAsync().join().release(false);
+        }
+        assertEquals(5, bulkhead.getStatistics().getInt("limit"));
+    }
+
+    @Test
+    void fixedLimitDoesNotAdapt() {
+        AdaptiveBulkhead bulkhead = new AdaptiveBulkhead("test", false, 4, 1, 100, 10);
+
+        for (int i = 0; i < 10; i++) {
+            bulkhead.acquireAsync().join().release(false);
+        }
+        assertEquals(4, bulkhead.getStatistics().getInt("limit"));
+    }
+
+    /**
+     * runAtLimit - Takes every permit the current limit allows, holds them for holdMs and releases them
+     */
+    private static void runAtLimit(AdaptiveBulkhead bulkhead, long holdMs) throws InterruptedException {
+        int limit = bulkhead.getStatistics().getInt("limit");
+        List<AdaptiveBulkhead.Permit> permits = new ArrayList<>();
+        for (int i = 0; i < limit; i++) {
+            permits.add(bulkhead.acquireAsync().join());
+        }
+        Thread.sleep(holdMs);
+        for (AdaptiveBulkhead.Permit permit : permits) {
+            permit.release(true);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.gv.csc.helper;
+
+import com.gv.csc.exceptions.UpstreamUnavailableException;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * State transitions of the circuit breaker, and which failures the per upstream breakers count
+ */
+class CircuitBreakerTest {
+
+    private static final long OPEN_MS = 50;
+
+    private final CircuitBreaker breaker = new CircuitBreaker("PLM test", 4, 4, 50, OPEN_MS, 1);
+
+    @Test
+    void staysClosedUntilMinimumCalls() {
+        for (int i = 0; i < 3; i++) {
+            assertFalse(breaker.acquirePermission());
+            breaker.onResult(false, true);
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, state());
+    }
+
+    @Test
+    void staysClosedBelowTheFailureRate() {
+        for (int i = 0; i < 12; i++) {
+            breaker.acquirePermission();
+            breaker.onResult(false, i % 4 == 0);
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, state());
+    }
+
+    @Test
+    void opensAtTheFailureRateAndRejectsCalls() {
+        recordCalls(false, false, true, true);
+
+        assertEquals(CircuitBreaker.State.OPEN, state());
+        UpstreamUnavailableException exc = assertThrows(UpstreamUnavailableException.class, breaker::acquirePermission);
+        assertTrue(exc.getMessage().startsWith("PLM test is unavailable"), exc.getMessage());
+        assertEquals(1, breaker.getStatistics().getLong("rejected"));
+    }
+
+    @Test
+    void halfOpenProbeSuccessCloses() throws InterruptedException {
+        recordCalls(true, true, true, true);
+        Thread.sleep(OPEN_MS + 20);
+
+        assertTrue(breaker.acquirePermission());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, state());
+        // Only one probe at a time
+        assertThrows(UpstreamUnavailableException.class, breaker::acquirePermission);
+
+        breaker.onResult(true, false);
+        assertEquals(CircuitBreaker.State.CLOSED, state());
+        assertFalse(breaker.acquirePermission());
+    }
+
+    @Test
+    void halfOpenProbeFailureReopens() throws InterruptedException {
+        recordCalls(true, true, true, true);
+        Thread.sleep(OPEN_MS + 20);
+
+        assertTrue(breaker.acquirePermission());
+        breaker.onResult(true, true);
+
+        assertEquals(CircuitBreaker.State.OPEN, state());
+        assertThrows(UpstreamUnavailableException.class, breaker::acquirePermission);
+        assertEquals(2, breaker.getStatistics().getLong("opened"));
+    }
+
+    @Test
+    void ignoredProbeFreesItsSlot() throws InterruptedException {
+        recordCalls(true, true, true, true);
+        Thread.sleep(OPEN_MS + 20);
+
+        assertTrue(breaker.acquirePermission());
+        breaker.onIgnored(true);
+
+        assertTrue(breaker.acquirePermission());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, state());
+    }
+
+    @Test
+    void callsAdmittedBeforeOpeningDoNotDecideTheState() throws InterruptedException {
+        recordCalls(true, true, true, true);
+        Thread.sleep(OPEN_MS + 20);
+        assertTrue(breaker.acquirePermission());
+
+        // A slow call from before the breaker opened completes now
+        breaker.onResult(false, false);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, state());
+    }
+
+    @Test
+    void breakersCountOnlyUnreachableUpstreamsAndGatewayErrors() {
+        CircuitBreakers circuitBreakers = new CircuitBreakers();
+        ReflectionTestUtils.setField(circuitBreakers, "enabled", true);
+        ReflectionTestUtils.setField(circuitBreakers, "windowSize", 4);
+        ReflectionTestUtils.setField(circuitBreakers, "minimumCalls", 4);
+        ReflectionTestUtils.setField(circuitBreakers, "failureRateThreshold", 50);
+        ReflectionTestUtils.setField(circuitBreakers, "openMs", 60000L);
+        ReflectionTestUtils.setField(circuitBreakers, "halfOpenProbes", 1);
+        ReflectionTestUtils.setField(circuitBreakers, "plmUrls", new String[]{"https://plm.example.com/plm"});
+        String url = "https://plm.example.com/plm/rest/styles";
+
+        for (int i = 0; i < 4; i++) {
+            assertThrows(HttpServerErrorException.class, () -> circuitBreakers.call(url, () -> {
+                throw new HttpServerErrorException(HttpStatus.INTERNAL_SERVER_ERROR);
+            }));
+        }
+        JSONObject plmBreaker = circuitBreakers.getStatistics().getJSONObject("breakers").getJSONObject("https://plm.example.com/plm");
+        assertEquals("CLOSED", plmBreaker.get("state").toString());
+
+        assertThrows(ResourceAccessException.class, () -> circuitBreakers.call(url, () -> {
+            throw new ResourceAccessException("connection refused");
+        }));
+        assertThrows(HttpServerErrorException.class, () -> circuitBreakers.call(url, () -> {
+            throw new HttpServerErrorException(HttpStatus.BAD_GATEWAY);
+        }));
+        assertThrows(UpstreamUnavailableException.class, () -> circuitBreakers.call(url, () -> "not called"));
+        plmBreaker = circuitBreakers.getStatistics().getJSONObject("breakers").getJSONObject("https://plm.example.com/plm");
+        assertEquals("OPEN", plmBreaker.get("state").toString());
+    }
+
+    private void recordCalls(boolean... failures) {
+        for (boolean failure : failures) {
+            assertFalse(breaker.acquirePermission());
+            breaker.onResult(false, failure);
+        }
+    }
+
+    private CircuitBreaker.State state() {
+        return (CircuitBreaker.State) breaker.getStatistics().get("state");
+    }
+}
@@ -0,0 +1,181 @@
+package com.gv.csc.helper;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Hedging of slow reads and the budget that limits it
+ */
+class HedgingExecutorTest {
+
+    private static final String OPERATION = "GET /styles";
+    private static final long MIN_DELAY_MS = 50;
+    private static final long SLOW_MS = 250;
+
+    private final ExecutorService hedgedReadExecutor = Executors.newCachedThreadPool();
+    private final ScheduledExecutorService timeoutScheduler = Executors.newSingleThreadScheduledExecutor();
+    private HedgingExecutor hedgingExecutor;
+
+    @BeforeEach
+    void setUp() {
+        hedgingExecutor = new HedgingExecutor();
+        ReflectionTestUtils.setField(hedgingExecutor, "hedgedReadExecutor", hedgedReadExecutor);
+        ReflectionTestUtils.setField(hedgingExecutor, "timeoutScheduler", timeoutScheduler);
+        ReflectionTestUtils.setField(hedgingExecutor, "enabled", true);
+        ReflectionTestUtils.setField(hedgingExecutor, "percentile", 95);
+        ReflectionTestUtils.setField(hedgingExecutor, "minSamples", 5);
+        ReflectionTestUtils.setField(hedgingExecutor, "minDelayMs", MIN_DELAY_MS);
+        ReflectionTestUtils.setField(hedgingExecutor, "budgetPercent", 100.0);
+        ReflectionTestUtils.setField(hedgingExecutor, "maxBurst", 10.0);
+    }
+
+    @AfterEach
+    void tearDown() {
+        hedgedReadExecutor.shutdownNow();
+        timeoutScheduler.shutdownNow();
+    }
+
+    @Test
+    void callsRunDirectlyUntilEnoughSamples() {
+        for (int i = 0; i < 5; i++) {
+            assertEquals("styles", hedgingExecutor.execute(OPERATION, () -> "styles"));
+        }
+
+        JSONObject statistics = hedgingExecutor.getStatistics();
+        assertEquals(0, statistics.getLong("calls"));
+        JSONObject operation = statistics.getJSONObject("operations").getJSONObject(OPERATION);
+        assertEquals(5, operation.getInt("samples"));
+        assertEquals(MIN_DELAY_MS, operation.getLong("hedgeDelayMs"));
+    }
+
+    @Test
+    void slowCallIsHedgedAndTheHedgeWins() throws InterruptedException {
+        warmUp();
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertEquals("attempt 2", hedgingExecutor.execute(OPERATION, slowOnFirstAttempt(attempts)));
+
+        assertEquals(2, attempts.get());
+        assertEquals(1, hedgingExecutor.getStatistics().getLong("hedged"));
+        awaitHedgeWins(1);
+    }
+
+    @Test
+    void fastCallIsNotHedged() {
+        warmUp();
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertEquals("styles", hedgingExecutor.execute(OPERATION, () -> {
+            attempts.incrementAndGet();
+            return "styles";
+        }));
+
+        assertEquals(1, attempts.get());
+        assertEquals(0, hedgingExecutor.getStatistics().getLong("hedged"));
+    }
+
+    @Test
+    void exhaustedBudgetSuppressesHedges() {
+        ReflectionTestUtils.setField(hedgingExecutor, "budgetPercent", 50.0);
+        ReflectionTestUtils.setField(hedgingExecutor, "maxBurst", 1.0);
+        warmUp();
+
+        // Every call earns half a hedge: the first slow call cannot hedge, the second can and spends the budget
+        int[] expectedAttempts = {1, 2, 1, 2};
+        for (int expected : expectedAttempts) {
+            AtomicInteger attempts = new AtomicInteger();
+            assertEquals("attempt " + expected, hedgingExecutor.execute(OPERATION, slowOnFirstAttempt(attempts)));
+            assertEquals(expected, attempts.get());
+        }
+
+        JSONObject statistics = hedgingExecutor.getStatistics();
+        assertEquals(4, statistics.getLong("calls"));
+        assertEquals(2, statistics.getLong("hedged"));
+        assertEquals(2, statistics.getLong("suppressedByBudget"));
+        assertEquals(0.0, statistics.getDouble("budgetTokens"));
+    }
+
+    @Test
+    void failureBeforeTheHedgeIsRaised() {
+        warmUp();
+        AtomicInteger attempts = new AtomicInteger();
+        IllegalStateException failure = new IllegalStateException("upstream failed");
+
+        IllegalStateException exc = assertThrows(IllegalStateException.class, () -> hedgingExecutor.execute(OPERATION, () -> {
+            attempts.incrementAndGet();
+            throw failure;
+        }));
+
+        assertSame(failure, exc);
+        assertEquals(1, attempts.get());
+        assertEquals(0, hedgingExecutor.getStatistics().getLong("hedged"));
+    }
+
+    @Test
+    void reactiveSlowCallIsHedged() throws InterruptedException {
+        warmUpAsync();
+        AtomicInteger attempts = new AtomicInteger();
+        Mono<String> call = Mono.fromSupplier(slowOnFirstAttempt(attempts));
+        Mono<String> hedged = hedgingExecutor.executeAsync(OPERATION, call.subscribeOn(Schedulers.fromExecutorService(hedgedReadExecutor)));
+
+        assertEquals("attempt 2", hedged.block());
+
+        assertEquals(2, attempts.get());
+        awaitHedgeWins(1);
+    }
+
+    private void awaitHedgeWins(long hedgeWins) throws InterruptedException {
+        // The win is counted right after the caller is answered
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (hedgingExecutor.getStatistics().getLong("hedgeWins") < hedgeWins) {
+            assertTrue(System.nanoTime() < deadline, "hedge win was not counted");
+            Thread.sleep(1);
+        }
+    }
+
+    private void warmUp() {
+        for (int i = 0; i < 5; i++) {
+            hedgingExecutor.execute(OPERATION, () -> "styles");
+        }
+    }
+
+    private void warmUpAsync() {
+        for (int i = 0; i < 5; i++) {
+            hedgingExecutor.executeAsync(OPERATION, Mono.just("styles")).block();
+        }
+    }
+
+    /**
+     * slowOnFirstAttempt - A read whose first attempt takes SLOW_MS and whose later attempts answer at once
+     */
+    private static Supplier<String> slowOnFirstAttempt(AtomicInteger attempts) {
+        return () -> {
+            int attempt = attempts.incrementAndGet();
+            if (attempt == 1) {
+                try {
+                    Thread.sleep(SLOW_MS);
+                } catch (InterruptedException exc) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return "attempt " + attempt;
+        };
+    }
+}
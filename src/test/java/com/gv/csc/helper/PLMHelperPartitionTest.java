@@ -0,0 +1,134 @@
+package com.gv.csc.helper;
+
+import com.gv.csc.util.PLMConstants;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Partitioning of attachment uploads and the order the uploaded locations are put back in
+ */
+class PLMHelperPartitionTest {
+
+    private PLMHelper plmHelper;
+
+    @BeforeEach
+    void setUp() {
+        plmHelper = new PLMHelper();
+        ReflectionTestUtils.setField(plmHelper, "uploadMaxPartitions", 3);
+        ReflectionTestUtils.setField(plmHelper, "uploadMinPartitionBytes", 10L);
+    }
+
+    @Test
+    void partitionsAreBalancedBySize() {
+        List<Resource> resources = Arrays.asList(resource("a", 40), resource("b", 90), resource("c", 10),
+                resource("d", 60), resource("e", 30), resource("f", 50), resource("g", 20));
+
+        List<List<Resource>> partitions = plmHelper.partitionBySize(resources);
+
+        assertEquals(3, partitions.size());
+        List<Resource> partitioned = new ArrayList<>();
+        long lightest = Long.MAX_VALUE;
+        long heaviest = 0;
+        for (List<Resource> partition : partitions) {
+            partitioned.addAll(partition);
+            long bytes = bytes(partition);
+            lightest = Math.min(lightest, bytes);
+            heaviest = Math.max(heaviest, bytes);
+        }
+        assertEquals(resources.size(), partitioned.size());
+        assertTrue(partitioned.containsAll(resources));
+        // Largest first into the lightest partition: 90+20, 60+30+10, 50+40
+        assertEquals(90, lightest);
+        assertEquals(110, heaviest);
+    }
+
+    @Test
+    void smallUploadsStayInOnePartition() {
+        List<Resource> resources = Arrays.asList(resource("a", 5), resource("b", 6), resource("c", 4));
+
+        List<List<Resource>> partitions = plmHelper.partitionBySize(resources);
+
+        assertEquals(1, partitions.size());
+        assertEquals(resources.size(), partitions.get(0).size());
+    }
+
+    @Test
+    void partitionCountIsLimitedByResources() {
+        List<Resource> resources = Arrays.asList(resource("a", 500), resource("b", 500));
+
+        List<List<Resource>> partitions = plmHelper.partitionBySize(resources);
+
+        assertEquals(2, partitions.size());
+        assertEquals(1, partitions.get(0).size());
+        assertEquals(1, partitions.get(1).size());
+    }
+
+    @Test
+    void locationsAreRestoredToResourceOrder() {
+        List<Resource> resources = Arrays.asList(resource("render_1.png", 10), resource("render_2.png", 10),
+                resource("render_1.png", 10), resource("style.zprj", 10));
+        // Partitions answer in their own order, duplicate names in the order they were uploaded
+        JSONArray locations = new JSONArray()
+                .put(location("style.zprj", "4"))
+                .put(location("render_1.png", "1"))
+                .put(location("unknown.png", "5"))
+                .put(location("render_2.png", "2"))
+                .put(location("render_1.png", "3"));
+
+        JSONArray ordered = plmHelper.orderByResources(locations, resources);
+
+        assertEquals(5, ordered.length());
+        for (int i = 0; i < ordered.length(); i++) {
+            assertEquals(String.valueOf(i + 1), ordered.getJSONObject(i).getString(PLMConstants.PLM_NEW_NAME_JSON_KEY));
+        }
+    }
+
+    @Test
+    void resourcesWithoutLocationAreSkipped() {
+        List<Resource> resources = Arrays.asList(resource("a.png", 10), resource("b.png", 10), resource("c.png", 10));
+        JSONObject cLocation = location("c.png", "2");
+        JSONObject aLocation = location("a.png", "1");
+
+        JSONArray ordered = plmHelper.orderByResources(new JSONArray().put(cLocation).put(aLocation), resources);
+
+        assertEquals(2, ordered.length());
+        assertSame(aLocation, ordered.get(0));
+        assertSame(cLocation, ordered.get(1));
+    }
+
+    private static long bytes(List<Resource> partition) {
+        long bytes = 0;
+        for (Resource resource : partition) {
+            bytes += ((ByteArrayResource) resource).getByteArray().length;
+        }
+        return bytes;
+    }
+
+    private static JSONObject location(String oldName, String newName) {
+        return new JSONObject()
+                .put(PLMConstants.PLM_OLD_NAME_JSON_KEY, oldName)
+                .put(PLMConstants.PLM_NEW_NAME_JSON_KEY, newName);
+    }
+
+    private static Resource resource(String fileName, int size) {
+        return new ByteArrayResource(new byte[size]) {
+            @Override
+            public String getFilename() {
+                return fileName;
+            }
+        };
+    }
+}
@@ -0,0 +1,148 @@
+package com.gv.csc.helper;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * TTL, size bound and single load of the PLM LOV cache
+ */
+class PLMLOVsTest {
+
+    private static final String PLM_URL = "https://plm.example.com/plm";
+
+    private final PLMLOVs plmLOVs = new PLMLOVs();
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @BeforeEach
+    void configure() {
+        ReflectionTestUtils.setField(plmLOVs, "ttlMinutes", 60L);
+        ReflectionTestUtils.setField(plmLOVs, "maxSize", 100);
+    }
+
+    @Test
+    void loadedValueIsServedFromTheCache() {
+        assertEquals("Menswear", plmLOVs.getDisplayValue(PLM_URL, "dept", "MW", loader("Menswear")));
+        assertEquals("Menswear", plmLOVs.getDisplayValue(PLM_URL, "dept", "MW", loader("Changed")));
+        assertEquals("Menswear", plmLOVs.peek(PLM_URL, "dept", "MW"));
+
+        assertEquals(1, loads.get());
+        assertEquals(1, plmLOVs.getStatistics().getLong("misses"));
+        assertEquals(2, plmLOVs.getStatistics().getLong("hits"));
+        // Keys are per PLM instance and attribute
+        assertNull(plmLOVs.peek("https://other.example.com/plm", "dept", "MW"));
+        assertNull(plmLOVs.peek(PLM_URL, "brand", "MW"));
+    }
+
+    @Test
+    void expiredValueIsReloaded() {
+        ReflectionTestUtils.setField(plmLOVs, "ttlMinutes", 0L);
+        plmLOVs.getDisplayValue(PLM_URL, "dept", "MW", loader("Menswear"));
+        plmLOVs.put(PLM_URL, "brand", "BR", "Brand");
+
+        assertNull(plmLOVs.peek(PLM_URL, "dept", "MW"));
+        assertNull(plmLOVs.peek(PLM_URL, "brand", "BR"));
+        assertEquals("Mens", plmLOVs.getDisplayValue(PLM_URL, "dept", "MW", loader("Mens")));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void failedLoadIsNotCached() {
+        IllegalStateException exc = assertThrows(IllegalStateException.class, () -> plmLOVs.getDisplayValue(PLM_URL, "dept", "MW", () -> {
+            throw new IllegalStateException("PLM unavailable");
+        }));
+        assertEquals("PLM unavailable", exc.getMessage());
+        assertNull(plmLOVs.peek(PLM_URL, "dept", "MW"));
+
+        assertEquals("Menswear", plmLOVs.getDisplayValue(PLM_URL, "dept", "MW", loader("Menswear")));
+        assertEquals(1, plmLOVs.getStatistics().getLong("loadFailures"));
+    }
+
+    @Test
+    void concurrentMissesShareOneLoad() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<String> first = CompletableFuture.supplyAsync(() -> plmLOVs.getDisplayValue(PLM_URL, "dept", "MW", () -> {
+            loads.incrementAndGet();
+            loading.countDown();
+            await(release);
+            return "Menswear";
+        }));
+        loading.await();
+
+        CompletableFuture<String> second = new CompletableFuture<>();
+        Thread waiter = new Thread(() -> second.complete(plmLOVs.getDisplayValue(PLM_URL, "dept", "MW", loader("not loaded"))));
+        waiter.start();
+        awaitParked(waiter);
+        release.countDown();
+
+        assertEquals("Menswear", first.get());
+        assertEquals("Menswear", second.get());
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void expiredEntriesAreEvictedFirst() {
+        ReflectionTestUtils.setField(plmLOVs, "maxSize", 4);
+        ReflectionTestUtils.setField(plmLOVs, "ttlMinutes", 0L);
+        plmLOVs.put(PLM_URL, "dept", "E1", "Expired 1");
+        plmLOVs.put(PLM_URL, "dept", "E2", "Expired 2");
+        ReflectionTestUtils.setField(plmLOVs, "ttlMinutes", 60L);
+        plmLOVs.put(PLM_URL, "dept", "A", "A");
+        plmLOVs.put(PLM_URL, "dept", "B", "B");
+        plmLOVs.put(PLM_URL, "dept", "C", "C");
+
+        assertEquals(3, plmLOVs.getStatistics().getInt("size"));
+        assertEquals(2, plmLOVs.getStatistics().getLong("evictions"));
+        assertEquals("A", plmLOVs.peek(PLM_URL, "dept", "A"));
+        assertEquals("C", plmLOVs.peek(PLM_URL, "dept", "C"));
+    }
+
+    @Test
+    void entriesClosestToExpiryAreEvictedBeyondMaxSize() throws InterruptedException {
+        ReflectionTestUtils.setField(plmLOVs, "maxSize", 10);
+        plmLOVs.put(PLM_URL, "dept", "0", "Oldest");
+        Thread.sleep(2);
+        for (int i = 1; i <= 10; i++) {
+            plmLOVs.put(PLM_URL, "dept", String.valueOf(i), "Value " + i);
+        }
+
+        // Over the bound, the cache shrinks to 90% of it
+        assertEquals(9, plmLOVs.getStatistics().getInt("size"));
+        assertEquals(2, plmLOVs.getStatistics().getLong("evictions"));
+        assertNull(plmLOVs.peek(PLM_URL, "dept", "0"));
+        assertEquals("Value 10", plmLOVs.peek(PLM_URL, "dept", "10"));
+    }
+
+    private Supplier<String> loader(String value) {
+        return () -> {
+            loads.incrementAndGet();
+            return value;
+        };
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException exc) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void awaitParked(Thread thread) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (thread.getState() != Thread.State.WAITING && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(Thread.State.WAITING, thread.getState());
+    }
+}
@@ -0,0 +1,155 @@
+package com.gv.csc.helper;
+
+import com.gv.csc.dao.PublishCheckpointDAO;
+import com.gv.csc.entity.PublishCheckpoint;
+import com.gv.csc.service.PublishCheckpointService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Reuse of publish checkpoints by the PLMHelper publish stages: only for the same publish and unchanged inputs
+ */
+class PublishCheckpointServiceTest {
+
+    private static final String PLM_URL = "https://plm.example.com/plm";
+    private static final String STAGE = "uploadAttachments";
+
+    private final PublishCheckpointService checkpointService = new PublishCheckpointService();
+    private final List<PublishCheckpoint> checkpoints = new ArrayList<>();
+
+    @BeforeEach
+    void configure() {
+        ReflectionTestUtils.setField(checkpointService, "publishCheckpointDAO", inMemoryDAO());
+        ReflectionTestUtils.setField(checkpointService, "enabled", true);
+        ReflectionTestUtils.setField(checkpointService, "maxAgeHours", 24L);
+    }
+
+    @Test
+    void checkpointIsReusedWhileItsInputsAreUnchanged() {
+        String publishKey = checkpointService.publishKey(PLM_URL, "style", 3, "PLM-1", "alice");
+        checkpointService.save(publishKey, STAGE, checkpointService.fingerprint("zprj", "thumbnail"), "[\"location\"]");
+
+        assertEquals("[\"location\"]", checkpointService.find(publishKey, STAGE, checkpointService.fingerprint("zprj", "thumbnail")));
+        assertNull(checkpointService.find(publishKey, STAGE, checkpointService.fingerprint("zprj", "changed thumbnail")));
+        assertNull(checkpointService.find(publishKey, "colorways", checkpointService.fingerprint("zprj", "thumbnail")));
+    }
+
+    @Test
+    void checkpointsAreNotSharedBetweenPublishes() {
+        String publishKey = checkpointService.publishKey(PLM_URL, "style", 3, "PLM-1", "alice");
+        String fingerprint = checkpointService.fingerprint("zprj");
+        checkpointService.save(publishKey, STAGE, fingerprint, "alice's upload");
+
+        assertNull(checkpointService.find(checkpointService.publishKey(PLM_URL, "style", 3, "PLM-1", "bob"), STAGE, fingerprint));
+        assertNull(checkpointService.find(checkpointService.publishKey(PLM_URL, "style", 4, "PLM-1", "alice"), STAGE, fingerprint));
+        assertNull(checkpointService.find(checkpointService.publishKey("https://other.example.com/plm", "style", 3, "PLM-1", "alice"), STAGE, fingerprint));
+    }
+
+    @Test
+    void latestVersionIsNotCheckpointed() {
+        String publishKey = checkpointService.publishKey(PLM_URL, "style", 0, "PLM-1", "alice");
+        assertNull(publishKey);
+
+        checkpointService.save(publishKey, STAGE, checkpointService.fingerprint("zprj"), "upload");
+        assertEquals(0, checkpoints.size());
+        assertNull(checkpointService.find(publishKey, STAGE, checkpointService.fingerprint("zprj")));
+    }
+
+    @Test
+    void disabledCheckpointsAreNotRecorded() {
+        ReflectionTestUtils.setField(checkpointService, "enabled", false);
+
+        assertNull(checkpointService.publishKey(PLM_URL, "style", 3, "PLM-1", "alice"));
+    }
+
+    @Test
+    void saveReplacesTheEarlierCheckpointOfTheStage() {
+        String publishKey = checkpointService.publishKey(PLM_URL, "style", 3, "PLM-1", "alice");
+        checkpointService.save(publishKey, STAGE, checkpointService.fingerprint("first"), "first upload");
+        checkpointService.save(publishKey, STAGE, checkpointService.fingerprint("second"), "second upload");
+
+        assertEquals(1, checkpoints.size());
+        assertNull(checkpointService.find(publishKey, STAGE, checkpointService.fingerprint("first")));
+        assertEquals("second upload", checkpointService.find(publishKey, STAGE, checkpointService.fingerprint("second")));
+    }
+
+    @Test
+    void expiredCheckpointIsNotReused() throws InterruptedException {
+        ReflectionTestUtils.setField(checkpointService, "maxAgeHours", 0L);
+        String publishKey = checkpointService.publishKey(PLM_URL, "style", 3, "PLM-1", "alice");
+        checkpointService.save(publishKey, STAGE, checkpointService.fingerprint("zprj"), "upload");
+
+        assertNull(checkpointService.find(publishKey, STAGE, checkpointService.fingerprint("zprj")));
+        Thread.sleep(2);
+        checkpointService.purgeExpiredCheckpoints();
+        assertEquals(0, checkpoints.size());
+    }
+
+    @Test
+    void clearRemovesTheCheckpointsOfTheCompletedPublish() {
+        String publishKey = checkpointService.publishKey(PLM_URL, "style", 3, "PLM-1", "alice");
+        String otherKey = checkpointService.publishKey(PLM_URL, "style", 3, "PLM-2", "alice");
+        checkpointService.save(publishKey, STAGE, checkpointService.fingerprint("zprj"), "upload");
+        checkpointService.save(publishKey, "colorways", checkpointService.fingerprint("colorways"), "[]");
+        checkpointService.save(otherKey, STAGE, checkpointService.fingerprint("zprj"), "other upload");
+
+        checkpointService.clear(publishKey);
+
+        assertEquals(1, checkpoints.size());
+        assertEquals("other upload", checkpointService.find(otherKey, STAGE, checkpointService.fingerprint("zprj")));
+    }
+
+    @Test
+    void fingerprintSeparatesItsInputs() {
+        assertEquals(checkpointService.fingerprint("ab", "c"), checkpointService.fingerprint("ab", "c"));
+        assertNotEquals(checkpointService.fingerprint("ab", "c"), checkpointService.fingerprint("a", "bc"));
+        assertNotEquals(checkpointService.fingerprint("a", null), checkpointService.fingerprint("a"));
+    }
+
+    /**
+     * PublishCheckpointDAO over the checkpoints list, implementing the queries PublishCheckpointService uses
+     */
+    private PublishCheckpointDAO inMemoryDAO() {
+        return (PublishCheckpointDAO) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{PublishCheckpointDAO.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "save":
+                    checkpoints.add((PublishCheckpoint) args[0]);
+                    return args[0];
+                case "findFirstByPublishKeyAndStageAndCreateTimeStampAfterOrderByCreateTimeStampDesc":
+                    return checkpoints.stream()
+                            .filter(checkpoint -> checkpoint.getPublishKey().equals(args[0]) && checkpoint.getStage().equals(args[1])
+                                    && checkpoint.getCreateTimeStamp().after((Date) args[2]))
+                            .max(Comparator.comparing(PublishCheckpoint::getCreateTimeStamp))
+                            .orElse(null);
+                case "deleteByPublishKeyAndStage":
+                    return delete(checkpoint -> checkpoint.getPublishKey().equals(args[0]) && checkpoint.getStage().equals(args[1]));
+                case "deleteByPublishKey":
+                    return delete(checkpoint -> checkpoint.getPublishKey().equals(args[0]));
+                case "deleteByCreateTimeStampBefore":
+                    return delete(checkpoint -> checkpoint.getCreateTimeStamp().before((Date) args[0]));
+                case "toString":
+                    return "in memory PublishCheckpointDAO";
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+
+    private long delete(Predicate<PublishCheckpoint> matching) {
+        int size = checkpoints.size();
+        checkpoints.removeIf(matching);
+        return size - checkpoints.size();
+    }
+}
@@ -0,0 +1,121 @@
+package com.gv.csc.helper;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Single-flight execution of identical concurrent calls
+ */
+class RequestCoalescerTest {
+
+    private final RequestCoalescer coalescer = new RequestCoalescer();
+    private final ExecutorService callers = Executors.newFixedThreadPool(4);
+
+    @AfterEach
+    void tearDown() {
+        callers.shutdownNow();
+    }
+
+    @Test
+    void concurrentCallersShareOneCall() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        Future<String> leader = callers.submit(() -> coalescer.execute("GET /styles", () -> {
+            calls.incrementAndGet();
+            await(release);
+            return "styles";
+        }));
+        awaitInFlight(1);
+        Future<String> follower = callers.submit(() -> coalescer.execute("GET /styles", () -> {
+            calls.incrementAndGet();
+            return "other";
+        }));
+        awaitCoalesced(1);
+        release.countDown();
+
+        assertEquals("styles", leader.get(5, TimeUnit.SECONDS));
+        assertEquals("styles", follower.get(5, TimeUnit.SECONDS));
+        assertEquals(1, calls.get());
+        assertEquals(0, coalescer.getStatistics().getInt("inFlight"));
+    }
+
+    @Test
+    void coalescedCallersReceiveTheSameException() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        IllegalStateException failure = new IllegalStateException("upstream failed");
+        Future<String> leader = callers.submit(() -> coalescer.execute("GET /styles", () -> {
+            await(release);
+            throw failure;
+        }));
+        awaitInFlight(1);
+        Future<String> follower = callers.submit(() -> coalescer.execute("GET /styles", () -> "other"));
+        awaitCoalesced(1);
+        release.countDown();
+
+        ExecutionException leaderExc = assertThrows(ExecutionException.class, () -> leader.get(5, TimeUnit.SECONDS));
+        ExecutionException followerExc = assertThrows(ExecutionException.class, () -> follower.get(5, TimeUnit.SECONDS));
+        assertSame(failure, leaderExc.getCause());
+        assertSame(failure, followerExc.getCause());
+    }
+
+    @Test
+    void differentKeysAreNotCoalesced() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        Future<String> first = callers.submit(() -> coalescer.execute("GET /styles token-a", () -> {
+            await(release);
+            return "a";
+        }));
+        awaitInFlight(1);
+
+        assertEquals("b", coalescer.execute("GET /styles token-b", () -> "b"));
+        release.countDown();
+        assertEquals("a", first.get(5, TimeUnit.SECONDS));
+        assertEquals(0, coalescer.getStatistics().getLong("coalesced"));
+    }
+
+    @Test
+    void completedCallsAreNotCached() {
+        AtomicInteger calls = new AtomicInteger();
+
+        assertEquals(1, (int) coalescer.execute("GET /styles", calls::incrementAndGet));
+        assertEquals(2, (int) coalescer.execute("GET /styles", calls::incrementAndGet));
+        assertEquals(2, coalescer.getStatistics().getLong("calls"));
+    }
+
+    private void awaitInFlight(int flights) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (coalescer.getStatistics().getInt("inFlight") < flights) {
+            assertTrue(System.nanoTime() < deadline, "call did not start");
+            Thread.sleep(1);
+        }
+    }
+
+    private void awaitCoalesced(long coalesced) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (coalescer.getStatistics().getLong("coalesced") < coalesced) {
+            assertTrue(System.nanoTime() < deadline, "caller was not coalesced");
+            Thread.sleep(1);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException exc) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package com.gv.csc.helper;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientResponseException;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Retries, retry budget and Retry-After handling of the retry policy
+ */
+class RetryPolicyTest {
+
+    private static final String URL = "https://plm.example.com/rest/styles";
+
+    private RetryPolicy retryPolicy;
+
+    @BeforeEach
+    void setUp() {
+        retryPolicy = new RetryPolicy();
+        ReflectionTestUtils.setField(retryPolicy, "enabled", true);
+        ReflectionTestUtils.setField(retryPolicy, "maxRetries", 2);
+        ReflectionTestUtils.setField(retryPolicy, "baseDelayMs", 1L);
+        ReflectionTestUtils.setField(retryPolicy, "maxDelayMs", 2L);
+        ReflectionTestUtils.setField(retryPolicy, "maxRetryAfterMs", 1000L);
+        ReflectionTestUtils.setField(retryPolicy, "retryableStatuses", new int[]{429, 502, 503, 504});
+        ReflectionTestUtils.setField(retryPolicy, "budgetRatio", 0.0);
+        ReflectionTestUtils.setField(retryPolicy, "budgetMinRetries", 3);
+        ReflectionTestUtils.setField(retryPolicy, "budgetWindowMs", 60000L);
+    }
+
+    @Test
+    void transientFailuresAreRetried() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        String result = retryPolicy.execute(URL, () -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw errorResponse(HttpStatus.SERVICE_UNAVAILABLE, null);
+            }
+            return "ok";
+        });
+
+        assertEquals("ok", result);
+        assertEquals(3, attempts.get());
+        assertEquals(2, host().getLong("retries"));
+    }
+
+    @Test
+    void connectionFailuresAreRetried() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        String result = retryPolicy.execute(URL, () -> {
+            if (attempts.incrementAndGet() == 1) {
+                throw new ResourceAccessException("connection reset");
+            }
+            return "ok";
+        });
+
+        assertEquals("ok", result);
+        assertEquals(2, attempts.get());
+    }
+
+    @Test
+    void otherErrorsAreNotRetried() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThrows(RestClientResponseException.class, () -> retryPolicy.execute(URL, () -> {
+            attempts.incrementAndGet();
+            throw errorResponse(HttpStatus.INTERNAL_SERVER_ERROR, null);
+        }));
+        assertEquals(1, attempts.get());
+    }
+
+    @Test
+    void retriesStopAfterMaxRetries() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThrows(RestClientResponseException.class, () -> retryPolicy.execute(URL, () -> {
+            attempts.incrementAndGet();
+            throw errorResponse(HttpStatus.BAD_GATEWAY, null);
+        }));
+        assertEquals(3, attempts.get());
+        assertEquals(1, host().getLong("exhausted"));
+    }
+
+    @Test
+    void spentBudgetSuppressesRetries() {
+        AtomicInteger attempts = new AtomicInteger();
+        RetryPolicy.Attempt<String, RuntimeException> failing = () -> {
+            attempts.incrementAndGet();
+            throw errorResponse(HttpStatus.GATEWAY_TIMEOUT, null);
+        };
+
+        // The budget allows three retries in the window: two for the first call, one for the second
+        assertThrows(RestClientResponseException.class, () -> retryPolicy.execute(URL, failing));
+        assertThrows(RestClientResponseException.class, () -> retryPolicy.execute(URL, failing));
+        assertEquals(5, attempts.get());
+        assertEquals(3, host().getLong("retries"));
+        assertEquals(1, host().getLong("suppressedByBudget"));
+
+        attempts.set(0);
+        assertThrows(RestClientResponseException.class, () -> retryPolicy.execute(URL, failing));
+        assertEquals(1, attempts.get());
+        assertEquals(2, host().getLong("suppressedByBudget"));
+    }
+
+    @Test
+    void budgetGrowsWithCalls() {
+        ReflectionTestUtils.setField(retryPolicy, "budgetMinRetries", 0);
+        ReflectionTestUtils.setField(retryPolicy, "budgetRatio", 0.5);
+        AtomicInteger attempts = new AtomicInteger();
+
+        // One call earns half a retry: the first retry fits, the second does not
+        assertThrows(RestClientResponseException.class, () -> retryPolicy.execute(URL, () -> {
+            attempts.incrementAndGet();
+            throw errorResponse(HttpStatus.SERVICE_UNAVAILABLE, null);
+        }));
+        assertEquals(2, attempts.get());
+        assertEquals(1, host().getLong("suppressedByBudget"));
+
+        // Two more calls earn the next retry
+        assertEquals("ok", retryPolicy.execute(URL, () -> "ok"));
+        attempts.set(0);
+        assertEquals("ok", retryPolicy.execute(URL, () -> {
+            if (attempts.incrementAndGet() == 1) {
+                throw errorResponse(HttpStatus.SERVICE_UNAVAILABLE, null);
+            }
+            return "ok";
+        }));
+        assertEquals(2, attempts.get());
+    }
+
+    @Test
+    void retryAfterBeyondTheLimitSuppressesTheRetry() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThrows(RestClientResponseException.class, () -> retryPolicy.execute(URL, () -> {
+            attempts.incrementAndGet();
+            throw errorResponse(HttpStatus.SERVICE_UNAVAILABLE, "120");
+        }));
+        assertEquals(1, attempts.get());
+        assertEquals(1, host().getLong("suppressedByRetryAfter"));
+        assertEquals(0, host().getLong("retries"));
+    }
+
+    @Test
+    void retryAfterIsWaitedFor() {
+        AtomicInteger attempts = new AtomicInteger();
+        long startNanos = System.nanoTime();
+
+        String result = retryPolicy.execute(URL, () -> {
+            if (attempts.incrementAndGet() == 1) {
+                throw errorResponse(HttpStatus.TOO_MANY_REQUESTS, "1");
+            }
+            return "ok";
+        });
+
+        assertEquals("ok", result);
+        assertEquals(2, attempts.get());
+        assertTrue(System.nanoTime() - startNanos >= 1_000_000_000L);
+    }
+
+    @Test
+    void callsThatCannotBeRepeatedAreNotRetried() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThrows(RestClientResponseException.class, () -> retryPolicy.execute(URL, 2, () -> false, () -> {
+            attempts.incrementAndGet();
+            throw errorResponse(HttpStatus.SERVICE_UNAVAILABLE, null);
+        }));
+        assertEquals(1, attempts.get());
+        assertEquals(0, host().getLong("retries"));
+    }
+
+    @Test
+    void reactiveCallsAreResubscribed() {
+        AtomicInteger attempts = new AtomicInteger();
+        Mono<String> call = Mono.defer(() -> attempts.incrementAndGet() < 3
+                ? Mono.error(errorResponse(HttpStatus.SERVICE_UNAVAILABLE, null))
+                : Mono.just("ok"));
+
+        assertEquals("ok", retryPolicy.executeAsync(URL, call).block());
+        assertEquals(3, attempts.get());
+    }
+
+    private JSONObject host() {
+        return retryPolicy.getStatistics().getJSONObject("hosts").getJSONObject("plm.example.com");
+    }
+
+    private static RestClientResponseException errorResponse(HttpStatus status, String retryAfter) {
+        HttpHeaders headers = new HttpHeaders();
+        if (retryAfter != null) {
+            headers.set(HttpHeaders.RETRY_AFTER, retryAfter);
+        }
+        if (status.is4xxClientError()) {
+            return new HttpClientErrorException(status, status.getReasonPhrase(), headers, new byte[0], StandardCharsets.UTF_8);
+        }
+        return new HttpServerErrorException(status, status.getReasonPhrase(), headers, new byte[0], StandardCharsets.UTF_8);
+    }
+}
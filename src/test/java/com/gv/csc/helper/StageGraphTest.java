@@ -0,0 +1,152 @@
+package com.gv.csc.helper;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Ordering, failure propagation and cancellation of the publish stage graph
+ */
+class StageGraphTest {
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final List<String> startedStages = Collections.synchronizedList(new ArrayList<>());
+    private final StageGraph graph = new StageGraph("test", this::supplyAsync, startedStages::add);
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void dependentStageReadsTheResultsOfItsDependencies() {
+        StageGraph.Stage<Integer> first = graph.stage("first", () -> 1);
+        StageGraph.Stage<Integer> second = graph.stage("second", () -> 2);
+        StageGraph.Stage<Integer> sum = graph.stage("sum", () -> first.get() + second.get(), first, null, second);
+
+        assertEquals(3, sum.get());
+        assertEquals(3, startedStages.size());
+        assertEquals("sum", startedStages.get(2));
+        assertEquals("sum", graph.getCriticalPath().get(graph.getCriticalPath().size() - 1));
+        assertEquals(3, graph.getTimings().length());
+    }
+
+    @Test
+    void independentStagesOverlap() {
+        // Each stage waits for the other one to be running
+        CyclicBarrier barrier = new CyclicBarrier(2);
+        StageGraph.Stage<Integer> first = graph.stage("first", () -> barrier.await(5, TimeUnit.SECONDS));
+        StageGraph.Stage<Integer> second = graph.stage("second", () -> barrier.await(5, TimeUnit.SECONDS));
+
+        assertEquals(1, first.get() + second.get());
+    }
+
+    @Test
+    void dependencyFailureFailsDependentsWithoutRunningThem() {
+        AtomicBoolean dependentRan = new AtomicBoolean();
+        StageGraph.Stage<String> failing = graph.stage("failing", () -> {
+            throw new IllegalStateException("upload failed");
+        });
+        StageGraph.Stage<String> dependent = graph.stage("dependent", () -> {
+            dependentRan.set(true);
+            return "not run";
+        }, failing);
+
+        CompletionException exc = assertThrows(CompletionException.class, dependent::get);
+        assertTrue(exc.getCause() instanceof IllegalStateException, String.valueOf(exc.getCause()));
+        assertEquals("upload failed", exc.getCause().getMessage());
+        assertFalse(dependentRan.get());
+        assertFalse(dependent.isFinished());
+        assertEquals(Collections.singletonList("failing"), startedStages);
+        assertFalse(graph.getTimings().has("dependent"));
+    }
+
+    @Test
+    void cancellingAStageInterruptsItsWorkAndFailsDependents() throws InterruptedException {
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        AtomicBoolean dependentRan = new AtomicBoolean();
+        StageGraph.Stage<String> slow = graph.stage("slow", () -> {
+            running.countDown();
+            try {
+                Thread.sleep(60000);
+            } catch (InterruptedException exc) {
+                interrupted.countDown();
+                throw exc;
+            }
+            return "not cancelled";
+        });
+        StageGraph.Stage<String> dependent = graph.stage("dependent", () -> {
+            dependentRan.set(true);
+            return "not run";
+        }, slow);
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+
+        graph.getFutures().get(0).cancel(true);
+
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+        assertThrows(CancellationException.class, slow::get);
+        assertThrows(CompletionException.class, dependent::get);
+        assertFalse(dependentRan.get());
+    }
+
+    @Test
+    void cancellingAStartedStageCancelsItsWork() {
+        CompletableFuture<String> running = new CompletableFuture<>();
+        StageGraph.Stage<String> started = graph.stage("started", running);
+        assertEquals(Collections.singletonList("started"), startedStages);
+
+        graph.getFutures().get(0).cancel(true);
+
+        assertTrue(running.isCancelled());
+        assertThrows(CancellationException.class, started::get);
+    }
+
+    @Test
+    void stageNamesAreUnique() {
+        graph.stage("upload", () -> "first");
+
+        IllegalArgumentException exc = assertThrows(IllegalArgumentException.class, () -> graph.stage("upload", () -> "second"));
+        assertEquals("Stage upload is declared twice", exc.getMessage());
+        assertEquals(1, graph.getStages().size());
+    }
+
+    /**
+     * Runs a stage on the executor; like AssetTransferHelper, completing the future exceptionally interrupts the work
+     */
+    private <T> CompletableFuture<T> supplyAsync(String stageName, Callable<T> work) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        Future<?> running = executor.submit(() -> {
+            try {
+                future.complete(work.call());
+            } catch (Exception exc) {
+                future.completeExceptionally(exc);
+            }
+        });
+        future.whenComplete((result, exc) -> {
+            if (exc != null) {
+                running.cancel(true);
+            }
+        });
+        return future;
+    }
+}
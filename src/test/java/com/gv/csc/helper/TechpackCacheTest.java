@@ -0,0 +1,201 @@
+package com.gv.csc.helper;
+
+import com.gv.csc.exceptions.CLOSETException;
+import org.json.JSONObject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Single flight loading, per identity visibility, byte bound and spilling of the techpack cache
+ */
+class TechpackCacheTest {
+
+    private static final String ALICE = TechpackCache.identityOf("token-a", "alice@example.com");
+    private static final String BOB = TechpackCache.identityOf("token-b", "bob@example.com");
+
+    private final TechpackCache cache = new TechpackCache();
+    private final AtomicInteger loads = new AtomicInteger();
+    private final Random random = new Random(42);
+
+    @BeforeEach
+    void configure() {
+        ReflectionTestUtils.setField(cache, "maxBytes", 1L << 20);
+        ReflectionTestUtils.setField(cache, "spillDir", "");
+        ReflectionTestUtils.setField(cache, "spillMaxBytes", 1L << 20);
+    }
+
+    @Test
+    void versionZeroIsNeverCached() throws CLOSETException {
+        cache.getTechSpec("style", 0, ALICE, loader("latest"));
+        cache.getTechSpec("style", 0, ALICE, loader("latest"));
+
+        assertEquals(2, loads.get());
+        assertEquals(2, cache.getStatistics().getLong("bypasses"));
+        assertEquals(0, cache.getStatistics().getInt("entries"));
+    }
+
+    @Test
+    void concurrentRequestsShareOneLoad() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<JSONObject> first = CompletableFuture.supplyAsync(() -> getTechSpec("style", 1, ALICE, () -> {
+            loads.incrementAndGet();
+            loading.countDown();
+            await(release);
+            return techpack("shared");
+        }));
+        loading.await();
+
+        CompletableFuture<JSONObject> second = new CompletableFuture<>();
+        Thread waiter = new Thread(() -> second.complete(getTechSpec("style", 1, ALICE, loader("not loaded"))));
+        waiter.start();
+        awaitParked(waiter);
+        release.countDown();
+
+        assertEquals("shared", first.get().getString("name"));
+        assertEquals("shared", second.get().getString("name"));
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.getStatistics().getLong("misses"));
+    }
+
+    @Test
+    void techpackIsOnlyServedToIdentitiesThatLoadedIt() throws CLOSETException {
+        cache.getTechSpec("style", 1, ALICE, loader("v1"));
+        cache.getTechSpec("style", 1, ALICE, loader("v1"));
+        assertEquals(1, loads.get());
+
+        // Bob's credentials have not been checked by CLO-SET for this style yet
+        cache.getTechSpec("style", 1, BOB, loader("v1"));
+        assertEquals(2, loads.get());
+
+        cache.getTechSpec("style", 1, BOB, loader("v1"));
+        assertEquals(2, loads.get());
+        assertEquals(1, cache.getStatistics().getInt("entries"));
+        assertEquals(2, cache.getStatistics().getLong("hits"));
+    }
+
+    @Test
+    void failedLoadIsNotCached() throws CLOSETException {
+        CLOSETException exc = assertThrows(CLOSETException.class, () -> cache.getTechSpec("style", 1, ALICE, () -> {
+            throw new CLOSETException("techpack unavailable", HttpStatus.SERVICE_UNAVAILABLE);
+        }));
+        assertEquals("techpack unavailable", exc.getMessage());
+
+        cache.getTechSpec("style", 1, ALICE, loader("v1"));
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.getStatistics().getInt("entries"));
+    }
+
+    @Test
+    void evictsTheLeastRecentlyUsedTechpackToStayWithinMaxBytes() throws CLOSETException {
+        long size = limitToEntries(2.5);
+        cache.getTechSpec("a", 1, ALICE, loader("a"));
+        cache.getTechSpec("b", 1, ALICE, loader("b"));
+        cache.getTechSpec("a", 1, ALICE, loader("a"));
+        cache.getTechSpec("c", 1, ALICE, loader("c"));
+
+        JSONObject statistics = cache.getStatistics();
+        assertEquals(2, statistics.getInt("entries"));
+        assertEquals(1, statistics.getLong("evictions"));
+        assertTrue(statistics.getLong("bytes") <= (long) (size * 2.5), statistics.toString());
+
+        int loaded = loads.get();
+        cache.getTechSpec("a", 1, ALICE, loader("a"));
+        cache.getTechSpec("c", 1, ALICE, loader("c"));
+        assertEquals(loaded, loads.get());
+        cache.getTechSpec("b", 1, ALICE, loader("b"));
+        assertEquals(loaded + 1, loads.get());
+    }
+
+    @Test
+    void evictedTechpacksSpillToDiskAndAreReadBack(@TempDir File spillDir) throws CLOSETException {
+        ReflectionTestUtils.setField(cache, "spillDir", spillDir.getPath());
+        cache.init();
+        limitToEntries(1.5);
+
+        cache.getTechSpec("a", 1, ALICE, loader("a"));
+        cache.getTechSpec("b", 1, ALICE, loader("b"));
+        assertEquals(1, cache.getStatistics().getInt("spilledEntries"));
+
+        JSONObject techpack = cache.getTechSpec("a", 1, ALICE, loader("not loaded"));
+        assertEquals("a", techpack.getString("name"));
+        assertEquals(2, loads.get());
+        JSONObject statistics = cache.getStatistics();
+        assertEquals(1, statistics.getLong("diskHits"));
+        // Reading a back pushed b out of memory in turn
+        assertEquals(1, statistics.getInt("entries"));
+        assertEquals(1, statistics.getInt("spilledEntries"));
+
+        // A spilled techpack keeps its identities
+        cache.getTechSpec("b", 1, BOB, loader("b"));
+        assertEquals(3, loads.get());
+    }
+
+    /**
+     * Sets maxBytes to the given number of techpacks, as measured on a throwaway entry
+     */
+    private long limitToEntries(double entries) throws CLOSETException {
+        cache.getTechSpec("probe", 1, ALICE, () -> techpack("probe"));
+        long size = cache.getStatistics().getLong("bytes");
+        cache.clear();
+        ReflectionTestUtils.setField(cache, "maxBytes", (long) (size * entries));
+        return size;
+    }
+
+    private TechpackCache.TechpackLoader loader(String name) {
+        return () -> {
+            loads.incrementAndGet();
+            return techpack(name);
+        };
+    }
+
+    /**
+     * Random content, so every techpack compresses to about the same size
+     */
+    private String techpack(String name) {
+        StringBuilder content = new StringBuilder();
+        synchronized (random) {
+            for (int i = 0; i < 256; i++) {
+                content.append(Long.toHexString(random.nextLong()));
+            }
+        }
+        return new JSONObject().put("name", name).put("content", content.toString()).toString();
+    }
+
+    private JSONObject getTechSpec(String styleId, int version, String identity, TechpackCache.TechpackLoader loader) {
+        try {
+            return cache.getTechSpec(styleId, version, identity, loader);
+        } catch (CLOSETException exc) {
+            throw new IllegalStateException(exc);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException exc) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void awaitParked(Thread thread) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (thread.getState() != Thread.State.WAITING && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(Thread.State.WAITING, thread.getState());
+    }
+}